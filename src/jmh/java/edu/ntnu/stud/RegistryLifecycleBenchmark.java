@@ -0,0 +1,64 @@
+package edu.ntnu.stud;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the operations that change the size of a registry, which can not be repeated on
+ * the same registry. Each call therefore covers a whole day: loading every departure, or
+ * advancing the clock minute by minute until every departure has been removed.
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RegistryLifecycleBenchmark {
+  @Param({"1000", "10000", "100000", "1000000"})
+  private int size;
+
+  private Registry registry;
+
+  /**
+   * Builds a fresh registry before every iteration, since setTimeOfDay empties it.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() {
+    registry = new TimetableGenerator().registry(size);
+  }
+
+  @Benchmark
+  public Registry addTrainDeparture() {
+    TimetableGenerator generator = new TimetableGenerator();
+    Registry loaded = new Registry();
+    for (int i = 0; i < size; i++) {
+      generator.add(loaded, i);
+    }
+    return loaded;
+  }
+
+  @Benchmark
+  public Registry setTimeOfDay() {
+    for (int minute = 1; minute < 24 * 60; minute++) {
+      registry.setTimeOfDay(LocalTime.of(minute / 60, minute % 60));
+    }
+    return registry;
+  }
+}
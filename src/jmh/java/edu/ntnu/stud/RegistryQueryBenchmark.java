@@ -0,0 +1,91 @@
+package edu.ntnu.stud;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the queries and the delay update of a populated registry.
+ * The registry is built once per trial and every benchmark leaves it valid for the next call.
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RegistryQueryBenchmark {
+  private static final LocalTime ONE_MINUTE = LocalTime.of(0, 1);
+  private static final int BOARD_ROWS = 20;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  private int size;
+
+  private Registry registry;
+  private SplittableRandom random;
+
+  /**
+   * Builds the registry for the current size.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    TimetableGenerator generator = new TimetableGenerator();
+    registry = generator.registry(size);
+    random = new SplittableRandom(size);
+  }
+
+  private int randomTrainNumber() {
+    return TimetableGenerator.trainNumber(random.nextInt(size));
+  }
+
+  @Benchmark
+  public List<TrainDeparture> getDepartures() {
+    return registry.getDepartures();
+  }
+
+  @Benchmark
+  public List<TrainDeparture> getNextDepartures() {
+    return registry.getNextDepartures(BOARD_ROWS,
+            LocalTime.of(random.nextInt(24), random.nextInt(60)));
+  }
+
+  @Benchmark
+  public List<TrainDeparture> getDeparturesByDestination() {
+    String[] destinations = TimetableGenerator.DESTINATIONS;
+    return registry.getDeparturesByDestination(destinations[random.nextInt(destinations.length)]);
+  }
+
+  @Benchmark
+  public TrainDeparture getTrainDepartureByTrainNumber() {
+    return registry.getTrainDepartureByTrainNumber(randomTrainNumber());
+  }
+
+  /**
+   * Toggles the delay of a random train between 00:00 and 00:01. Departures are generated on
+   * odd minutes only, so the moved departure never collides with another one.
+   */
+  @Benchmark
+  public void assertAndSetDelay() {
+    int trainNumber = randomTrainNumber();
+    LocalTime delay = registry.getTrainDepartureByTrainNumber(trainNumber).getDelay();
+    registry.assertAndSetDelay(trainNumber, delay.equals(LocalTime.MIN) ? ONE_MINUTE
+            : LocalTime.MIN);
+  }
+}
@@ -0,0 +1,111 @@
+package edu.ntnu.stud;
+
+import java.time.LocalTime;
+import java.util.Random;
+
+/**
+ * Generates reproducible timetables for the benchmarks.
+ *
+ * <p>Departures are scheduled on the odd minutes of the day, so that a delay of one minute
+ * always moves a departure to a free even minute. Every departure in the same minute gets its
+ * own line and track, which keeps the timetable valid for any size. Lines are spread over a few
+ * line prefixes, about one in ten departures has an unassigned track, and destinations follow a
+ * skewed distribution where the largest cities are picked most often.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+final class TimetableGenerator {
+  static final String[] DESTINATIONS = {
+      "Oslo S", "Bergen", "Trondheim", "Stavanger", "Drammen", "Lillehammer", "Kristiansand",
+      "Gjøvik", "Hamar", "Skien", "Moss", "Fredrikstad", "Halden", "Kongsberg", "Asker",
+      "Ski", "Lillestrøm", "Eidsvoll", "Gardermoen", "Bodø", "Tromsø", "Narvik", "Voss",
+      "Myrdal", "Flåm", "Åndalsnes", "Røros", "Steinkjer", "Mo i Rana", "Kragerø"
+  };
+
+  private static final String[] LINE_PREFIXES = {"L", "R", "RE", "F", "FLY"};
+  private static final int DEPARTURE_MINUTES = 720;
+  private static final long SEED = 20231204L;
+
+  private final Random random = new Random(SEED);
+  private final double[] destinationWeights = new double[DESTINATIONS.length];
+
+  /**
+   * Creates a generator where destination number k is picked with a weight of 1 / k.
+   */
+  TimetableGenerator() {
+    double total = 0;
+    for (int i = 0; i < DESTINATIONS.length; i++) {
+      total += 1.0 / (i + 1);
+      destinationWeights[i] = total;
+    }
+    for (int i = 0; i < DESTINATIONS.length; i++) {
+      destinationWeights[i] /= total;
+    }
+  }
+
+  /**
+   * Returns the train number of the departure with the given index.
+   *
+   * @param index the index of the departure, from 0
+   * @return the train number of the departure
+   */
+  static int trainNumber(int index) {
+    return index + 1;
+  }
+
+  /**
+   * Creates a registry holding the given number of departures.
+   *
+   * @param size the number of departures
+   * @return a registry with the time of day 00:00
+   */
+  Registry registry(int size) {
+    Registry registry = new Registry();
+    for (int i = 0; i < size; i++) {
+      add(registry, i);
+    }
+    return registry;
+  }
+
+  /**
+   * Adds the departure with the given index to a registry.
+   *
+   * @param registry the registry to add to
+   * @param index    the index of the departure, from 0
+   */
+  void add(Registry registry, int index) {
+    int minute = 2 * (index % DEPARTURE_MINUTES) + 1;
+    int slot = index / DEPARTURE_MINUTES;
+    int track = random.nextInt(10) == 0 ? -1 : slot + 1;
+
+    registry.addTrainDeparture(LocalTime.of(minute / 60, minute % 60), LocalTime.MIN,
+            randomDestination(), line(slot), trainNumber(index), track);
+  }
+
+  /**
+   * Returns a destination following the skewed destination distribution.
+   *
+   * @return the name of a destination
+   */
+  String randomDestination() {
+    double pick = random.nextDouble();
+    for (int i = 0; i < destinationWeights.length; i++) {
+      if (pick < destinationWeights[i]) {
+        return DESTINATIONS[i];
+      }
+    }
+    return DESTINATIONS[DESTINATIONS.length - 1];
+  }
+
+  /**
+   * Returns the line of the departures in a slot, unique within a minute.
+   *
+   * @param slot the position of the departure within its minute
+   * @return the name of the line
+   */
+  private static String line(int slot) {
+    return LINE_PREFIXES[slot % LINE_PREFIXES.length] + (slot / LINE_PREFIXES.length + 1);
+  }
+}
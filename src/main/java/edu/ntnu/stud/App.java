@@ -1,5 +1,15 @@
 package edu.ntnu.stud;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
 /**
  * This is the main class for the train dispatch application.
  * It is responsible for launching the user interface.
@@ -9,16 +19,111 @@ package edu.ntnu.stud;
  * @since v0.3.0-alpha
  */
 public class App {
+  private static final String JOURNAL_OPTION = "--journal=";
+  private static final String SNAPSHOT_OPTION = "--snapshot=";
+  private static final String BATCH_OPTION = "--batch";
+  private static final String METRICS_OPTION = "--metrics";
+  private static final String RECORDING_OPTION = "--recording=";
+
   /**
    * Main method that runs the application.
    *
-   * @param args are the arguments for the main-method.
+   * @param args are the arguments for the main-method. If a path to a timetable file is given,
+   *             the application starts with the train departures of the timetable. If
+   *             {@code --journal=<file>} is given, every change is written to the journal file,
+   *             and the departures are restored from it if it already exists. If
+   *             {@code --snapshot=<file>} is given, the application starts from the snapshot
+   *             file if it exists, and saves the registry to it on exit. If {@code --batch}
+   *             is given, the dispatch commands on standard input are run without the menu,
+   *             and {@code --batch=<file>} runs the commands of a file instead. If
+   *             {@code --metrics} is given, the latency of the registry operations, the
+   *             rejected changes and the sizes of the registry are published over JMX. If
+   *             {@code --recording=<file>} is given, a flight recording with the registry
+   *             operations and dispatch commands is written to the file on exit.
+   * @throws IOException if the timetable, snapshot, journal or command file can not be read,
+   *                     or the flight recording can not be written
    */
-  public static void main(String[] args) {
-    UserInterface userInterface = new UserInterface();
-    userInterface.init();
-    userInterface.run();
-  }
+  public static void main(String[] args) throws IOException {
+    Path timetable = null;
+    Path journal = null;
+    Path snapshot = null;
+    boolean batch = false;
+    Path commands = null;
+    boolean metrics = false;
+    Path recordingFile = null;
+    for (String arg : args) {
+      if (arg.equals(BATCH_OPTION)) {
+        batch = true;
+      } else if (arg.startsWith(BATCH_OPTION + "=")) {
+        batch = true;
+        commands = Path.of(arg.substring(BATCH_OPTION.length() + 1));
+      } else if (arg.equals(METRICS_OPTION)) {
+        metrics = true;
+      } else if (arg.startsWith(RECORDING_OPTION)) {
+        recordingFile = Path.of(arg.substring(RECORDING_OPTION.length()));
+      } else if (arg.startsWith(JOURNAL_OPTION)) {
+        journal = Path.of(arg.substring(JOURNAL_OPTION.length()));
+      } else if (arg.startsWith(SNAPSHOT_OPTION)) {
+        snapshot = Path.of(arg.substring(SNAPSHOT_OPTION.length()));
+      } else {
+        timetable = Path.of(arg);
+      }
+    }
 
+    Recording recording = recordingFile == null ? null : startRecording(recordingFile);
+    try {
+      UserInterface userInterface = new UserInterface();
+      if (snapshot != null) {
+        userInterface.initFromSnapshot(snapshot);
+      } else if (timetable != null) {
+        userInterface.init(timetable);
+      } else {
+        userInterface.init();
+      }
+      if (journal != null) {
+        userInterface.openJournal(journal);
+      }
+      if (metrics) {
+        userInterface.enableMetrics();
+      }
+
+      if (!batch) {
+        userInterface.run();
+      } else if (commands == null) {
+        userInterface.runBatch(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+      } else {
+        try (Reader reader = Files.newBufferedReader(commands, StandardCharsets.UTF_8)) {
+          userInterface.runBatch(reader);
+        }
+      }
+    } finally {
+      if (recording != null) {
+        recording.stop();
+        recording.close();
+      }
+    }
+  }
 
+  /**
+   * Starts a flight recording with the default settings of the JDK, such as garbage
+   * collection and allocation, and with the registry operation and dispatch command events
+   * that are otherwise disabled.
+   *
+   * @param file the file the recording is written to when it stops
+   * @return the started recording
+   * @throws IOException if the default settings can not be read or the file can not be set
+   */
+  private static Recording startRecording(Path file) throws IOException {
+    Recording recording;
+    try {
+      recording = new Recording(Configuration.getConfiguration("default"));
+    } catch (ParseException e) {
+      throw new IOException("The default recording settings could not be read", e);
+    }
+    recording.enable(RegistryOperationEvent.class);
+    recording.enable(DispatchCommandEvent.class);
+    recording.setDestination(file);
+    recording.start();
+    return recording;
+  }
 }
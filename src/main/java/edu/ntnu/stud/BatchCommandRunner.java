@@ -0,0 +1,313 @@
+package edu.ntnu.stud;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Runs dispatch commands from a stream against a {@link Registry}, without any menus.
+ *
+ * <p>Every line is one command, with the fields separated by commas:</p>
+ * <ul>
+ *     <li>{@code add,<departureTime>,<delay>,<destination>,<line>,<trainNumber>,<track>} -
+ *     adds a train departure, with the fields of a {@link TimetableImporter} line.</li>
+ *     <li>{@code track,<trainNumber>,<track>} - sets the track of a train departure.</li>
+ *     <li>{@code delay,<trainNumber>,<hh:mm>} - sets the delay of a train departure.</li>
+ *     <li>{@code cascade,<trainNumber>,<hh:mm>} - sets the delay of a train departure, pushes
+ *     the trains it collides with back, and prints every train departure that was delayed.</li>
+ *     <li>{@code delayall,<line>,<destination>,<track>,<from>,<to>,<hh:mm>} - adds a delay to
+ *     every train departure in a selection, where an empty field selects any value and the
+ *     window from and to is either both set or both empty.</li>
+ *     <li>{@code moveall,<line>,<destination>,<track>,<from>,<to>,<newTrack>} - moves every
+ *     train departure in a selection to a track.</li>
+ *     <li>{@code time,<hh:mm>} - updates the time of day.</li>
+ *     <li>{@code day,<serviceDay>} - starts a later service day at 00:00.</li>
+ *     <li>{@code assign,<tracks>,<minutes>} - assigns tracks to every unassigned train
+ *     departure, where each departure occupies its track for the given minutes, and prints
+ *     the departures that could not be placed.</li>
+ *     <li>{@code search,<destination>} - prints the train departures to a destination.</li>
+ *     <li>{@code find,<trainNumber>} - prints the train departure with a train number.</li>
+ *     <li>{@code query,<line>,<destination>,<track>,<from>,<to>,<delayed>,<offset>,<limit>} -
+ *     prints a page of the train departures in a selection, where delayed is either
+ *     {@code delayed} or empty.</li>
+ *     <li>{@code next,<n>,<hh:mm>} - prints the first n train departures at or after a time.</li>
+ *     <li>{@code list} - prints every train departure.</li>
+ * </ul>
+ * <p>Blank lines and lines starting with {@code #} are skipped. Commands are run through the
+ * same Registry methods as the menu of {@link UserInterface}. A command that fails is reported
+ * with its line number and the reason, and the next command is run. Everything is printed
+ * through a single buffer that is flushed when the stream ends, or when a command fails in a
+ * way that stops the batch, such as a journal that can not be written.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public class BatchCommandRunner {
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+  private final Registry registry;
+
+  /**
+   * The outcome of a batch.
+   *
+   * @param executed the number of commands that were run
+   * @param failed   the number of commands that failed
+   */
+  public record Result(int executed, int failed) {
+  }
+
+  /**
+   * Constructs a runner for the commands of the given registry.
+   *
+   * @param registry the registry to run the commands against
+   */
+  public BatchCommandRunner(Registry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Runs every command from a stream.
+   *
+   * @param commands the stream to read the commands from, which is not closed
+   * @param output   where the results of the commands and the failures are printed,
+   *                 flushed but not closed when the stream ends or the batch stops
+   * @return the number of commands run and the number that failed
+   * @throws IOException if the commands can not be read or the output can not be written
+   */
+  public Result run(Reader commands, Writer output) throws IOException {
+    BufferedReader reader = commands instanceof BufferedReader bufferedReader
+            ? bufferedReader : new BufferedReader(commands);
+    StringBuilder buffer = new StringBuilder(OUTPUT_BUFFER_SIZE);
+    int executed = 0;
+    int failed = 0;
+    int lineNumber = 0;
+
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (line.isBlank() || line.startsWith("#")) {
+          continue;
+        }
+
+        executed++;
+        DispatchCommandEvent event = new DispatchCommandEvent();
+        event.begin();
+        try {
+          execute(line, buffer);
+          event.outcome = "OK";
+        } catch (IllegalArgumentException e) {
+          failed++;
+          buffer.append("Line ").append(lineNumber).append(": ").append(e.getMessage())
+                  .append(System.lineSeparator());
+          event.outcome = "Rejected: " + e.getMessage();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+          commitEvent(event, line);
+        }
+
+        if (buffer.length() >= OUTPUT_BUFFER_SIZE) {
+          output.append(buffer);
+          buffer.setLength(0);
+        }
+      }
+
+      buffer.append("Executed ").append(executed).append(" commands, ").append(failed)
+              .append(" failed").append(System.lineSeparator());
+    } finally {
+      output.append(buffer);
+      output.flush();
+    }
+    return new Result(executed, failed);
+  }
+
+  /**
+   * Fills in the command, train number and registry size of the event of a command, and
+   * commits it. Only called when a flight recording enables the event.
+   *
+   * @param event the event of the command, with its outcome set
+   * @param line  the command line
+   */
+  private void commitEvent(DispatchCommandEvent event, String line) {
+    String[] fields = line.split(",", -1);
+    event.command = fields[0].strip();
+    int trainNumberField = switch (event.command) {
+      case "track", "delay", "cascade", "find" -> 1;
+      case "add" -> 5;
+      default -> -1;
+    };
+    if (trainNumberField != -1 && trainNumberField < fields.length) {
+      try {
+        event.trainNumber = Integer.parseInt(fields[trainNumberField].strip());
+      } catch (NumberFormatException e) {
+        event.trainNumber = 0;
+      }
+    }
+    event.registrySize = registry.size();
+    event.commit();
+  }
+
+  /**
+   * Runs a single command.
+   *
+   * @param line   the command line
+   * @param output the buffer to print results to
+   * @throws IllegalArgumentException if the command is unknown, its arguments are not valid,
+   *                                  or the registry rejects it
+   */
+  private void execute(String line, StringBuilder output) throws IllegalArgumentException {
+    int comma = line.indexOf(',');
+    String command = (comma == -1 ? line : line.substring(0, comma)).strip();
+    String arguments = comma == -1 ? "" : line.substring(comma + 1);
+
+    switch (command) {
+      case "add" -> {
+        TrainDeparture trainDeparture = TimetableImporter.parseTrainDeparture(arguments);
+        registry.addTrainDeparture(trainDeparture.getDepartureTime(), trainDeparture.getDelay(),
+                trainDeparture.getDestination(), trainDeparture.getLine(),
+                trainDeparture.getTrainNumber(), trainDeparture.getTrack());
+      }
+      case "track" -> {
+        String[] fields = split(arguments, 2);
+        registry.assertAndSetTrack(parseInt(fields[0]), parseInt(fields[1]));
+      }
+      case "delay" -> {
+        String[] fields = split(arguments, 2);
+        registry.assertAndSetDelay(parseInt(fields[0]), TimetableImporter.parseTime(fields[1]));
+      }
+      case "cascade" -> {
+        String[] fields = split(arguments, 2);
+        registry.propagateDelay(parseInt(fields[0]), TimetableImporter.parseTime(fields[1]))
+                .forEach(trainDeparture -> printRow(trainDeparture, output));
+      }
+      case "delayall" -> {
+        String[] fields = split(arguments, 6);
+        registry.addDelay(parseSelection(fields), TimetableImporter.parseTime(fields[5]))
+                .forEach(trainDeparture -> printRow(trainDeparture, output));
+      }
+      case "moveall" -> {
+        String[] fields = split(arguments, 6);
+        registry.moveToTrack(parseSelection(fields), parseInt(fields[5]))
+                .forEach(trainDeparture -> printRow(trainDeparture, output));
+      }
+      case "time" -> registry.setTimeOfDay(TimetableImporter.parseTime(arguments.strip()));
+      case "day" -> registry.startServiceDay(parseInt(arguments));
+      case "assign" -> {
+        String[] fields = split(arguments, 2);
+        registry.assignTracks(parseInt(fields[0]), parseInt(fields[1]))
+                .forEach(trainDeparture -> output.append("No free track for train ")
+                        .append(trainDeparture.getTrainNumber()).append(System.lineSeparator()));
+      }
+      case "search" -> registry.getDeparturesByDestinationIgnoreCase(arguments.strip())
+              .forEach(trainDeparture -> printRow(trainDeparture, output));
+      case "find" -> printRow(registry.getTrainDepartureByTrainNumber(parseInt(arguments)),
+              output);
+      case "query" -> {
+        String[] fields = split(arguments, 8);
+        DepartureSelection selection = parseSelection(fields);
+        if (fields[5].equals("delayed")) {
+          selection = selection.delayedOnly();
+        } else if (!fields[5].isEmpty()) {
+          throw new IllegalArgumentException("Expected delayed or nothing, not " + fields[5]);
+        }
+        Registry.Page page = registry.query(selection, parseInt(fields[6]), parseInt(fields[7]));
+        page.departures().forEach(trainDeparture -> printRow(trainDeparture, output));
+        if (page.hasMore()) {
+          output.append("More departures after ").append(page.offset() + page.departures().size())
+                  .append(System.lineSeparator());
+        }
+      }
+      case "next" -> {
+        String[] fields = split(arguments, 2);
+        registry.getNextDepartures(parseInt(fields[0]), TimetableImporter.parseTime(fields[1]))
+                .forEach(trainDeparture -> printRow(trainDeparture, output));
+      }
+      case "list" -> registry.getDepartures()
+              .forEach(trainDeparture -> printRow(trainDeparture, output));
+      default -> throw new IllegalArgumentException("Unknown command " + command);
+    }
+  }
+
+  /**
+   * Prints a train departure as a row of the departure table.
+   *
+   * @param trainDeparture the train departure to print
+   * @param output         the buffer to print to
+   */
+  private static void printRow(TrainDeparture trainDeparture, StringBuilder output) {
+    output.append(trainDeparture).append(System.lineSeparator());
+  }
+
+  /**
+   * Splits the arguments of a command into an exact number of fields.
+   *
+   * @param arguments the arguments after the command
+   * @param count     the number of fields the command takes
+   * @return the stripped fields
+   * @throws IllegalArgumentException if there are not exactly count fields
+   */
+  private static String[] split(String arguments, int count) throws IllegalArgumentException {
+    String[] fields = new String[count];
+    int start = 0;
+    for (int field = 0; field < count; field++) {
+      int end = field == count - 1 ? arguments.length() : arguments.indexOf(',', start);
+      if (end == -1) {
+        throw new IllegalArgumentException("Expected " + count + " arguments");
+      }
+      fields[field] = arguments.substring(start, end).strip();
+      start = end + 1;
+    }
+    if (fields[count - 1].indexOf(',') != -1) {
+      throw new IllegalArgumentException("Expected " + count + " arguments");
+    }
+    return fields;
+  }
+
+  /**
+   * Parses the line, destination, track and window of a bulk command into a selection.
+   *
+   * @param fields the fields of the command, starting with the selection
+   * @return the selection, where every empty field selects any value
+   * @throws IllegalArgumentException if a field is not valid, or only one end of the window
+   *                                  is set
+   */
+  private static DepartureSelection parseSelection(String[] fields)
+          throws IllegalArgumentException {
+    DepartureSelection selection = DepartureSelection.all();
+    if (!fields[0].isEmpty()) {
+      selection = selection.line(fields[0]);
+    }
+    if (!fields[1].isEmpty()) {
+      selection = selection.destination(fields[1]);
+    }
+    if (!fields[2].isEmpty()) {
+      selection = selection.track(parseInt(fields[2]));
+    }
+    if (fields[3].isEmpty() != fields[4].isEmpty()) {
+      throw new IllegalArgumentException("The window needs both a start and an end");
+    }
+    if (!fields[3].isEmpty()) {
+      selection = selection.between(TimetableImporter.parseTime(fields[3]),
+              TimetableImporter.parseTime(fields[4]));
+    }
+    return selection;
+  }
+
+  /**
+   * Parses an integer argument.
+   *
+   * @param text the argument to parse
+   * @return the integer value of the argument
+   * @throws IllegalArgumentException if the argument is not an integer
+   */
+  private static int parseInt(String text) throws IllegalArgumentException {
+    try {
+      return Integer.parseInt(text.strip());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The argument " + text.strip() + " is not an integer");
+    }
+  }
+}
@@ -0,0 +1,569 @@
+package edu.ntnu.stud;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A registry of train departures with a time of day, that stores the departures as parallel
+ * primitive columns instead of as TrainDeparture objects.
+ *
+ * <p>This is an alternative storage engine to {@link Registry} for very large timetables.
+ * Departure times and delays are stored as minutes of the day in {@code short} columns, the
+ * final departure time as an int minute on the timeline of service days of
+ * {@link TrainDeparture#timelineMinute}, lines and destinations as int ids from a
+ * {@link StringDictionary}, and train numbers and tracks as ints. A departure delayed past
+ * midnight therefore stays after the rest of its service day, as in {@link Registry}.</p>
+ *
+ * <p>Besides the train number index, the rows are chained per final departure minute in a
+ * ring of {@value #MINUTE_SLOTS} minutes, with the rows of a minute in train number order.
+ * Every row belongs to the current service day or, as a night service that has not left
+ * yet, to the day before, so every final departure minute falls within the ring. The line and track conflicts of a
+ * minute only visit the rows of that minute, and walking the ring gives the rows ordered by
+ * final departure time without sorting. A departure takes about 36 bytes including both
+ * indexes. TrainDeparture objects are only created when departures are returned, and
+ * changing a returned object does not change the registry.</p>
+ *
+ * <p>The methods have the same behaviour and throw the same exceptions as the methods of
+ * {@link Registry} with the same name.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public class ColumnarRegistry {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int MINUTE_SLOTS = 3 * TrainDeparture.MINUTES_PER_DAY;
+  private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+  private final StringDictionary lines;
+  private final StringDictionary destinations;
+
+  private int[] trainNumbers;
+  private short[] departureMinutes;
+  private short[] delayMinutes;
+  private int[] finalMinutes;
+  private int[] lineIds;
+  private int[] destinationIds;
+  private int[] tracks;
+  private int[] nextRowsAtMinute;
+  private int size;
+
+  private int[] rowsByTrainNumber;
+  private int rowMask;
+  private int rowShift;
+
+  private final int[] firstRowsByMinute;
+
+  private int serviceDay;
+  private LocalTime timeOfDay;
+
+  /**
+   * Constructs a new, empty ColumnarRegistry.
+   * Upon initialization it sets the time of day to 00:00.
+   */
+  public ColumnarRegistry() {
+    this.lines = new StringDictionary();
+    this.destinations = new StringDictionary();
+    this.timeOfDay = LocalTime.of(0, 0);
+    this.firstRowsByMinute = new int[MINUTE_SLOTS];
+    allocateColumns(INITIAL_CAPACITY);
+    rebuildTrainNumberIndex();
+  }
+
+  /**
+   * Returns the time of day of the registry.
+   *
+   * @return a LocalTime object containing the time of day
+   */
+  public LocalTime getTimeOfDay() {
+    return timeOfDay;
+  }
+
+  /**
+   * Returns the current service day, counted from day 0 when the registry was created.
+   *
+   * @return the service day the time of day belongs to
+   */
+  public int getServiceDay() {
+    return serviceDay;
+  }
+
+  /**
+   * Returns the number of departures in the registry.
+   *
+   * @return the number of departures
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns a List of train departures by the time ascending.
+   *
+   * @return a List of train departures by time ascending.
+   */
+  public List<TrainDeparture> getDepartures() {
+    return materializeByTime(-1);
+  }
+
+  /**
+   * Returns a list of TrainDepartures by a given destination in a ascending order.
+   * The destination must match exactly.
+   *
+   * @param destination the destination you want to search by
+   * @return a list of train departures by time ascending, empty if none match.
+   */
+  public List<TrainDeparture> getDeparturesByDestination(String destination) {
+    int destinationId = destinations.findId(destination);
+    if (destinationId == -1) {
+      return List.of();
+    }
+    return materializeByTime(destinationId);
+  }
+
+  /**
+   * Gets a train departure by train number.
+   *
+   * @param trainNumber the train number of a train you want to find
+   * @return a new TrainDeparture holding the departure with the given train number
+   * @throws IllegalArgumentException if TrainNumber does not exist
+   */
+  public TrainDeparture getTrainDepartureByTrainNumber(int trainNumber) {
+    return materialize(rowOfExisting(trainNumber));
+  }
+
+  /**
+   * Adds a train departure to the departures. The departure is added if the departure time
+   * is not before the time of day, if the departure time and line is unique,
+   * and if the train number is unique.
+   *
+   * @param departureTime a LocalTime object of a trains departure time.
+   * @param delay         a LocalTime object of a trains delay.
+   * @param destination   a String object of a trains destination.
+   * @param line          a String object of a trains line.
+   * @param trainNumber   an integer of a trains train number.
+   * @param track         an integer of the track the train is supposed to arrive at, -1 means that
+   *                      the train is unassigned.
+   * @throws IllegalArgumentException if final departure time is before time of day, if there exists
+   *                                  a train departure with the same departure time and line/track,
+   *                                  if a train departure with the same train number already
+   *                                  exists, or if any of the parameters are not valid.
+   */
+  public void addTrainDeparture(LocalTime departureTime, LocalTime delay, String destination,
+                                String line, int trainNumber, int track)
+          throws IllegalArgumentException {
+    int finalMinute = TrainDeparture.timelineMinute(serviceDay, departureTime, delay);
+
+    if (finalMinute < currentMinute()) {
+      throw new IllegalArgumentException("Departure time must not be after time of day");
+    }
+    assertLineNotOccupied(finalMinute, lines.findId(line));
+    assertTrackNotOccupied(finalMinute, track);
+    if (rowOf(trainNumber) != -1) {
+      throw new IllegalArgumentException("A train departure with this train number already exists,"
+              + " please type in a another train number");
+    }
+    TrainDeparture.assertStringNotBlank(destination);
+    TrainDeparture.assertStringNotBlank(line);
+    TrainDeparture.assertPositiveIntegerParameter(trainNumber);
+    TrainDeparture.assertPositiveIntegerOrNegativeOne(track);
+
+    if (size == trainNumbers.length) {
+      allocateColumns(size * 2);
+    }
+    int row = size++;
+    trainNumbers[row] = trainNumber;
+    departureMinutes[row] = (short) minuteOf(departureTime);
+    delayMinutes[row] = (short) minuteOf(delay);
+    finalMinutes[row] = finalMinute;
+    lineIds[row] = lines.idOf(line);
+    destinationIds[row] = destinations.idOf(destination);
+    tracks[row] = track;
+    linkRow(row);
+
+    if (size > rowsByTrainNumber.length >>> 1) {
+      rebuildTrainNumberIndex();
+    } else {
+      indexRow(row);
+    }
+  }
+
+  /**
+   * Sets the time of day if the new time of day is after the current time of day, and
+   * removes the departures before the new time of day by compacting the columns. The time of
+   * day stays on the current service day, use {@link #startServiceDay(int)} to move on.
+   *
+   * @param newTime a LocalTime object of the new time the time of day is to be set to
+   * @throws IllegalArgumentException if newTime is before current timeOfDay
+   */
+  public void setTimeOfDay(LocalTime newTime) throws IllegalArgumentException {
+    if (newTime.isBefore(timeOfDay)) {
+      throw new IllegalArgumentException("New time " + newTime
+              + " must be after current time of day " + timeOfDay);
+    }
+
+    removeRowsBefore(TrainDeparture.timelineMinute(serviceDay, newTime, LocalTime.MIN));
+    this.timeOfDay = newTime;
+  }
+
+  /**
+   * Moves the clock to 00:00 on a later service day. Every departure of the earlier days is
+   * removed, except departures delayed past midnight that have not left yet.
+   *
+   * @param newServiceDay the service day to start
+   * @throws IllegalArgumentException if the service day is not after the current service day
+   */
+  public void startServiceDay(int newServiceDay) throws IllegalArgumentException {
+    if (newServiceDay <= serviceDay) {
+      throw new IllegalArgumentException("New service day " + newServiceDay
+              + " must be after current service day " + serviceDay);
+    }
+    removeRowsBefore(newServiceDay * TrainDeparture.MINUTES_PER_DAY);
+    this.serviceDay = newServiceDay;
+    this.timeOfDay = LocalTime.MIN;
+  }
+
+  /**
+   * Removes the departures whose final departure minute is before a minute, by compacting
+   * the columns.
+   *
+   * @param minute the first minute on the timeline of service days that is kept
+   */
+  private void removeRowsBefore(int minute) {
+    int kept = 0;
+    for (int row = 0; row < size; row++) {
+      if (finalMinutes[row] >= minute) {
+        moveRow(row, kept++);
+      }
+    }
+    if (kept != size) {
+      size = kept;
+      rebuildTrainNumberIndex();
+      rebuildMinuteIndex();
+    }
+  }
+
+  /**
+   * Asserts that a track is not occupied by another train departure at the same time,
+   * unless the track is unassigned (-1). After the assertion is made, the track is set.
+   *
+   * @param trainNumber the train number of the train departure to be updated.
+   * @param track       the track the train is supposed to arrive at,
+   *                    -1 means that the train is unassigned
+   * @throws IllegalArgumentException if the train number does not exist, if the track is not
+   *                                  valid or if the track is occupied by another train
+   *                                  departure at the same time.
+   */
+  public void assertAndSetTrack(int trainNumber, int track) throws IllegalArgumentException {
+    int row = rowOfExisting(trainNumber);
+    assertTrackNotOccupied(finalMinutes[row], track);
+    TrainDeparture.assertPositiveIntegerOrNegativeOne(track);
+    tracks[row] = track;
+  }
+
+  /**
+   * Asserts that that the new time will not collide with any other train that has
+   * the same line and the same track. After the assertion is made, the delay is set.
+   *
+   * @param trainNumber the train number of the train departure to be updated.
+   * @param delay       the delay to be added to the departure time.
+   * @throws IllegalArgumentException if the train number does not exist, or if the new final
+   *                                  departure time collides on line or track.
+   */
+  public void assertAndSetDelay(int trainNumber, LocalTime delay) throws IllegalArgumentException {
+    int row = rowOfExisting(trainNumber);
+    int finalMinute = TrainDeparture.timelineMinute(serviceDayOf(row),
+            timeOf(departureMinutes[row]), delay);
+
+    assertLineNotOccupied(finalMinute, lineIds[row]);
+    assertTrackNotOccupied(finalMinute, tracks[row]);
+
+    unlinkRow(row);
+    delayMinutes[row] = (short) minuteOf(delay);
+    finalMinutes[row] = finalMinute;
+    linkRow(row);
+  }
+
+  /**
+   * Asserts that departures is not empty.
+   *
+   * @throws IllegalArgumentException if departures is empty.
+   */
+  public void assertDeparturesNotEmpty() throws IllegalArgumentException {
+    if (size == 0) {
+      throw new IllegalArgumentException("Option is not available because "
+              + "no train departures exist. Please add a train departure to use this option.");
+    }
+  }
+
+  /**
+   * Asserts that final departure time and line is a unique combination in departures.
+   *
+   * @param finalMinute the final departure minute on the timeline of service days
+   * @param lineId      the id of the line, or -1 if the line is not in the registry
+   * @throws IllegalArgumentException if there exists a train departure with
+   *                                  the same departure time and line.
+   */
+  private void assertLineNotOccupied(int finalMinute, int lineId)
+          throws IllegalArgumentException {
+    if (lineId == -1) {
+      return;
+    }
+    for (int row = firstRowAt(finalMinute); row != -1; row = nextRowsAtMinute[row] - 1) {
+      if (finalMinutes[row] == finalMinute && lineIds[row] == lineId) {
+        throw new IllegalArgumentException("A train departure with this departure time and line "
+                + "already exists");
+      }
+    }
+  }
+
+  /**
+   * Asserts that final departure time and track is a unique combination in departures.
+   * Unless track is unassigned (-1).
+   *
+   * @param finalMinute the final departure minute on the timeline of service days
+   * @param track       the track the train is supposed to arrive at,
+   *                    -1 means that the train is unassigned
+   * @throws IllegalArgumentException if there exists a train departure with the same
+   *                                  departure time and track. Unless the track is unassigned (-1).
+   */
+  private void assertTrackNotOccupied(int finalMinute, int track)
+          throws IllegalArgumentException {
+    if (track == -1) {
+      return;
+    }
+    for (int row = firstRowAt(finalMinute); row != -1; row = nextRowsAtMinute[row] - 1) {
+      if (finalMinutes[row] == finalMinute && tracks[row] == track) {
+        throw new IllegalArgumentException("A train departure with this departure time and track "
+                + "already exists");
+      }
+    }
+  }
+
+  /**
+   * Returns the row of an existing train number.
+   *
+   * @param trainNumber the train number to look for
+   * @return the row of the train number
+   * @throws IllegalArgumentException if the train number does not exist
+   */
+  private int rowOfExisting(int trainNumber) throws IllegalArgumentException {
+    int row = rowOf(trainNumber);
+    if (row == -1) {
+      throw new IllegalArgumentException("A train departure with this train number does not exist"
+              + " please type in another train number");
+    }
+    return row;
+  }
+
+  /**
+   * Returns the row of a train number from the train number index.
+   *
+   * @param trainNumber the train number to look for
+   * @return the row of the train number, or -1 if it does not exist
+   */
+  private int rowOf(int trainNumber) {
+    int slot = (trainNumber * GOLDEN_RATIO) >>> rowShift;
+    while (rowsByTrainNumber[slot] != 0) {
+      int row = rowsByTrainNumber[slot] - 1;
+      if (trainNumbers[row] == trainNumber) {
+        return row;
+      }
+      slot = (slot + 1) & rowMask;
+    }
+    return -1;
+  }
+
+  /**
+   * Adds a row to the train number index. The index stores row + 1, so that 0 is an empty slot.
+   *
+   * @param row the row to add
+   */
+  private void indexRow(int row) {
+    int slot = (trainNumbers[row] * GOLDEN_RATIO) >>> rowShift;
+    while (rowsByTrainNumber[slot] != 0) {
+      slot = (slot + 1) & rowMask;
+    }
+    rowsByTrainNumber[slot] = row + 1;
+  }
+
+  /**
+   * Rebuilds the train number index with room for twice the number of departures.
+   */
+  private void rebuildTrainNumberIndex() {
+    int capacity = Integer.highestOneBit(Math.max(INITIAL_CAPACITY, size * 2) - 1) << 1;
+    rowsByTrainNumber = new int[capacity];
+    rowMask = capacity - 1;
+    rowShift = Integer.numberOfLeadingZeros(capacity - 1);
+    for (int row = 0; row < size; row++) {
+      indexRow(row);
+    }
+  }
+
+  /**
+   * Returns the first row of the chain of a minute in the minute index.
+   *
+   * @param minute the final departure minute on the timeline of service days
+   * @return the first row at the minute, or -1 if no row is at the minute
+   */
+  private int firstRowAt(int minute) {
+    return firstRowsByMinute[Math.floorMod(minute, MINUTE_SLOTS)] - 1;
+  }
+
+  /**
+   * Adds a row to the chain of its final departure minute, after the rows with a lower train
+   * number. Like the train number index, the chains store row + 1, so that 0 ends a chain.
+   *
+   * @param row the row to add
+   */
+  private void linkRow(int row) {
+    int previous = -1;
+    int next = firstRowAt(finalMinutes[row]);
+    while (next != -1 && trainNumbers[next] < trainNumbers[row]) {
+      previous = next;
+      next = nextRowsAtMinute[next] - 1;
+    }
+    nextRowsAtMinute[row] = next + 1;
+    if (previous == -1) {
+      firstRowsByMinute[Math.floorMod(finalMinutes[row], MINUTE_SLOTS)] = row + 1;
+    } else {
+      nextRowsAtMinute[previous] = row + 1;
+    }
+  }
+
+  /**
+   * Removes a row from the chain of its final departure minute. Must be called before the
+   * final departure minute of the row changes.
+   *
+   * @param row the row to remove
+   */
+  private void unlinkRow(int row) {
+    int previous = -1;
+    int current = firstRowAt(finalMinutes[row]);
+    while (current != row) {
+      previous = current;
+      current = nextRowsAtMinute[current] - 1;
+    }
+    if (previous == -1) {
+      firstRowsByMinute[Math.floorMod(finalMinutes[row], MINUTE_SLOTS)] = nextRowsAtMinute[row];
+    } else {
+      nextRowsAtMinute[previous] = nextRowsAtMinute[row];
+    }
+  }
+
+  /**
+   * Rebuilds the minute index after the rows have been compacted.
+   */
+  private void rebuildMinuteIndex() {
+    Arrays.fill(firstRowsByMinute, 0);
+    for (int row = 0; row < size; row++) {
+      linkRow(row);
+    }
+  }
+
+  /**
+   * Grows every column to the given capacity, keeping the existing rows.
+   *
+   * @param capacity the new number of rows the columns can hold
+   */
+  private void allocateColumns(int capacity) {
+    if (trainNumbers == null) {
+      trainNumbers = new int[capacity];
+      departureMinutes = new short[capacity];
+      delayMinutes = new short[capacity];
+      finalMinutes = new int[capacity];
+      lineIds = new int[capacity];
+      destinationIds = new int[capacity];
+      tracks = new int[capacity];
+      nextRowsAtMinute = new int[capacity];
+      return;
+    }
+    trainNumbers = Arrays.copyOf(trainNumbers, capacity);
+    departureMinutes = Arrays.copyOf(departureMinutes, capacity);
+    delayMinutes = Arrays.copyOf(delayMinutes, capacity);
+    finalMinutes = Arrays.copyOf(finalMinutes, capacity);
+    lineIds = Arrays.copyOf(lineIds, capacity);
+    destinationIds = Arrays.copyOf(destinationIds, capacity);
+    tracks = Arrays.copyOf(tracks, capacity);
+    nextRowsAtMinute = Arrays.copyOf(nextRowsAtMinute, capacity);
+  }
+
+  /**
+   * Copies a row to another row in every column.
+   *
+   * @param from the row to copy
+   * @param to   the row to overwrite
+   */
+  private void moveRow(int from, int to) {
+    trainNumbers[to] = trainNumbers[from];
+    departureMinutes[to] = departureMinutes[from];
+    delayMinutes[to] = delayMinutes[from];
+    finalMinutes[to] = finalMinutes[from];
+    lineIds[to] = lineIds[from];
+    destinationIds[to] = destinationIds[from];
+    tracks[to] = tracks[from];
+  }
+
+  /**
+   * Creates the TrainDepartures of the rows in order of final departure time, by walking the
+   * minute index from the first minute of the day before the current service day.
+   *
+   * @param destinationId the id of the destination of the rows, or -1 for every row
+   * @return a list of train departures by time ascending
+   */
+  private List<TrainDeparture> materializeByTime(int destinationId) {
+    List<TrainDeparture> departures = new ArrayList<>();
+    int firstMinute = (serviceDay - 1) * TrainDeparture.MINUTES_PER_DAY;
+    for (int minute = firstMinute; minute < firstMinute + MINUTE_SLOTS; minute++) {
+      for (int row = firstRowAt(minute); row != -1; row = nextRowsAtMinute[row] - 1) {
+        if (destinationId == -1 || destinationIds[row] == destinationId) {
+          departures.add(materialize(row));
+        }
+      }
+    }
+    return departures;
+  }
+
+  /**
+   * Creates a TrainDeparture holding the departure of a row.
+   *
+   * @param row the row of the departure
+   * @return a new TrainDeparture with the values of the row
+   */
+  private TrainDeparture materialize(int row) {
+    return new TrainDeparture(timeOf(departureMinutes[row]), timeOf(delayMinutes[row]),
+            destinations.stringOf(destinationIds[row]), lines.stringOf(lineIds[row]),
+            trainNumbers[row], tracks[row], serviceDayOf(row));
+  }
+
+  /**
+   * Returns the service day of a row, which is not stored since it follows from the final
+   * departure minute, the departure time and the delay.
+   *
+   * @param row the row of the departure
+   * @return the service day the departure belongs to
+   */
+  private int serviceDayOf(int row) {
+    return (finalMinutes[row] - departureMinutes[row] - delayMinutes[row])
+            / TrainDeparture.MINUTES_PER_DAY;
+  }
+
+  /**
+   * Returns the current minute on the timeline of service days.
+   *
+   * @return the minute of the time of day on the current service day
+   */
+  private int currentMinute() {
+    return TrainDeparture.timelineMinute(serviceDay, timeOfDay, LocalTime.MIN);
+  }
+
+  private static int minuteOf(LocalTime time) {
+    return time.getHour() * 60 + time.getMinute();
+  }
+
+  private static LocalTime timeOf(int minute) {
+    return LocalTime.of(minute / 60, minute % 60);
+  }
+}
@@ -0,0 +1,309 @@
+package edu.ntnu.stud;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Registry} that can be shared between many reading threads, such as departure
+ * boards, and dispatcher threads that change it.
+ *
+ * <p>Every public method of Registry is guarded by a {@link StampedLock}:</p>
+ * <ul>
+ *     <li>Reads of a single field, like the time of day and the size, are first tried as an
+ *     optimistic read that takes no lock at all. Only if a write happened at the same time
+ *     is the read repeated under a read lock. Checks that count a rejection, like
+ *     {@link #assertDeparturesNotEmpty()}, take a read lock, so a rejection is counted
+ *     once.</li>
+ *     <li>Lookups by train number and queries that walk an index, like
+ *     {@link #getDepartures()}, take a read lock. The train number table is probed through
+ *     plain arrays that a write may be resizing, so it is never read optimistically. Read
+ *     locks are shared, so readers never block each other.</li>
+ *     <li>Methods that change the registry take the write lock for the whole
+ *     validate-then-change sequence, so no other thread can change the registry between
+ *     the validation and the change.</li>
+ *     <li>{@link #getVersion()} takes no lock, since it is a single volatile read of an
+ *     immutable version.</li>
+ * </ul>
+ *
+ * <p>The lock is not reentrant. Registry therefore never calls its own public methods
+ * internally, and every public method added to Registry must be overridden here.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public class ConcurrentRegistry extends Registry {
+  private final StampedLock lock;
+
+  /**
+   * Constructs a new, empty ConcurrentRegistry with the time of day 00:00.
+   */
+  public ConcurrentRegistry() {
+    super();
+    this.lock = new StampedLock();
+  }
+
+  @Override
+  public LocalTime getTimeOfDay() {
+    return optimisticRead(super::getTimeOfDay);
+  }
+
+  @Override
+  public int getServiceDay() {
+    return optimisticRead(super::getServiceDay);
+  }
+
+  @Override
+  public int size() {
+    return optimisticRead(super::size);
+  }
+
+  @Override
+  public List<TrainDeparture> getDepartures() {
+    return read(super::getDepartures);
+  }
+
+  @Override
+  public List<TrainDeparture> getDeparturesByDestination(String destination) {
+    return read(() -> super.getDeparturesByDestination(destination));
+  }
+
+  @Override
+  public List<TrainDeparture> getDeparturesByDestinationIgnoreCase(String destination) {
+    return read(() -> super.getDeparturesByDestinationIgnoreCase(destination));
+  }
+
+  @Override
+  public List<TrainDeparture> getDeparturesByDestinationPrefix(String prefix) {
+    return read(() -> super.getDeparturesByDestinationPrefix(prefix));
+  }
+
+  @Override
+  public List<TrainDeparture> getNextDepartures(int n, LocalTime from)
+          throws IllegalArgumentException {
+    return read(() -> super.getNextDepartures(n, from));
+  }
+
+  @Override
+  public List<TrainDeparture> getNextDeparturesOnTrack(int n, LocalTime from, int track)
+          throws IllegalArgumentException {
+    return read(() -> super.getNextDeparturesOnTrack(n, from, track));
+  }
+
+  @Override
+  public List<TrainDeparture> getNextDeparturesOnLine(int n, LocalTime from, String line)
+          throws IllegalArgumentException {
+    return read(() -> super.getNextDeparturesOnLine(n, from, line));
+  }
+
+  @Override
+  public Page query(DepartureSelection selection, int offset, int limit)
+          throws IllegalArgumentException {
+    return read(() -> super.query(selection, offset, limit));
+  }
+
+  @Override
+  public TrainDeparture getTrainDepartureByTrainNumber(int trainNumber) {
+    return read(() -> super.getTrainDepartureByTrainNumber(trainNumber));
+  }
+
+  @Override
+  public void addTrainDeparture(LocalTime departureTime, LocalTime delay, String destination,
+                                String line, int trainNumber, int track)
+          throws IllegalArgumentException {
+    write(() -> super.addTrainDeparture(departureTime, delay, destination, line, trainNumber,
+            track));
+  }
+
+  @Override
+  public int addTrainDepartures(List<TrainDeparture> batch, BiConsumer<Integer, String> rejected) {
+    return writeAndGet(() -> super.addTrainDepartures(batch, rejected));
+  }
+
+  @Override
+  public void setTimeOfDay(LocalTime newTime) throws IllegalArgumentException {
+    write(() -> super.setTimeOfDay(newTime));
+  }
+
+  @Override
+  public void startServiceDay(int newServiceDay) throws IllegalArgumentException {
+    write(() -> super.startServiceDay(newServiceDay));
+  }
+
+  @Override
+  public void setJournal(RegistryJournal journal) throws IOException {
+    long stamp = lock.writeLock();
+    try {
+      super.setJournal(journal);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void setEventStream(RegistryEventStream events) {
+    write(() -> super.setEventStream(events));
+  }
+
+  @Override
+  public void setMetrics(RegistryMetrics metrics) {
+    write(() -> super.setMetrics(metrics));
+  }
+
+  @Override
+  public void enableVersions() {
+    write(() -> super.enableVersions());
+  }
+
+  @Override
+  public RegistryVersion getVersion() {
+    return super.getVersion();
+  }
+
+  @Override
+  public void writeSnapshot(Path snapshot) throws IOException {
+    long stamp = lock.readLock();
+    try {
+      super.writeSnapshot(snapshot);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  void restore(Collection<TrainDeparture> trainDepartures, int serviceDay, LocalTime timeOfDay) {
+    write(() -> super.restore(trainDepartures, serviceDay, timeOfDay));
+  }
+
+  @Override
+  public void assertUniqueDepartureScheduling(LocalTime departureTime, String line, int track) {
+    read(() -> {
+      super.assertUniqueDepartureScheduling(departureTime, line, track);
+      return null;
+    });
+  }
+
+  @Override
+  public void assertAndSetTrack(int trainNumber, int track) throws IllegalArgumentException {
+    write(() -> super.assertAndSetTrack(trainNumber, track));
+  }
+
+  @Override
+  public List<TrainDeparture> assignTracks(int tracks, int occupiedMinutes)
+          throws IllegalArgumentException {
+    return writeAndGet(() -> super.assignTracks(tracks, occupiedMinutes));
+  }
+
+  @Override
+  public List<TrainDeparture> propagateDelay(int trainNumber, LocalTime delay)
+          throws IllegalArgumentException {
+    return writeAndGet(() -> super.propagateDelay(trainNumber, delay));
+  }
+
+  @Override
+  public List<TrainDeparture> addDelay(DepartureSelection selection, LocalTime extraDelay)
+          throws IllegalArgumentException {
+    return writeAndGet(() -> super.addDelay(selection, extraDelay));
+  }
+
+  @Override
+  public List<TrainDeparture> moveToTrack(DepartureSelection selection, int track)
+          throws IllegalArgumentException {
+    return writeAndGet(() -> super.moveToTrack(selection, track));
+  }
+
+  @Override
+  public void assertAndSetDelay(int trainNumber, LocalTime delay) {
+    write(() -> super.assertAndSetDelay(trainNumber, delay));
+  }
+
+  @Override
+  public void assertDeparturesNotEmpty() throws IllegalArgumentException {
+    read(() -> {
+      super.assertDeparturesNotEmpty();
+      return null;
+    });
+  }
+
+  @Override
+  public String toString() {
+    return read(super::toString);
+  }
+
+  /**
+   * Runs a read without taking a lock, and runs it again under a read lock if a write
+   * happened in the meantime. The read may see the registry in the middle of a write, so
+   * its result, and any exception it throws, is only used if the stamp is still valid.
+   *
+   * @param reader the read to run, which must not change the registry and must only read
+   *               single fields, so it can not loop or fail on a half-written structure
+   * @param <T>    the type of the result
+   * @return the result of the read
+   */
+  private <T> T optimisticRead(Supplier<T> reader) {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        T result = reader.get();
+        if (lock.validate(stamp)) {
+          return result;
+        }
+      } catch (RuntimeException e) {
+        if (lock.validate(stamp)) {
+          throw e;
+        }
+      }
+    }
+    return read(reader);
+  }
+
+  /**
+   * Runs a read under a read lock.
+   *
+   * @param reader the read to run, which must not change the registry
+   * @param <T>    the type of the result
+   * @return the result of the read
+   */
+  private <T> T read(Supplier<T> reader) {
+    long stamp = lock.readLock();
+    try {
+      return reader.get();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Runs a change under the write lock.
+   *
+   * @param writer the change to run
+   */
+  private void write(Runnable writer) {
+    writeAndGet(() -> {
+      writer.run();
+      return null;
+    });
+  }
+
+  /**
+   * Runs a change that has a result under the write lock.
+   *
+   * @param writer the change to run
+   * @param <T>    the type of the result
+   * @return the result of the change
+   */
+  private <T> T writeAndGet(Supplier<T> writer) {
+    long stamp = lock.writeLock();
+    try {
+      return writer.get();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+}
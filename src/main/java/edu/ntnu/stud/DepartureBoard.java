@@ -0,0 +1,99 @@
+package edu.ntnu.stud;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws frames of text lines, such as a departure board, on an ANSI terminal.
+ *
+ * <p>The first frame clears the screen and draws every line. Every following frame is
+ * compared line by line to the previous frame, and only the lines that changed are redrawn,
+ * by moving the cursor to the line and overwriting it. A frame is built in memory and
+ * written to the terminal with a single write, so the terminal never shows half a frame.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public class DepartureBoard {
+  private static final String ESCAPE = "\u001b[";
+  private static final String CLEAR_SCREEN = ESCAPE + "2J";
+  private static final String CLEAR_LINE = ESCAPE + "K";
+
+  private final Writer terminal;
+  private final List<String> shown;
+  private boolean cleared;
+
+  /**
+   * Constructs a board that draws on the given terminal.
+   *
+   * @param terminal the terminal to write frames to
+   */
+  public DepartureBoard(Writer terminal) {
+    this.terminal = terminal;
+    this.shown = new ArrayList<>();
+  }
+
+  /**
+   * Draws a frame, redrawing only the lines that differ from the previous frame.
+   *
+   * @param lines the lines of the frame, from the top of the screen
+   * @return the number of lines that were redrawn
+   * @throws UncheckedIOException if the frame can not be written
+   */
+  public int draw(List<String> lines) {
+    StringBuilder frame = new StringBuilder();
+    if (!cleared) {
+      frame.append(CLEAR_SCREEN);
+      cleared = true;
+    }
+
+    int redrawn = 0;
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i);
+      if (i < shown.size() && shown.get(i).equals(line)) {
+        continue;
+      }
+      moveTo(frame, i).append(line).append(CLEAR_LINE);
+      redrawn++;
+    }
+    for (int i = lines.size(); i < shown.size(); i++) {
+      moveTo(frame, i).append(CLEAR_LINE);
+      redrawn++;
+    }
+    moveTo(frame, lines.size());
+
+    shown.clear();
+    shown.addAll(lines);
+
+    try {
+      terminal.write(frame.toString());
+      terminal.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("The departure board could not be drawn", e);
+    }
+    return redrawn;
+  }
+
+  /**
+   * Forgets the previous frame, so that the next frame clears the screen and is drawn in full.
+   */
+  public void reset() {
+    shown.clear();
+    cleared = false;
+  }
+
+  /**
+   * Appends the escape sequence that moves the cursor to the start of a line.
+   *
+   * @param frame the frame being built
+   * @param line  the line to move to, from 0
+   * @return the frame
+   */
+  private static StringBuilder moveTo(StringBuilder frame, int line) {
+    return frame.append(ESCAPE).append(line + 1).append(";1H");
+  }
+}
@@ -0,0 +1,225 @@
+package edu.ntnu.stud;
+
+import java.time.LocalTime;
+
+/**
+ * Selects train departures in a {@link Registry} by line, destination, track, a window of
+ * final departure times on the current service day and whether they are delayed. A selection
+ * is used both to query the registry with {@link Registry#query} and for bulk changes.
+ *
+ * <p>A selection starts from {@link #all()} and is narrowed with the other methods, which
+ * each return a new selection. Every criterion that is not set matches every departure.
+ * For example, every delayed L4 departure between 14:00 and 16:00:</p>
+ * <pre>
+ * DepartureSelection.all().line("L4").between(LocalTime.of(14, 0), LocalTime.of(16, 0))
+ *         .delayedOnly();
+ * </pre>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public final class DepartureSelection {
+  static final int ANY_TRACK = 0;
+
+  private static final DepartureSelection ALL =
+          new DepartureSelection(null, null, ANY_TRACK, null, null, false);
+
+  private final String line;
+  private final String destination;
+  private final String normalizedDestination;
+  private final int track;
+  private final LocalTime from;
+  private final LocalTime to;
+  private final boolean delayedOnly;
+
+  /**
+   * Constructs a selection.
+   *
+   * @param line        the line to select, or null for any line
+   * @param destination the destination to select regardless of case, or null for any
+   * @param track       the track to select, -1 for unassigned or {@value #ANY_TRACK} for any
+   * @param from        the first final departure time to select, or null for no window
+   * @param to          the last final departure time to select, or null for no window
+   * @param delayedOnly true to only select delayed departures
+   */
+  private DepartureSelection(String line, String destination, int track, LocalTime from,
+                             LocalTime to, boolean delayedOnly) {
+    this.line = line;
+    this.destination = destination;
+    this.normalizedDestination = destination == null
+            ? null : Registry.normalizeDestination(destination);
+    this.track = track;
+    this.from = from;
+    this.to = to;
+    this.delayedOnly = delayedOnly;
+  }
+
+  /**
+   * Returns a selection of every train departure.
+   *
+   * @return the selection of every train departure
+   */
+  public static DepartureSelection all() {
+    return ALL;
+  }
+
+  /**
+   * Returns a selection with every criterion given at once, as read back from a journal.
+   *
+   * @param line        the line to select, or null for any line
+   * @param destination the destination to select regardless of case, or null for any
+   * @param track       the track to select, -1 for unassigned or {@value #ANY_TRACK} for any
+   * @param from        the first final departure time to select, or null for no window
+   * @param to          the last final departure time to select, or null for no window
+   * @param delayedOnly true to only select delayed departures
+   * @return the selection
+   */
+  static DepartureSelection of(String line, String destination, int track, LocalTime from,
+                               LocalTime to, boolean delayedOnly) {
+    return new DepartureSelection(line, destination, track, from, to, delayedOnly);
+  }
+
+  /**
+   * Returns a selection that only keeps the departures on a line.
+   *
+   * @param line the line to select
+   * @return the narrowed selection
+   * @throws IllegalArgumentException if the line is blank
+   */
+  public DepartureSelection line(String line) throws IllegalArgumentException {
+    TrainDeparture.assertStringNotBlank(line);
+    return new DepartureSelection(line, destination, track, from, to, delayedOnly);
+  }
+
+  /**
+   * Returns a selection that only keeps the departures to a destination, regardless of case.
+   *
+   * @param destination the destination to select
+   * @return the narrowed selection
+   * @throws IllegalArgumentException if the destination is blank
+   */
+  public DepartureSelection destination(String destination) throws IllegalArgumentException {
+    TrainDeparture.assertStringNotBlank(destination);
+    return new DepartureSelection(line, destination, track, from, to, delayedOnly);
+  }
+
+  /**
+   * Returns a selection that only keeps the departures on a track.
+   *
+   * @param track the track to select, -1 for the unassigned departures
+   * @return the narrowed selection
+   * @throws IllegalArgumentException if the track is not positive or -1
+   */
+  public DepartureSelection track(int track) throws IllegalArgumentException {
+    TrainDeparture.assertPositiveIntegerOrNegativeOne(track);
+    return new DepartureSelection(line, destination, track, from, to, delayedOnly);
+  }
+
+  /**
+   * Returns a selection that only keeps the departures with a final departure time in a
+   * window on the current service day, including both ends.
+   *
+   * @param from the first final departure time to select
+   * @param to   the last final departure time to select
+   * @return the narrowed selection
+   * @throws IllegalArgumentException if the window ends before it starts
+   */
+  public DepartureSelection between(LocalTime from, LocalTime to)
+          throws IllegalArgumentException {
+    if (to.isBefore(from)) {
+      throw new IllegalArgumentException("The window ends at " + to + " before it starts at "
+              + from);
+    }
+    return new DepartureSelection(line, destination, track, from, to, delayedOnly);
+  }
+
+  /**
+   * Returns a selection that only keeps the departures that have a delay.
+   *
+   * @return the narrowed selection
+   */
+  public DepartureSelection delayedOnly() {
+    return new DepartureSelection(line, destination, track, from, to, true);
+  }
+
+  /**
+   * Returns a selection that only keeps the departures without an assigned track.
+   *
+   * @return the narrowed selection
+   */
+  public DepartureSelection unassignedOnly() {
+    return track(-1);
+  }
+
+  /**
+   * Returns the line of the selection.
+   *
+   * @return the line to select, or null for any line
+   */
+  String getLine() {
+    return line;
+  }
+
+  /**
+   * Returns the destination of the selection.
+   *
+   * @return the destination to select regardless of case, or null for any destination
+   */
+  String getDestination() {
+    return destination;
+  }
+
+  /**
+   * Returns the track of the selection.
+   *
+   * @return the track to select, -1 for unassigned or {@value #ANY_TRACK} for any track
+   */
+  int getTrack() {
+    return track;
+  }
+
+  /**
+   * Returns the start of the window of the selection.
+   *
+   * @return the first final departure time to select, or null if there is no window
+   */
+  LocalTime getFrom() {
+    return from;
+  }
+
+  /**
+   * Returns the end of the window of the selection.
+   *
+   * @return the last final departure time to select, or null if there is no window
+   */
+  LocalTime getTo() {
+    return to;
+  }
+
+  /**
+   * Returns whether the selection only keeps delayed departures.
+   *
+   * @return true if only delayed departures are selected
+   */
+  boolean isDelayedOnly() {
+    return delayedOnly;
+  }
+
+  /**
+   * Checks whether a train departure matches the line, destination, track and delay of the
+   * selection. The window is matched by cutting it out of the ordered index the departures
+   * are taken from. The destination of the selection is normalized once when the selection
+   * is made, so checking a departure does not allocate.
+   *
+   * @param trainDeparture the train departure to check
+   * @return true if the train departure matches, otherwise false
+   */
+  boolean matches(TrainDeparture trainDeparture) {
+    return (line == null || line.equals(trainDeparture.getLine()))
+            && (track == ANY_TRACK || track == trainDeparture.getTrack())
+            && (normalizedDestination == null || normalizedDestination
+                    .equalsIgnoreCase(trainDeparture.getDestination().strip()))
+            && (!delayedOnly || !trainDeparture.getDelay().equals(LocalTime.MIN));
+  }
+}
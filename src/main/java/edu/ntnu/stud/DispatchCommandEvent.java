@@ -0,0 +1,43 @@
+package edu.ntnu.stud;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for one command of the menu of {@link UserInterface} or of a
+ * {@link BatchCommandRunner}. The {@link RegistryOperationEvent}s of the command are
+ * recorded on the same thread within the duration of this event.
+ *
+ * <p>Like the registry events, the event is disabled unless a recording enables it.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+@Name("edu.ntnu.stud.DispatchCommand")
+@Label("Dispatch Command")
+@Category({"Train Dispatch", "Commands"})
+@Description("A command of the dispatch menu or of a batch of commands")
+@Enabled(false)
+@StackTrace(false)
+final class DispatchCommandEvent extends Event {
+  @Label("Command")
+  String command;
+
+  @Label("Train Number")
+  @Description("The train number the command is about, or 0 if it is not about one train")
+  int trainNumber;
+
+  @Label("Registry Size")
+  @Description("The number of train departures after the command")
+  int registrySize;
+
+  @Label("Outcome")
+  @Description("OK, or why the command was rejected or failed")
+  String outcome;
+}
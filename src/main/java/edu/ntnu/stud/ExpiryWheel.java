@@ -0,0 +1,101 @@
+package edu.ntnu.stud;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Schedules train departures for removal by their final departure minute, in one bucket per
+ * minute and a ring of {@value #DAY_SLOTS} service days.
+ *
+ * <p>Advancing the time only visits the buckets of the minutes that passed, so the cost of
+ * advancing grows with the number of departures that leave and not with the number of
+ * departures that are scheduled. The ring holds the current service day, the next service
+ * day that can be planned, and the day after for departures of the next day that are delayed
+ * past midnight. A day slot is reused for a new service day once its day has passed.</p>
+ *
+ * <p>When the final departure time of a departure changes, it is scheduled again in its new
+ * bucket and the old entry is left behind. Entries that no longer match the final departure
+ * minute of their departure are skipped when their bucket is visited. Departures whose final
+ * departure minute is already behind the wheel, because their delay was shortened, are kept
+ * as overdue and leave at the next advance.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+final class ExpiryWheel {
+  static final int DAY_SLOTS = 3;
+  private static final int BUCKETS = DAY_SLOTS * TrainDeparture.MINUTES_PER_DAY;
+
+  private final List<List<TrainDeparture>> buckets;
+  private final ArrayList<TrainDeparture> overdue;
+  private int currentMinute;
+
+  /**
+   * Constructs an empty wheel.
+   *
+   * @param currentMinute the current minute on the timeline of service days
+   */
+  ExpiryWheel(int currentMinute) {
+    this.buckets = new ArrayList<>(Collections.nCopies(BUCKETS, null));
+    this.overdue = new ArrayList<>();
+    this.currentMinute = currentMinute;
+  }
+
+  /**
+   * Schedules a departure for removal at its current final departure minute. Called when a
+   * departure is added, and again whenever its final departure time changes.
+   *
+   * @param trainDeparture the train departure to schedule, with a final departure minute
+   *                       before the end of the last day slot of the ring
+   */
+  void schedule(TrainDeparture trainDeparture) {
+    int minute = trainDeparture.getFinalDepartureMinute();
+    if (minute < currentMinute) {
+      overdue.add(trainDeparture);
+      return;
+    }
+    int index = minute % BUCKETS;
+    List<TrainDeparture> bucket = buckets.get(index);
+    if (bucket == null) {
+      bucket = new ArrayList<>();
+      buckets.set(index, bucket);
+    }
+    bucket.add(trainDeparture);
+  }
+
+  /**
+   * Advances the wheel to a new minute, and hands every scheduled departure whose final
+   * departure minute is before the new minute to a consumer. A departure that was scheduled
+   * more than once in the same minute is handed over once per entry, so the consumer must
+   * ignore departures it has already removed.
+   *
+   * @param newMinute the new minute on the timeline, not before the minute of the wheel
+   * @param expired   called with every departure that leaves
+   */
+  void advance(int newMinute, Consumer<TrainDeparture> expired) {
+    if (!overdue.isEmpty()) {
+      for (TrainDeparture trainDeparture : overdue) {
+        if (trainDeparture.getFinalDepartureMinute() < currentMinute) {
+          expired.accept(trainDeparture);
+        }
+      }
+      overdue.clear();
+    }
+
+    int end = Math.min(newMinute, currentMinute + BUCKETS);
+    for (int minute = currentMinute; minute < end; minute++) {
+      List<TrainDeparture> bucket = buckets.set(minute % BUCKETS, null);
+      if (bucket != null) {
+        for (TrainDeparture trainDeparture : bucket) {
+          if (trainDeparture.getFinalDepartureMinute() == minute) {
+            expired.accept(trainDeparture);
+          }
+        }
+      }
+    }
+    currentMinute = newMinute;
+  }
+}
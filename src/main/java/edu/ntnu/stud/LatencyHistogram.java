@@ -0,0 +1,114 @@
+package edu.ntnu.stud;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds that any number of threads can record into without
+ * locks, used by {@link RegistryMetrics}.
+ *
+ * <p>Latencies below {@value #SUB_BUCKETS} nanoseconds have a bucket each. Every larger
+ * power of two is split into {@value #SUB_BUCKETS} buckets of equal width, so a percentile is
+ * never more than 12.5% above the latency it stands for, and all latencies fit in a fixed
+ * array of counters. Recording a latency is a single atomic increment.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds, counted as 0 if it is negative
+   */
+  void record(long nanos) {
+    counts.incrementAndGet(bucket(Math.max(nanos, 0)));
+  }
+
+  /**
+   * Returns the number of latencies recorded.
+   *
+   * @return the number of latencies
+   */
+  long count() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the latency that a share of the recorded latencies are at or below. Latencies
+   * recorded while the percentile is computed may or may not be counted.
+   *
+   * @param quantile the share of the latencies, between 0 and 1
+   * @return the highest latency of the bucket the quantile falls in, or 0 if nothing has
+   *         been recorded
+   */
+  long percentile(double quantile) {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return highestValue(i);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Forgets every recorded latency.
+   */
+  void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+  }
+
+  /**
+   * Returns the bucket of a latency.
+   *
+   * @param nanos the latency, not negative
+   * @return the index of the bucket
+   */
+  static int bucket(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+    int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the highest latency that falls in a bucket.
+   *
+   * @param bucket the index of the bucket
+   * @return the highest latency of the bucket
+   */
+  static long highestValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
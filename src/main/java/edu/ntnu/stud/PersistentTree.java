@@ -0,0 +1,290 @@
+package edu.ntnu.stud;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable sorted map from long keys to values, where every change returns a new tree
+ * that shares all the nodes that did not change with the old tree.
+ *
+ * <p>The tree is an AVL tree. A change copies only the nodes on the path from the root to the
+ * changed key, which is O(log n) nodes, and every older tree stays valid and unchanged.
+ * The keys are kept as primitive longs, like the train numbers of {@link TrainNumberMap},
+ * so that no key is boxed.</p>
+ *
+ * @param <V> the type of the values
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+final class PersistentTree<V> implements Iterable<V> {
+  private static final PersistentTree<?> EMPTY = new PersistentTree<>(null);
+
+  private final Node<V> root;
+
+  /**
+   * A node of the tree, which is never changed after it is constructed.
+   *
+   * @param key    the key of the node
+   * @param value  the value of the node
+   * @param left   the subtree with the smaller keys, or null
+   * @param right  the subtree with the larger keys, or null
+   * @param height the height of the subtree of the node
+   * @param size   the number of nodes in the subtree of the node
+   * @param <V>    the type of the value
+   */
+  private record Node<V>(long key, V value, Node<V> left, Node<V> right, int height, int size) {
+  }
+
+  /**
+   * Constructs a tree with a root node.
+   *
+   * @param root the root node, or null for an empty tree
+   */
+  private PersistentTree(Node<V> root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns the empty tree.
+   *
+   * @param <V> the type of the values
+   * @return the empty tree
+   */
+  @SuppressWarnings("unchecked")
+  static <V> PersistentTree<V> empty() {
+    return (PersistentTree<V>) EMPTY;
+  }
+
+  /**
+   * Returns the number of keys in the tree.
+   *
+   * @return the number of keys
+   */
+  int size() {
+    return size(root);
+  }
+
+  /**
+   * Returns the value of a key.
+   *
+   * @param key the key to look up
+   * @return the value of the key, or null if the tree does not have the key
+   */
+  V get(long key) {
+    Node<V> node = root;
+    while (node != null) {
+      if (key < node.key()) {
+        node = node.left();
+      } else if (key > node.key()) {
+        node = node.right();
+      } else {
+        return node.value();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a tree where a key has a value, replacing any value the key had.
+   *
+   * @param key   the key
+   * @param value the value of the key
+   * @return the new tree
+   */
+  PersistentTree<V> put(long key, V value) {
+    return new PersistentTree<>(put(root, key, value));
+  }
+
+  /**
+   * Returns a tree without a key.
+   *
+   * @param key the key to remove
+   * @return the new tree, or this tree if it does not have the key
+   */
+  PersistentTree<V> remove(long key) {
+    Node<V> newRoot = remove(root, key);
+    return newRoot == root ? this : new PersistentTree<>(newRoot);
+  }
+
+  /**
+   * Returns an iterator over the values in ascending order of their keys. The iterator only
+   * walks the nodes of this tree and never copies them.
+   *
+   * @return an iterator over the values
+   */
+  @Override
+  public Iterator<V> iterator() {
+    return new Iterator<>() {
+      private final ArrayDeque<Node<V>> path = new ArrayDeque<>();
+      private Node<V> next = root;
+
+      @Override
+      public boolean hasNext() {
+        return next != null || !path.isEmpty();
+      }
+
+      @Override
+      public V next() {
+        while (next != null) {
+          path.push(next);
+          next = next.left();
+        }
+        if (path.isEmpty()) {
+          throw new NoSuchElementException();
+        }
+        Node<V> node = path.pop();
+        next = node.right();
+        return node.value();
+      }
+    };
+  }
+
+  /**
+   * Puts a key into a subtree, copying the nodes on the path to the key.
+   *
+   * @param node  the root of the subtree, or null
+   * @param key   the key
+   * @param value the value of the key
+   * @param <V>   the type of the values
+   * @return the root of the new subtree
+   */
+  private static <V> Node<V> put(Node<V> node, long key, V value) {
+    if (node == null) {
+      return new Node<>(key, value, null, null, 1, 1);
+    }
+    if (key < node.key()) {
+      return balance(node.key(), node.value(), put(node.left(), key, value), node.right());
+    }
+    if (key > node.key()) {
+      return balance(node.key(), node.value(), node.left(), put(node.right(), key, value));
+    }
+    return new Node<>(key, value, node.left(), node.right(), node.height(), node.size());
+  }
+
+  /**
+   * Removes a key from a subtree, copying the nodes on the path to the key.
+   *
+   * @param node the root of the subtree, or null
+   * @param key  the key to remove
+   * @param <V>  the type of the values
+   * @return the root of the new subtree, or the same root if the key is not in the subtree
+   */
+  private static <V> Node<V> remove(Node<V> node, long key) {
+    if (node == null) {
+      return null;
+    }
+    if (key < node.key()) {
+      Node<V> left = remove(node.left(), key);
+      return left == node.left() ? node : balance(node.key(), node.value(), left, node.right());
+    }
+    if (key > node.key()) {
+      Node<V> right = remove(node.right(), key);
+      return right == node.right() ? node : balance(node.key(), node.value(), node.left(), right);
+    }
+    if (node.left() == null) {
+      return node.right();
+    }
+    if (node.right() == null) {
+      return node.left();
+    }
+    Node<V> successor = node.right();
+    while (successor.left() != null) {
+      successor = successor.left();
+    }
+    return balance(successor.key(), successor.value(), node.left(),
+            remove(node.right(), successor.key()));
+  }
+
+  /**
+   * Constructs a node from two subtrees whose heights differ by at most two, and rotates it
+   * so that the heights of its subtrees differ by at most one.
+   *
+   * @param key   the key of the node
+   * @param value the value of the node
+   * @param left  the subtree with the smaller keys
+   * @param right the subtree with the larger keys
+   * @param <V>   the type of the values
+   * @return the root of the balanced subtree
+   */
+  private static <V> Node<V> balance(long key, V value, Node<V> left, Node<V> right) {
+    int difference = height(left) - height(right);
+    if (difference > 1) {
+      if (height(left.left()) < height(left.right())) {
+        left = rotateLeft(left);
+      }
+      return node(left.key(), left.value(), left.left(),
+              node(key, value, left.right(), right));
+    }
+    if (difference < -1) {
+      if (height(right.right()) < height(right.left())) {
+        right = rotateRight(right);
+      }
+      return node(right.key(), right.value(), node(key, value, left, right.left()),
+              right.right());
+    }
+    return node(key, value, left, right);
+  }
+
+  /**
+   * Rotates a subtree to the left.
+   *
+   * @param node the root of the subtree, with a right subtree
+   * @param <V>  the type of the values
+   * @return the new root of the subtree
+   */
+  private static <V> Node<V> rotateLeft(Node<V> node) {
+    Node<V> right = node.right();
+    return node(right.key(), right.value(),
+            node(node.key(), node.value(), node.left(), right.left()), right.right());
+  }
+
+  /**
+   * Rotates a subtree to the right.
+   *
+   * @param node the root of the subtree, with a left subtree
+   * @param <V>  the type of the values
+   * @return the new root of the subtree
+   */
+  private static <V> Node<V> rotateRight(Node<V> node) {
+    Node<V> left = node.left();
+    return node(left.key(), left.value(), left.left(),
+            node(node.key(), node.value(), left.right(), node.right()));
+  }
+
+  /**
+   * Constructs a node and computes its height and size from its subtrees.
+   *
+   * @param key   the key of the node
+   * @param value the value of the node
+   * @param left  the subtree with the smaller keys, or null
+   * @param right the subtree with the larger keys, or null
+   * @param <V>   the type of the values
+   * @return the node
+   */
+  private static <V> Node<V> node(long key, V value, Node<V> left, Node<V> right) {
+    return new Node<>(key, value, left, right, Math.max(height(left), height(right)) + 1,
+            size(left) + size(right) + 1);
+  }
+
+  /**
+   * Returns the height of a subtree.
+   *
+   * @param node the root of the subtree, or null
+   * @return the height, 0 for an empty subtree
+   */
+  private static int height(Node<?> node) {
+    return node == null ? 0 : node.height();
+  }
+
+  /**
+   * Returns the number of nodes in a subtree.
+   *
+   * @param node the root of the subtree, or null
+   * @return the number of nodes
+   */
+  private static int size(Node<?> node) {
+    return node == null ? 0 : node.size();
+  }
+}
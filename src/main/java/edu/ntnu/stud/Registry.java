@@ -1,30 +1,149 @@
 package edu.ntnu.stud;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Represents a group of train departures with a time of day.
  * This class contains several methods for manipulating a group and validation.
  *
+ * <p>Departures are ordered and validated by their final departure minute on a timeline of
+ * service days, so a departure delayed past midnight stays after the rest of its day, and the
+ * next service day can be planned ahead. Only the {@link ExpiryWheel} keeps the departures in
+ * slots per day. The time, line, track and destination indexes are shared by every planned
+ * day, so a day is not dropped or loaded in one step: {@link #startServiceDay(int)} removes
+ * what is left of the earlier days one departure at a time, and
+ * {@link #addTrainDepartures} validates and indexes every departure of a new day on its own.
+ * Both cost O(log n) per departure.</p>
+ *
  * @author Adrian Aleksander Buczek
  * @version v1.0.0-release
  * @since v0.2.0-alpha
  */
 public class Registry {
-  private final HashMap<Integer, TrainDeparture> departures;
+  private static final Comparator<TrainDeparture> BY_FINAL_DEPARTURE_TIME = (first, second) -> {
+    int byMinute = Integer.compare(first.getFinalDepartureMinute(),
+            second.getFinalDepartureMinute());
+    return byMinute != 0 ? byMinute
+            : Integer.compare(first.getTrainNumber(), second.getTrainNumber());
+  };
+
+  private final TrainNumberMap departures;
+  private final TreeSet<TrainDeparture> departuresByTime;
+  private final HashMap<LineSlot, TrainDeparture> departuresByLineSlot;
+  private final HashMap<TrackSlot, TrainDeparture> departuresByTrackSlot;
+  private final TreeMap<String, TreeSet<TrainDeparture>> departuresByDestination;
+  private final HashMap<String, TreeSet<TrainDeparture>> departuresByLine;
+  private final HashMap<Integer, TreeSet<TrainDeparture>> departuresByTrack;
+  private ExpiryWheel expiryWheel;
+  private int serviceDay;
   private LocalTime timeOfDay;
+  private RegistryJournal journal;
+  private RegistryEventStream events;
+  private RegistryMetrics metrics;
+  private PersistentTree<TrainDeparture> versionByTime;
+  private PersistentTree<TrainDeparture> versionByTrainNumber;
+  private volatile RegistryVersion version;
+
+  /**
+   * Key of the conflict index for a line at a final departure minute.
+   *
+   * @param finalDepartureMinute the departure minute on the timeline accounting for any delays
+   * @param line                 the line of the departure
+   */
+  private record LineSlot(int finalDepartureMinute, String line) {
+  }
+
+  /**
+   * Key of the conflict index for an assigned track at a final departure minute.
+   *
+   * @param finalDepartureMinute the departure minute on the timeline accounting for any delays
+   * @param track                the assigned track of the departure
+   */
+  private record TrackSlot(int finalDepartureMinute, int track) {
+  }
+
+  /**
+   * One page of the result of a {@link #query}.
+   *
+   * @param departures the train departures on the page, by final departure time ascending
+   * @param offset     the number of matching train departures before the page
+   * @param hasMore    true if more train departures match after the page
+   */
+  public record Page(List<TrainDeparture> departures, int offset, boolean hasMore) {
+  }
+
+  /**
+   * The indexes a query can be read from.
+   */
+  enum QueryIndex {
+    TIME, DESTINATION, LINE, TRACK
+  }
+
+  /**
+   * The index chosen for a query, with the ordered departures to filter.
+   *
+   * @param index      the chosen index
+   * @param departures the departures of the index, cut to the window of the query
+   */
+  record QueryPlan(QueryIndex index, NavigableSet<TrainDeparture> departures) {
+  }
+
+  /**
+   * A rejection that has already been counted under its own reason, so it is not counted
+   * again as an invalid argument when it leaves an operation.
+   */
+  private static final class CountedRejection extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a counted rejection.
+     *
+     * @param message the reason the change is rejected
+     */
+    CountedRejection(String message) {
+      super(message);
+    }
+  }
 
   /**
    * Constructs a new TrainDepartureRegister object.
-   * Upon initialization it sets the time of day to 00:00 and creates a new HashMap.
+   * Upon initialization it sets the time of day to 00:00 on service day 0 and creates a new map of departures
+   * keyed by train number together with an index of the departures ordered by final departure minute and
+   * the conflict indexes keyed by final departure minute and line or track.
+   * Destinations are indexed by their normalized (lower case) name, lines and assigned tracks
+   * have ordered indexes of their own, and departures are scheduled for removal on an expiry
+   * wheel keyed by final departure time.
    */
   public Registry() {
     this.timeOfDay = LocalTime.of(0, 0);
-    this.departures = new HashMap<>();
+    this.expiryWheel = new ExpiryWheel(0);
+    this.departures = new TrainNumberMap();
+    this.departuresByTime = new TreeSet<>(BY_FINAL_DEPARTURE_TIME);
+    this.departuresByLineSlot = new HashMap<>();
+    this.departuresByTrackSlot = new HashMap<>();
+    this.departuresByDestination = new TreeMap<>();
+    this.departuresByLine = new HashMap<>();
+    this.departuresByTrack = new HashMap<>();
   }
 
   /**
@@ -36,33 +155,266 @@ public class Registry {
     return timeOfDay;
   }
 
+  /**
+   * Returns the current service day, counted from day 0 when the registry was created.
+   *
+   * @return the service day the time of day belongs to
+   */
+  public int getServiceDay() {
+    return serviceDay;
+  }
+
+  /**
+   * Returns the number of train departures in the registry, without copying them.
+   *
+   * @return the number of train departures
+   */
+  public int size() {
+    return departures.size();
+  }
+
   /**
    * Returns a List of train departures by the time ascending.
    *
    * @return a List of train departures by time ascending.
    */
   public List<TrainDeparture> getDepartures() {
-    return departures
-            .values()
-            .stream()
-            .sorted(Comparator.comparing(TrainDeparture::getFinalDepartureTime))
-            .collect(Collectors.toList());
+    return instrumentAndGet(RegistryMetrics.Operation.GET_DEPARTURES, 0,
+            () -> new ArrayList<>(departuresByTime));
   }
 
   /**
    * Returns a list of TrainDepartures by a given destination in a ascending order
-   * if train departures exist.
+   * if train departures exist. The destination must match exactly.
    *
    * @param destination the destination you want to search by
-   * @return either a list of train departures or null.
+   * @return a list of train departures by time ascending, empty if none match.
    */
   public List<TrainDeparture> getDeparturesByDestination(String destination) {
-    return departures
-            .values()
-            .stream()
-            .filter(trainDeparture -> trainDeparture.getDestination().equals(destination))
-            .toList();
+    return instrumentAndGet(RegistryMetrics.Operation.GET_DEPARTURES_BY_DESTINATION, 0, () -> {
+      TreeSet<TrainDeparture> matches = departuresByDestination.get(
+              normalizeDestination(destination));
+      if (matches == null) {
+        return List.of();
+      }
+      return matches
+              .stream()
+              .filter(trainDeparture -> trainDeparture.getDestination().equals(destination))
+              .toList();
+    });
+  }
+
+  /**
+   * Returns a list of TrainDepartures by a given destination in a ascending order,
+   * where the destination is matched regardless of case.
+   *
+   * @param destination the destination you want to search by
+   * @return a list of train departures by time ascending, empty if none match.
+   */
+  public List<TrainDeparture> getDeparturesByDestinationIgnoreCase(String destination) {
+    return instrumentAndGet(RegistryMetrics.Operation.SEARCH_DESTINATION, 0, () -> {
+      TreeSet<TrainDeparture> matches = departuresByDestination.get(
+              normalizeDestination(destination));
+      return matches == null ? List.of() : new ArrayList<>(matches);
+    });
+  }
+
+  /**
+   * Returns a list of TrainDepartures whose destination starts with the given prefix
+   * regardless of case, in a ascending order. For example "Tro" matches Trondheim.
+   *
+   * @param prefix the start of the destinations you want to search by
+   * @return a list of train departures by time ascending, empty if none match.
+   */
+  public List<TrainDeparture> getDeparturesByDestinationPrefix(String prefix) {
+    return instrumentAndGet(RegistryMetrics.Operation.SEARCH_DESTINATION_PREFIX, 0, () -> {
+      String normalizedPrefix = normalizeDestination(prefix);
+      Collection<TreeSet<TrainDeparture>> matches = departuresByDestination
+              .subMap(normalizedPrefix, true, normalizedPrefix + Character.MAX_VALUE, false)
+              .values();
+      return mergeByFinalDepartureTime(matches);
+    });
+  }
+
+  /**
+   * Returns the first train departures that leave at or after a time on the current service
+   * day, such as the rows of a departure board. Only the returned departures are visited
+   * after a single lookup in the ordered index, so the cost is O(n + log N) no matter how
+   * many departures the registry holds.
+   *
+   * @param n    the largest number of train departures to return
+   * @param from the earliest final departure time on the current service day
+   * @return at most n train departures by time ascending
+   * @throws IllegalArgumentException if n is not positive
+   */
+  public List<TrainDeparture> getNextDepartures(int n, LocalTime from)
+          throws IllegalArgumentException {
+    return instrumentAndGet(RegistryMetrics.Operation.GET_NEXT_DEPARTURES, 0, () -> {
+      TrainDeparture.assertPositiveIntegerParameter(n);
+      return first(n, departuresByTime, from);
+    });
+  }
+
+  /**
+   * Returns the first train departures on a track that leave at or after a time on the
+   * current service day, read from the ordered index of the track in O(n + log N).
+   *
+   * @param n     the largest number of train departures to return
+   * @param from  the earliest final departure time on the current service day
+   * @param track the assigned track of the train departures
+   * @return at most n train departures by time ascending
+   * @throws IllegalArgumentException if n or the track is not positive
+   */
+  public List<TrainDeparture> getNextDeparturesOnTrack(int n, LocalTime from, int track)
+          throws IllegalArgumentException {
+    return instrumentAndGet(RegistryMetrics.Operation.GET_NEXT_DEPARTURES_ON_TRACK, 0, () -> {
+      TrainDeparture.assertPositiveIntegerParameter(n);
+      TrainDeparture.assertPositiveIntegerParameter(track);
+      return first(n, departuresByTrack.get(track), from);
+    });
+  }
+
+  /**
+   * Returns the first train departures on a line that leave at or after a time on the
+   * current service day, read from the ordered index of the line in O(n + log N).
+   *
+   * @param n    the largest number of train departures to return
+   * @param from the earliest final departure time on the current service day
+   * @param line the line of the train departures
+   * @return at most n train departures by time ascending
+   * @throws IllegalArgumentException if n is not positive
+   */
+  public List<TrainDeparture> getNextDeparturesOnLine(int n, LocalTime from, String line)
+          throws IllegalArgumentException {
+    return instrumentAndGet(RegistryMetrics.Operation.GET_NEXT_DEPARTURES_ON_LINE, 0, () -> {
+      TrainDeparture.assertPositiveIntegerParameter(n);
+      return first(n, departuresByLine.get(line), from);
+    });
+  }
+
+  /**
+   * Returns one page of the train departures in a selection, by final departure time
+   * ascending. The departures are read from the most selective index for the selection,
+   * and the rest of the selection is applied lazily while the page is filled, so no more
+   * departures are visited than the page needs.
+   *
+   * @param selection the train departures to return
+   * @param offset    the number of matching train departures to skip
+   * @param limit     the largest number of train departures on the page
+   * @return the page of train departures
+   * @throws IllegalArgumentException if the offset is negative or the limit is not positive
+   */
+  public Page query(DepartureSelection selection, int offset, int limit)
+          throws IllegalArgumentException {
+    return instrumentAndGet(RegistryMetrics.Operation.QUERY, 0, () -> {
+      if (offset < 0) {
+        throw new IllegalArgumentException("The offset " + offset + " must not be negative");
+      }
+      TrainDeparture.assertPositiveIntegerParameter(limit);
 
+      List<TrainDeparture> matches = planQuery(selection).departures().stream()
+              .filter(selection::matches)
+              .skip(offset)
+              .limit(limit + 1L)
+              .collect(Collectors.toCollection(ArrayList::new));
+      boolean hasMore = matches.size() > limit;
+      if (hasMore) {
+        matches.remove(limit);
+      }
+      return new Page(matches, offset, hasMore);
+    });
+  }
+
+  /**
+   * Returns the first train departures of an ordered index at or after a time.
+   *
+   * @param n          the largest number of train departures to return
+   * @param departures the ordered index, or null if it has no departures
+   * @param from       the earliest final departure time on the current service day
+   * @return at most n train departures by time ascending
+   */
+  private List<TrainDeparture> first(int n, NavigableSet<TrainDeparture> departures,
+                                     LocalTime from) {
+    List<TrainDeparture> next = new ArrayList<>(Math.min(n, 32));
+    if (departures == null) {
+      return next;
+    }
+    Iterator<TrainDeparture> iterator = departures.tailSet(probe(from, 1), true).iterator();
+    while (next.size() < n && iterator.hasNext()) {
+      next.add(iterator.next());
+    }
+    return next;
+  }
+
+  /**
+   * Merges already ordered groups of train departures into one list ordered by
+   * final departure time.
+   *
+   * @param groups the groups of train departures, each ordered by final departure time
+   * @return a list of all the train departures by time ascending
+   */
+  static List<TrainDeparture> mergeByFinalDepartureTime(
+          Collection<? extends Collection<TrainDeparture>> groups) {
+    if (groups.size() == 1) {
+      return new ArrayList<>(groups.iterator().next());
+    }
+
+    PriorityQueue<PeekingIterator> heads = new PriorityQueue<>(Math.max(1, groups.size()),
+            Comparator.comparing(PeekingIterator::peek, BY_FINAL_DEPARTURE_TIME));
+    int size = 0;
+    for (Collection<TrainDeparture> group : groups) {
+      size += group.size();
+      if (!group.isEmpty()) {
+        heads.add(new PeekingIterator(group.iterator()));
+      }
+    }
+
+    List<TrainDeparture> merged = new ArrayList<>(size);
+    while (!heads.isEmpty()) {
+      PeekingIterator head = heads.poll();
+      merged.add(head.next());
+      if (head.hasNext()) {
+        heads.add(head);
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * An iterator over train departures that can look at its next element without consuming it.
+   */
+  private static final class PeekingIterator {
+    private final Iterator<TrainDeparture> iterator;
+    private TrainDeparture next;
+
+    private PeekingIterator(Iterator<TrainDeparture> iterator) {
+      this.iterator = iterator;
+      this.next = iterator.next();
+    }
+
+    private TrainDeparture peek() {
+      return next;
+    }
+
+    private boolean hasNext() {
+      return next != null;
+    }
+
+    private TrainDeparture next() {
+      TrainDeparture current = next;
+      next = iterator.hasNext() ? iterator.next() : null;
+      return current;
+    }
+  }
+
+  /**
+   * Normalizes a destination to the key used by the destination index.
+   *
+   * @param destination the destination to normalize
+   * @return the destination stripped of surrounding whitespace and in lower case
+   */
+  static String normalizeDestination(String destination) {
+    return destination.strip().toLowerCase(Locale.ROOT);
   }
 
   /**
@@ -73,6 +425,20 @@ public class Registry {
    * @throws IllegalArgumentException if TrainNumber does not exist
    */
   public TrainDeparture getTrainDepartureByTrainNumber(int trainNumber) {
+    return instrumentAndGet(RegistryMetrics.Operation.FIND_TRAIN_DEPARTURE, trainNumber,
+            () -> findTrainDeparture(trainNumber));
+  }
+
+  /**
+   * Finds a train departure by train number. Used internally instead of
+   * {@link #getTrainDepartureByTrainNumber}, so that no public method calls another
+   * public method that a subclass such as {@link ConcurrentRegistry} may guard with a lock.
+   *
+   * @param trainNumber the train number of a train you want to find
+   * @return the train departure with the given train number
+   * @throws IllegalArgumentException if TrainNumber does not exist
+   */
+  private TrainDeparture findTrainDeparture(int trainNumber) {
     assertTrainNumberExists(trainNumber);
     return departures.get(trainNumber);
   }
@@ -97,43 +463,501 @@ public class Registry {
   public void addTrainDeparture(LocalTime departureTime, LocalTime delay, String destination,
                                 String line, int trainNumber, int track)
           throws IllegalArgumentException {
+    instrument(RegistryMetrics.Operation.ADD_TRAIN_DEPARTURE, trainNumber, () -> {
+      int finalDepartureMinute = TrainDeparture.timelineMinute(serviceDay, departureTime, delay);
 
-    LocalTime finalDepartureTime = departureTime
-            .plusHours(delay.getHour()).plusMinutes(delay.getMinute());
+      assertDepartureTimeIsNotBeforeTimeOfDay(finalDepartureMinute);
+      assertLineNotOccupied(finalDepartureMinute, line);
+      assertTrackNotOccupied(finalDepartureMinute, track);
+      assertTrainNumberDoesNotExist(trainNumber);
 
-    assertDepartureTimeIsNotBeforeTimeOfDay(finalDepartureTime);
-    assertUniqueDepartureScheduling(finalDepartureTime, line, track);
-    assertTrainNumberDoesNotExist(trainNumber);
+      TrainDeparture newTrainDeparture = new TrainDeparture(
+              departureTime, delay, destination, line, trainNumber, track, serviceDay
+      );
+      if (journal != null) {
+        journal.appendAdd(newTrainDeparture);
+      }
 
-    TrainDeparture newTrainDeparture = new TrainDeparture(
-            departureTime, delay, destination, line, trainNumber, track
-    );
+      departures.put(trainNumber, newTrainDeparture);
+      indexTrainDeparture(newTrainDeparture);
+      expiryWheel.schedule(newTrainDeparture);
+      if (events != null) {
+        events.publish(RegistryEventStream.Type.ADDED, newTrainDeparture);
+      }
 
-    departures.put(trainNumber, newTrainDeparture);
+      publishVersion();
+      if (journal != null) {
+        checkpointJournalIfDue();
+      }
+    });
   }
 
   /**
-   * Removes train departures from a train departure manager that are before a certain time.
+   * Adds a batch of train departures in a single pass. Every departure is validated in the
+   * same way as in {@link #addTrainDeparture}, against the registry and the departures added
+   * earlier in the batch. The departures may belong to the next service day, so the plan of
+   * the next day can be loaded ahead of time. A departure that is not valid is
+   * reported to the rejection handler and skipped, and the rest of the batch is still added.
    *
-   * @param time a LocalTime object selects the limit for what train departures to remove.
+   * @param batch    the train departures to add, in order
+   * @param rejected called with the index in the batch and the reason for every
+   *                 departure that is not added
+   * @return the number of departures that were added
    */
-  private void removeTrainDeparturesByTimeBefore(LocalTime time) {
-    departures.values()
-            .removeIf(trainDeparture ->
-                    trainDeparture.getFinalDepartureTime().isBefore(time));
+  public int addTrainDepartures(List<TrainDeparture> batch, BiConsumer<Integer, String> rejected) {
+    return instrumentAndGet(RegistryMetrics.Operation.ADD_TRAIN_DEPARTURES, 0, () -> {
+      int added = 0;
+      try {
+        for (int i = 0; i < batch.size(); i++) {
+          TrainDeparture trainDeparture = batch.get(i);
+          try {
+            assertServiceDayIsPlannable(trainDeparture.getServiceDay());
+            int finalDepartureMinute = trainDeparture.getFinalDepartureMinute();
+            assertDepartureTimeIsNotBeforeTimeOfDay(finalDepartureMinute);
+            assertLineNotOccupied(finalDepartureMinute, trainDeparture.getLine());
+            assertTrackNotOccupied(finalDepartureMinute, trainDeparture.getTrack());
+            assertTrainNumberDoesNotExist(trainDeparture.getTrainNumber());
+            if (journal != null) {
+              journal.appendAdd(trainDeparture);
+            }
+          } catch (IllegalArgumentException e) {
+            countInvalidArgument(e);
+            rejected.accept(i, e.getMessage());
+            continue;
+          }
+
+          departures.put(trainDeparture.getTrainNumber(), trainDeparture);
+          indexTrainDeparture(trainDeparture);
+          expiryWheel.schedule(trainDeparture);
+          if (events != null) {
+            events.publish(RegistryEventStream.Type.ADDED, trainDeparture);
+          }
+          added++;
+        }
+      } finally {
+        publishVersion();
+      }
+
+      if (journal != null) {
+        checkpointJournalIfDue();
+      }
+      return added;
+    });
+  }
+
+  /**
+   * Adds a train departure to the time index and the conflict indexes.
+   * Must be called again whenever the final departure time or the track changes,
+   * after the departure has been removed with {@link #unindexTrainDeparture}.
+   *
+   * @param trainDeparture the train departure to index
+   */
+  private void indexTrainDeparture(TrainDeparture trainDeparture) {
+    int finalDepartureMinute = trainDeparture.getFinalDepartureMinute();
+
+    departuresByTime.add(trainDeparture);
+    departuresByLineSlot.put(new LineSlot(finalDepartureMinute, trainDeparture.getLine()),
+            trainDeparture);
+    if (trainDeparture.getTrack() != -1) {
+      departuresByTrackSlot.put(new TrackSlot(finalDepartureMinute, trainDeparture.getTrack()),
+              trainDeparture);
+    }
+    departuresByDestination
+            .computeIfAbsent(normalizeDestination(trainDeparture.getDestination()),
+                    destination -> new TreeSet<>(BY_FINAL_DEPARTURE_TIME))
+            .add(trainDeparture);
+    departuresByLine
+            .computeIfAbsent(trainDeparture.getLine(),
+                    line -> new TreeSet<>(BY_FINAL_DEPARTURE_TIME))
+            .add(trainDeparture);
+    if (trainDeparture.getTrack() != -1) {
+      departuresByTrack
+              .computeIfAbsent(trainDeparture.getTrack(),
+                      track -> new TreeSet<>(BY_FINAL_DEPARTURE_TIME))
+              .add(trainDeparture);
+    }
+    if (versionByTime != null) {
+      TrainDeparture copy = trainDeparture.copy();
+      versionByTime = versionByTime.put(RegistryVersion.timeKey(copy), copy);
+      versionByTrainNumber = versionByTrainNumber.put(copy.getTrainNumber(), copy);
+    }
+  }
+
+  /**
+   * Removes a train departure from the time index and the conflict indexes.
+   *
+   * @param trainDeparture the train departure to remove from the indexes
+   */
+  private void unindexTrainDeparture(TrainDeparture trainDeparture) {
+    int finalDepartureMinute = trainDeparture.getFinalDepartureMinute();
+
+    departuresByTime.remove(trainDeparture);
+    departuresByLineSlot.remove(new LineSlot(finalDepartureMinute, trainDeparture.getLine()));
+    if (trainDeparture.getTrack() != -1) {
+      departuresByTrackSlot.remove(new TrackSlot(finalDepartureMinute,
+              trainDeparture.getTrack()));
+    }
+
+    String destination = normalizeDestination(trainDeparture.getDestination());
+    TreeSet<TrainDeparture> sameDestination = departuresByDestination.get(destination);
+    sameDestination.remove(trainDeparture);
+    if (sameDestination.isEmpty()) {
+      departuresByDestination.remove(destination);
+    }
+    removeFromGroup(departuresByLine, trainDeparture.getLine(), trainDeparture);
+    if (trainDeparture.getTrack() != -1) {
+      removeFromGroup(departuresByTrack, trainDeparture.getTrack(), trainDeparture);
+    }
+    if (versionByTime != null) {
+      versionByTime = versionByTime.remove(RegistryVersion.timeKey(trainDeparture));
+      versionByTrainNumber = versionByTrainNumber.remove(trainDeparture.getTrainNumber());
+    }
+  }
+
+  /**
+   * Removes a train departure from its group in an ordered index, and removes the group
+   * once it is empty.
+   *
+   * @param groups         the ordered index
+   * @param key            the key of the group of the train departure
+   * @param trainDeparture the train departure to remove
+   * @param <K>            the type of the keys of the index
+   */
+  private static <K> void removeFromGroup(HashMap<K, TreeSet<TrainDeparture>> groups, K key,
+                                          TrainDeparture trainDeparture) {
+    TreeSet<TrainDeparture> group = groups.get(key);
+    group.remove(trainDeparture);
+    if (group.isEmpty()) {
+      groups.remove(key);
+    }
+  }
+
+  /**
+   * Removes train departures from a train departure manager that are before a certain minute.
+   * Only the buckets of the expiry wheel for the minutes that passed are visited.
+   *
+   * @param minute the minute on the timeline that selects the limit for what train departures
+   *               to remove.
+   */
+  private void removeTrainDeparturesByTimeBefore(int minute) {
+    expiryWheel.advance(minute, this::removeExpiredTrainDeparture);
+  }
+
+  /**
+   * Removes a train departure that the expiry wheel found to have left, unless it was
+   * already removed through another entry of the wheel.
+   *
+   * @param expired the train departure that has left
+   */
+  private void removeExpiredTrainDeparture(TrainDeparture expired) {
+    if (departures.get(expired.getTrainNumber()) != expired) {
+      return;
+    }
+    unindexTrainDeparture(expired);
+    departures.remove(expired.getTrainNumber());
+    if (events != null) {
+      events.publish(RegistryEventStream.Type.EVICTED, expired);
+    }
   }
 
   /**
    * Sets the time of day of an existing TrainDepartureRegister
-   * if new time of day is after current time of day.
+   * if new time of day is after current time of day. The time of day stays on the current
+   * service day, use {@link #startServiceDay(int)} to move on to the next day.
    *
    * @param newTime a LocalTime object of the new time the time of day is to be set to
    * @throws IllegalArgumentException if newTime is before current timeOfDay
    */
   public void setTimeOfDay(LocalTime newTime) throws IllegalArgumentException {
-    assertTimeOfDayIsAfterCurrentTimeOfDay(newTime);
-    removeTrainDeparturesByTimeBefore(newTime);
-    this.timeOfDay = newTime;
+    instrument(RegistryMetrics.Operation.SET_TIME_OF_DAY, 0, () -> {
+      assertTimeOfDayIsAfterCurrentTimeOfDay(newTime);
+      if (journal != null) {
+        journal.appendTimeOfDay(newTime);
+      }
+      removeTrainDeparturesByTimeBefore(
+              TrainDeparture.timelineMinute(serviceDay, newTime, LocalTime.MIN));
+      this.timeOfDay = newTime;
+
+      publishVersion();
+      if (journal != null) {
+        checkpointJournalIfDue();
+      }
+    });
+  }
+
+  /**
+   * Moves the clock to 00:00 on a later service day. Every departure of the earlier days is
+   * removed, except departures delayed past midnight that have not left yet. The departures
+   * are removed from the indexes one at a time, since the indexes are shared by every day.
+   *
+   * @param newServiceDay the service day to start
+   * @throws IllegalArgumentException if the service day is not after the current service day
+   */
+  public void startServiceDay(int newServiceDay) throws IllegalArgumentException {
+    instrument(RegistryMetrics.Operation.START_SERVICE_DAY, 0, () -> {
+      if (newServiceDay <= serviceDay) {
+        throw new IllegalArgumentException("New service day " + newServiceDay
+                + " must be after current service day " + serviceDay);
+      }
+      if (journal != null) {
+        journal.appendServiceDay(newServiceDay);
+      }
+      removeTrainDeparturesByTimeBefore(newServiceDay * TrainDeparture.MINUTES_PER_DAY);
+      this.serviceDay = newServiceDay;
+      this.timeOfDay = LocalTime.MIN;
+
+      publishVersion();
+      if (journal != null) {
+        checkpointJournalIfDue();
+      }
+    });
+  }
+
+  /**
+   * Attaches a journal that every following change is appended to. The journal is first
+   * replaced by a checkpoint of the current departures and time of day, so that replaying
+   * it always starts from the state the registry had when it was attached.
+   *
+   * @param journal the journal to attach, or null to stop journaling
+   * @throws IOException if the checkpoint can not be written
+   */
+  public void setJournal(RegistryJournal journal) throws IOException {
+    if (journal != null) {
+      journal.checkpoint(departuresByTime, serviceDay, timeOfDay);
+    }
+    this.journal = journal;
+  }
+
+  /**
+   * Attaches an event stream that every following addition, delay change, track change and
+   * eviction is published to. Publishing never allocates or waits for the subscribers of
+   * the stream.
+   *
+   * @param events the event stream to publish to, or null to stop publishing
+   */
+  public void setEventStream(RegistryEventStream events) {
+    this.events = events;
+  }
+
+  /**
+   * Attaches metrics that the latency of the main operations, every rejected change and the
+   * sizes of the registry are recorded in. Without metrics, an operation only costs one more
+   * null check for them, and the clock is not read.
+   *
+   * @param metrics the metrics to record in, or null to stop recording
+   */
+  public void setMetrics(RegistryMetrics metrics) {
+    if (metrics != null) {
+      metrics.watch(RegistryMetrics.Size.DEPARTURES, departures::size);
+      metrics.watch(RegistryMetrics.Size.DESTINATIONS, departuresByDestination::size);
+      metrics.watch(RegistryMetrics.Size.LINES, departuresByLine::size);
+      metrics.watch(RegistryMetrics.Size.TRACKS, departuresByTrack::size);
+    }
+    this.metrics = metrics;
+  }
+
+  /**
+   * Runs an operation that returns nothing, see {@link #instrumentAndGet}.
+   *
+   * @param operation   the operation
+   * @param trainNumber the train number the operation is about, or 0 if it is not about one
+   * @param body        runs the operation
+   */
+  private void instrument(RegistryMetrics.Operation operation, int trainNumber,
+                          Runnable body) {
+    instrumentAndGet(operation, trainNumber, () -> {
+      body.run();
+      return null;
+    });
+  }
+
+  /**
+   * Runs an operation, which is timed if metrics are attached and recorded as a
+   * {@link RegistryOperationEvent} if a flight recording enables the event. The event is
+   * only created while it is enabled. An IllegalArgumentException that was not counted under
+   * a reason of its own, such as an invalid track or a blank destination, is counted as
+   * {@link RegistryMetrics.Rejection#INVALID_ARGUMENT}.
+   *
+   * @param operation   the operation
+   * @param trainNumber the train number the operation is about, or 0 if it is not about one
+   * @param body        runs the operation
+   * @param <T>         the type of the result
+   * @return the result of the operation
+   */
+  private <T> T instrumentAndGet(RegistryMetrics.Operation operation, int trainNumber,
+                                 Supplier<T> body) {
+    RegistryMetrics timed = metrics;
+    long start = timed == null ? 0 : System.nanoTime();
+    RegistryOperationEvent event = null;
+    if (RegistryOperationEvent.isRecorded()) {
+      event = new RegistryOperationEvent();
+      event.begin();
+    }
+    RuntimeException failure = null;
+    try {
+      return body.get();
+    } catch (RuntimeException e) {
+      failure = e;
+      countInvalidArgument(e);
+      throw e;
+    } finally {
+      if (timed != null) {
+        timed.record(operation, start);
+      }
+      if (event != null) {
+        event.end();
+        if (event.shouldCommit()) {
+          event.operation = operation.name();
+          event.trainNumber = trainNumber;
+          event.registrySize = departures.size();
+          event.outcome = RegistryOperationEvent.outcome(failure);
+          event.commit();
+        }
+      }
+    }
+  }
+
+  /**
+   * Counts a rejected change in the metrics, if metrics are attached.
+   *
+   * @param reason the reason the change is rejected
+   */
+  private void countRejection(RegistryMetrics.Rejection reason) {
+    if (metrics != null) {
+      metrics.reject(reason);
+    }
+  }
+
+  /**
+   * Counts a rejected change and returns the exception to throw for it.
+   *
+   * @param reason  the reason the change is rejected
+   * @param message the message of the exception
+   * @return an IllegalArgumentException that is not counted again
+   */
+  private IllegalArgumentException rejection(RegistryMetrics.Rejection reason, String message) {
+    countRejection(reason);
+    return new CountedRejection(message);
+  }
+
+  /**
+   * Counts an exception as an invalid argument, if it is an IllegalArgumentException that
+   * was not already counted under a reason of its own.
+   *
+   * @param e the exception that rejected a change
+   */
+  private void countInvalidArgument(RuntimeException e) {
+    if (e instanceof IllegalArgumentException && !(e instanceof CountedRejection)) {
+      countRejection(RegistryMetrics.Rejection.INVALID_ARGUMENT);
+    }
+  }
+
+  /**
+   * Starts publishing an immutable {@link RegistryVersion} after every change, which readers
+   * get with {@link #getVersion()} without taking any lock. The first version is built from
+   * the current departures, and every later change only costs O(log n) per departure that
+   * changes, since the versions share their unchanged parts.
+   */
+  public void enableVersions() {
+    if (versionByTime != null) {
+      return;
+    }
+    versionByTime = PersistentTree.empty();
+    versionByTrainNumber = PersistentTree.empty();
+    for (TrainDeparture trainDeparture : departuresByTime) {
+      TrainDeparture copy = trainDeparture.copy();
+      versionByTime = versionByTime.put(RegistryVersion.timeKey(copy), copy);
+      versionByTrainNumber = versionByTrainNumber.put(copy.getTrainNumber(), copy);
+    }
+    publishVersion();
+  }
+
+  /**
+   * Returns the latest version of the departures, with a single volatile read. The version
+   * never changes, so it can be read from any thread while the registry is changed.
+   *
+   * @return the latest published version, or null if versions are not enabled
+   */
+  public RegistryVersion getVersion() {
+    return version;
+  }
+
+  /**
+   * Publishes the departures, service day and time of day as a new version, if versions
+   * are enabled. Called once at the end of every change.
+   */
+  private void publishVersion() {
+    if (versionByTime != null) {
+      RegistryVersion previous = version;
+      version = new RegistryVersion(previous == null ? 0 : previous.getNumber() + 1, serviceDay,
+              timeOfDay, versionByTime, versionByTrainNumber);
+    }
+  }
+
+  /**
+   * Writes a binary snapshot of the departures and time of day to a file, which can be
+   * restored with {@link RegistrySnapshot#read(Path)}.
+   *
+   * @param snapshot the path of the snapshot file, replaced atomically if it exists
+   * @throws IOException if the snapshot can not be written
+   */
+  public void writeSnapshot(Path snapshot) throws IOException {
+    RegistrySnapshot.write(departuresByTime, serviceDay, timeOfDay, snapshot);
+  }
+
+  /**
+   * Puts train departures straight into an empty registry without validating them, and
+   * sets the service day and time of day. Used to restore departures that were validated
+   * when they were first added, such as the departures of a snapshot.
+   *
+   * @param trainDepartures the train departures to restore
+   * @param serviceDay      the service day to restore
+   * @param timeOfDay       the time of day to restore
+   * @throws IllegalArgumentException if the registry is not empty
+   */
+  void restore(Collection<TrainDeparture> trainDepartures, int serviceDay, LocalTime timeOfDay)
+          throws IllegalArgumentException {
+    if (!departures.isEmpty()) {
+      throw new IllegalArgumentException("A snapshot can only be restored into an empty registry");
+    }
+    this.serviceDay = serviceDay;
+    this.timeOfDay = timeOfDay;
+    this.expiryWheel = new ExpiryWheel(currentMinute());
+    for (TrainDeparture trainDeparture : trainDepartures) {
+      departures.put(trainDeparture.getTrainNumber(), trainDeparture);
+      indexTrainDeparture(trainDeparture);
+      expiryWheel.schedule(trainDeparture);
+    }
+
+    publishVersion();
+    if (journal != null) {
+      checkpointJournal();
+    }
+  }
+
+  /**
+   * Replaces the journal with a checkpoint if enough changes have been appended since
+   * the last checkpoint.
+   *
+   * @throws UncheckedIOException if the checkpoint can not be written
+   */
+  private void checkpointJournalIfDue() {
+    if (journal.isCheckpointDue()) {
+      checkpointJournal();
+    }
+  }
+
+  /**
+   * Replaces the journal with a checkpoint of the current departures and time of day.
+   *
+   * @throws UncheckedIOException if the checkpoint can not be written
+   */
+  private void checkpointJournal() {
+    try {
+      journal.checkpoint(departuresByTime, serviceDay, timeOfDay);
+    } catch (IOException e) {
+      throw new UncheckedIOException("The journal checkpoint could not be written", e);
+    }
   }
 
   /**
@@ -147,72 +971,65 @@ public class Registry {
   }
 
   /**
-   * Checks if a departure exists with a specified final departure time and train line.
+   * Checks if a departure exists with a specified final departure minute and train line.
    *
-   * @param finalDepartureTime a LocalTime object adjusted departure time accounting for any delays.
-   * @param line               a String object of a train departure line.
-   * @return true if a departure matches both the finalDepartureTime and line, otherwise false
+   * @param finalDepartureMinute the departure minute on the timeline accounting for any delays.
+   * @param line                 a String object of a train departure line.
+   * @return true if a departure matches both the finalDepartureMinute and line, otherwise false
    */
-  private boolean existsDepartureWithTimeAndLine(LocalTime finalDepartureTime, String line) {
-    return departures
-            .values()
-            .stream()
-            .anyMatch(trainDeparture ->
-                    trainDeparture.getFinalDepartureTime().equals(finalDepartureTime)
-                            && trainDeparture.getLine().equals(line));
+  private boolean existsDepartureWithTimeAndLine(int finalDepartureMinute, String line) {
+    return departuresByLineSlot.containsKey(new LineSlot(finalDepartureMinute, line));
   }
 
   /**
-   * Checks if a departure exists with a specified final departure time and train track,
+   * Checks if a departure exists with a specified final departure minute and train track,
    * unless track is unassigned (-1).
    *
-   * @param finalDepartureTime a LocalTime object adjusted departure time accounting for any delays
-   * @param track              the track the train is supposed to arrive at,
-   *                           -1 means that the train is unassigned
-   * @return true if a departure matches both the finalDepartureTime and track, unless track is -1
+   * @param finalDepartureMinute the departure minute on the timeline accounting for any delays
+   * @param track                the track the train is supposed to arrive at,
+   *                             -1 means that the train is unassigned
+   * @return true if a departure matches both the finalDepartureMinute and track,
+   *         unless track is -1
    */
-  private boolean existsDepartureWithTimeAndLine(LocalTime finalDepartureTime, int track) {
+  private boolean existsDepartureWithTimeAndLine(int finalDepartureMinute, int track) {
     if (track == -1) {
       return true;
     }
 
-    return departures.values()
-            .stream()
-            .noneMatch(trainDeparture -> trainDeparture.getFinalDepartureTime()
-                    .equals(finalDepartureTime) && trainDeparture.getTrack() == track);
+    return !departuresByTrackSlot.containsKey(new TrackSlot(finalDepartureMinute, track));
   }
 
   /**
-   * Asserts that final departure time and line is a unique combination in departures.
+   * Asserts that final departure minute and line is a unique combination in departures.
    *
-   * @param finalDepartureTime a LocalTime object adjusted departure time accounting for any delays
-   * @param line               a String object of a train departure line.
+   * @param finalDepartureMinute the departure minute on the timeline accounting for any delays
+   * @param line                 a String object of a train departure line.
    * @throws IllegalArgumentException if there exists a train departure with
    *                                  the same departure time and line.
    */
-  private void assertLineNotOccupied(LocalTime finalDepartureTime, String line)
+  private void assertLineNotOccupied(int finalDepartureMinute, String line)
           throws IllegalArgumentException {
-    if (existsDepartureWithTimeAndLine(finalDepartureTime, line)) {
-      throw new IllegalArgumentException("A train departure with this departure time and line "
-              + "already exists");
+    if (existsDepartureWithTimeAndLine(finalDepartureMinute, line)) {
+      throw rejection(RegistryMetrics.Rejection.LINE_OCCUPIED,
+              "A train departure with this departure time and line already exists");
     }
   }
 
   /**
-   * Asserts that final departure time and track is a unique combination in departures.
+   * Asserts that final departure minute and track is a unique combination in departures.
    * Unless track is unassigned (-1).
    *
-   * @param finalDepartureTime a LocalTime object adjusted departure time accounting for any delays
-   * @param track              the track the train is supposed to arrive at,
-   *                           -1 means that the train is unassigned
+   * @param finalDepartureMinute the departure minute on the timeline accounting for any delays
+   * @param track                the track the train is supposed to arrive at,
+   *                             -1 means that the train is unassigned
    * @throws IllegalArgumentException if there exists a train departure with the same
    *                                  departure time and track. Unless the track is unassigned (-1).
    */
-  private void assertTrackNotOccupied(LocalTime finalDepartureTime, int track)
+  private void assertTrackNotOccupied(int finalDepartureMinute, int track)
           throws IllegalArgumentException {
-    if (!existsDepartureWithTimeAndLine(finalDepartureTime, track)) {
-      throw new IllegalArgumentException("A train departure with this departure time and track "
-              + "already exists");
+    if (!existsDepartureWithTimeAndLine(finalDepartureMinute, track)) {
+      throw rejection(RegistryMetrics.Rejection.TRACK_OCCUPIED,
+              "A train departure with this departure time and track already exists");
     }
   }
 
@@ -224,7 +1041,8 @@ public class Registry {
    */
   private void assertTrainNumberExists(int trainNumber) throws IllegalArgumentException {
     if (!doesTrainNumberExist(trainNumber)) {
-      throw new IllegalArgumentException("A train departure with this train number does not exist"
+      throw rejection(RegistryMetrics.Rejection.TRAIN_NUMBER_MISSING,
+              "A train departure with this train number does not exist"
               + " please type in another train number");
     }
   }
@@ -238,7 +1056,8 @@ public class Registry {
   private void assertTrainNumberDoesNotExist(int trainNumber)
           throws IllegalArgumentException {
     if (doesTrainNumberExist(trainNumber)) {
-      throw new IllegalArgumentException("A train departure with this train number already exists,"
+      throw rejection(RegistryMetrics.Rejection.TRAIN_NUMBER_EXISTS,
+              "A train departure with this train number already exists,"
               + " please type in a another train number");
     }
   }
@@ -252,14 +1071,14 @@ public class Registry {
   private void assertTimeOfDayIsAfterCurrentTimeOfDay(LocalTime newTimeOfDay)
           throws IllegalArgumentException {
     if (newTimeOfDay.isBefore(timeOfDay)) {
-      throw new IllegalArgumentException("New time " + newTimeOfDay
-              + " must be after current time of day " + timeOfDay);
+      throw rejection(RegistryMetrics.Rejection.TIME_OF_DAY_BEFORE_CURRENT,
+              "New time " + newTimeOfDay + " must be after current time of day " + timeOfDay);
     }
   }
 
   /**
    * Asserts the uniqueness of a departure schedule in departures
-   * based on its time, line, and track.
+   * based on its time on the current service day, line, and track.
    *
    * @param departureTime a LocalTime object adjusted departure time accounting for any delays
    * @param line          a String object of a train departure line.
@@ -267,8 +1086,10 @@ public class Registry {
    *                      -1 means that the train is unassigned
    */
   public void assertUniqueDepartureScheduling(LocalTime departureTime, String line, int track) {
-    assertLineNotOccupied(departureTime, line);
-    assertTrackNotOccupied(departureTime, track);
+    int finalDepartureMinute = TrainDeparture.timelineMinute(serviceDay, departureTime,
+            LocalTime.MIN);
+    assertLineNotOccupied(finalDepartureMinute, line);
+    assertTrackNotOccupied(finalDepartureMinute, track);
   }
 
   /**
@@ -282,41 +1103,590 @@ public class Registry {
    *                                  at the same time.
    */
   public void assertAndSetTrack(int trainNumber, int track) throws IllegalArgumentException {
-    TrainDeparture selected = getTrainDepartureByTrainNumber(trainNumber);
-    assertTrackNotOccupied(selected.getFinalDepartureTime(), track);
-    selected.setTrack(track);
+    instrument(RegistryMetrics.Operation.SET_TRACK, trainNumber, () -> {
+      TrainDeparture selected = findTrainDeparture(trainNumber);
+      TrainDeparture.assertPositiveIntegerOrNegativeOne(track);
+      assertTrackNotOccupied(selected.getFinalDepartureMinute(), track);
+      if (journal != null) {
+        journal.appendTrack(trainNumber, track);
+      }
+
+      unindexTrainDeparture(selected);
+      selected.setTrack(track);
+      indexTrainDeparture(selected);
+      if (events != null) {
+        events.publish(RegistryEventStream.Type.TRACK_CHANGED, selected);
+      }
+
+      publishVersion();
+      if (journal != null) {
+        checkpointJournalIfDue();
+      }
+    });
+  }
+
+  /**
+   * Assigns tracks to every unassigned train departure in one batch. The departures are
+   * placed in order of final departure time on the lowest track that is free for the minutes
+   * the departure occupies, counting the departures that already have a track. The free
+   * tracks are found in a {@link TrackAllocator} instead of by searching the departures.
+   *
+   * @param tracks          the number of tracks to assign, numbered from 1
+   * @param occupiedMinutes the number of minutes a departure occupies its track,
+   *                        up to and including its final departure minute
+   * @return the unassigned train departures that could not be placed on any track,
+   *         by final departure time ascending
+   * @throws IllegalArgumentException if the number of tracks or occupied minutes is not positive
+   */
+  public List<TrainDeparture> assignTracks(int tracks, int occupiedMinutes)
+          throws IllegalArgumentException {
+    return instrumentAndGet(RegistryMetrics.Operation.ASSIGN_TRACKS, 0, () -> {
+      TrainDeparture.assertPositiveIntegerParameter(tracks);
+      TrainDeparture.assertPositiveIntegerParameter(occupiedMinutes);
+      List<TrainDeparture> unplaced = new ArrayList<>();
+      if (departuresByTime.isEmpty()) {
+        return unplaced;
+      }
+
+      TrackAllocator allocator = new TrackAllocator(tracks,
+              departuresByTime.first().getFinalDepartureMinute() - occupiedMinutes + 1,
+              departuresByTime.last().getFinalDepartureMinute(), occupiedMinutes);
+      List<TrainDeparture> unassigned = new ArrayList<>();
+      for (TrainDeparture trainDeparture : departuresByTime) {
+        if (trainDeparture.getTrack() == -1) {
+          unassigned.add(trainDeparture);
+        } else {
+          allocator.occupy(trainDeparture.getTrack(), trainDeparture.getFinalDepartureMinute());
+        }
+      }
+
+      List<TrainDeparture> placed = new ArrayList<>();
+      int[] placedTracks = new int[unassigned.size()];
+      for (TrainDeparture trainDeparture : unassigned) {
+        int track = allocator.allocate(trainDeparture.getFinalDepartureMinute());
+        if (track == -1) {
+          unplaced.add(trainDeparture);
+        } else {
+          placedTracks[placed.size()] = track;
+          placed.add(trainDeparture);
+        }
+      }
+      if (journal != null && !placed.isEmpty()) {
+        journal.appendAssignTracks(tracks, occupiedMinutes);
+      }
+
+      for (int i = 0; i < placed.size(); i++) {
+        TrainDeparture trainDeparture = placed.get(i);
+        unindexTrainDeparture(trainDeparture);
+        trainDeparture.setTrack(placedTracks[i]);
+        indexTrainDeparture(trainDeparture);
+        if (events != null) {
+          events.publish(RegistryEventStream.Type.TRACK_CHANGED, trainDeparture);
+        }
+      }
+
+      publishVersion();
+      if (journal != null) {
+        checkpointJournalIfDue();
+      }
+      return unplaced;
+    });
   }
 
   /**
    * Asserts that that the new time will not collide with any other train that has
    * the same line nad the same track. After the assertion is made, the delay is set.
+   * The departure is re-indexed and scheduled again on the expiry wheel since its final
+   * departure time changes.
    *
    * @param trainNumber the train number of the train departure to be updated.
    * @param delay       the delay to be added to the departure time.
    */
   public void assertAndSetDelay(int trainNumber, LocalTime delay) {
-    TrainDeparture selected = getTrainDepartureByTrainNumber(trainNumber);
+    instrument(RegistryMetrics.Operation.SET_DELAY, trainNumber, () -> {
+      TrainDeparture selected = findTrainDeparture(trainNumber);
+
+      int finalDepartureMinute = TrainDeparture.timelineMinute(selected.getServiceDay(),
+              selected.getDepartureTime(), delay);
+      assertLineNotOccupied(finalDepartureMinute, selected.getLine());
+      assertTrackNotOccupied(finalDepartureMinute, selected.getTrack());
+      if (journal != null) {
+        journal.appendDelay(trainNumber, delay);
+      }
 
-    LocalTime finalDepartureTime = selected
-            .getDepartureTime().plusHours(delay.getHour()).plusMinutes(delay.getMinute());
-    assertUniqueDepartureScheduling(finalDepartureTime, selected.getLine(), selected.getTrack());
+      unindexTrainDeparture(selected);
+      selected.setDelay(delay);
+      indexTrainDeparture(selected);
+      expiryWheel.schedule(selected);
+      if (events != null) {
+        events.publish(RegistryEventStream.Type.DELAY_CHANGED, selected);
+      }
 
-    selected.setDelay(delay);
+      publishVersion();
+      if (journal != null) {
+        checkpointJournalIfDue();
+      }
+    });
+  }
+
+  /**
+   * Sets the delay of a train departure and pushes the trains it collides with back by the
+   * minimal delay, instead of rejecting the delay. A train that has the final departure
+   * minute of a delayed train on the same line or track is delayed by one more minute,
+   * which may in turn push the next train, until no train collides. Only the line and track
+   * slots of the minutes the cascade passes through are looked up.
+   *
+   * <p>The cascade is planned before anything is changed, and is either applied as a whole
+   * or, if a train would be delayed past 23:59, not at all.</p>
+   *
+   * @param trainNumber the train number of the train departure to delay
+   * @param delay       the delay to be added to the departure time
+   * @return every train departure whose delay was set, by final departure time ascending
+   * @throws IllegalArgumentException if the train number does not exist, or if the cascade
+   *                                  would delay a train by more than 23:59
+   */
+  public List<TrainDeparture> propagateDelay(int trainNumber, LocalTime delay)
+          throws IllegalArgumentException {
+    return instrumentAndGet(RegistryMetrics.Operation.PROPAGATE_DELAY, trainNumber, () -> {
+      TrainDeparture selected = findTrainDeparture(trainNumber);
+      DelayCascade cascade = new DelayCascade();
+      cascade.run(selected, TrainDeparture.timelineMinute(selected.getServiceDay(),
+              selected.getDepartureTime(), delay));
+
+      if (journal != null) {
+        journal.appendDelayCascade(trainNumber, delay);
+      }
+
+      List<TrainDeparture> delayed = new ArrayList<>(cascade.plannedMinutes.keySet());
+      for (TrainDeparture trainDeparture : delayed) {
+        unindexTrainDeparture(trainDeparture);
+      }
+      for (TrainDeparture trainDeparture : delayed) {
+        int delayMinutes = cascade.delayMinutes(trainDeparture,
+                cascade.plannedMinutes.get(trainDeparture));
+        trainDeparture.setDelay(LocalTime.of(delayMinutes / 60, delayMinutes % 60));
+        indexTrainDeparture(trainDeparture);
+        expiryWheel.schedule(trainDeparture);
+        if (events != null) {
+          events.publish(RegistryEventStream.Type.DELAY_CHANGED, trainDeparture);
+        }
+      }
+
+      publishVersion();
+      if (journal != null) {
+        checkpointJournalIfDue();
+      }
+      delayed.sort(BY_FINAL_DEPARTURE_TIME);
+      return delayed;
+    });
+  }
+
+  /**
+   * Plans a delay cascade on top of the conflict indexes without changing them. The line and
+   * track slots that the cascade takes or frees are kept in maps of its own, which hide the
+   * slots of the indexes, and a slot that is freed maps to null.
+   */
+  private final class DelayCascade {
+    private final HashMap<TrainDeparture, Integer> plannedMinutes = new HashMap<>();
+    private final HashMap<LineSlot, TrainDeparture> lineSlots = new HashMap<>();
+    private final HashMap<TrackSlot, TrainDeparture> trackSlots = new HashMap<>();
+    private final ArrayDeque<Push> pushed = new ArrayDeque<>();
+
+    /**
+     * A train departure that lost a slot at a minute and must be pushed one minute later.
+     *
+     * @param trainDeparture the train departure that was pushed
+     * @param minute         the minute the train departure was pushed from
+     */
+    private record Push(TrainDeparture trainDeparture, int minute) {
+    }
+
+    /**
+     * Plans a train departure at a new final departure minute, and every push that follows.
+     *
+     * @param first  the train departure the cascade starts from
+     * @param minute the new final departure minute of that train departure
+     * @throws IllegalArgumentException if a train would be delayed by more than 23:59
+     */
+    private void run(TrainDeparture first, int minute) throws IllegalArgumentException {
+      move(first, minute);
+      while (!pushed.isEmpty()) {
+        Push push = pushed.poll();
+        if (plannedMinute(push.trainDeparture()) == push.minute()) {
+          move(push.trainDeparture(), push.minute() + 1);
+        }
+      }
+    }
+
+    /**
+     * Moves a train departure from its planned minute to a new minute, and pushes the train
+     * departures that had its line or track at the new minute.
+     *
+     * @param trainDeparture the train departure to move
+     * @param minute         the new final departure minute of the train departure
+     * @throws IllegalArgumentException if the train would be delayed by more than 23:59
+     */
+    private void move(TrainDeparture trainDeparture, int minute) throws IllegalArgumentException {
+      if (delayMinutes(trainDeparture, minute) >= TrainDeparture.MINUTES_PER_DAY) {
+        throw new IllegalArgumentException("The delay of train " + trainDeparture.getTrainNumber()
+                + " can not be pushed past 23:59");
+      }
+
+      int from = plannedMinute(trainDeparture);
+      LineSlot oldLineSlot = new LineSlot(from, trainDeparture.getLine());
+      if (owner(lineSlots, departuresByLineSlot, oldLineSlot) == trainDeparture) {
+        lineSlots.put(oldLineSlot, null);
+      }
+      LineSlot lineSlot = new LineSlot(minute, trainDeparture.getLine());
+      TrainDeparture lineOwner = owner(lineSlots, departuresByLineSlot, lineSlot);
+      lineSlots.put(lineSlot, trainDeparture);
+      if (lineOwner != null) {
+        pushed.add(new Push(lineOwner, minute));
+      }
+
+      int track = trainDeparture.getTrack();
+      if (track != -1) {
+        TrackSlot oldTrackSlot = new TrackSlot(from, track);
+        if (owner(trackSlots, departuresByTrackSlot, oldTrackSlot) == trainDeparture) {
+          trackSlots.put(oldTrackSlot, null);
+        }
+        TrackSlot trackSlot = new TrackSlot(minute, track);
+        TrainDeparture trackOwner = owner(trackSlots, departuresByTrackSlot, trackSlot);
+        trackSlots.put(trackSlot, trainDeparture);
+        if (trackOwner != null && trackOwner != lineOwner) {
+          pushed.add(new Push(trackOwner, minute));
+        }
+      }
+
+      plannedMinutes.put(trainDeparture, minute);
+    }
+
+    /**
+     * Returns the final departure minute a train departure has in the cascade.
+     *
+     * @param trainDeparture the train departure
+     * @return the planned minute if the train departure was moved, otherwise its current
+     *         final departure minute
+     */
+    private int plannedMinute(TrainDeparture trainDeparture) {
+      Integer planned = plannedMinutes.get(trainDeparture);
+      return planned == null ? trainDeparture.getFinalDepartureMinute() : planned;
+    }
+
+    /**
+     * Returns the delay in minutes that gives a train departure a final departure minute.
+     *
+     * @param trainDeparture the train departure
+     * @param minute         the final departure minute on the timeline
+     * @return the delay in minutes
+     */
+    private int delayMinutes(TrainDeparture trainDeparture, int minute) {
+      return minute - TrainDeparture.timelineMinute(trainDeparture.getServiceDay(),
+              trainDeparture.getDepartureTime(), LocalTime.MIN);
+    }
+
+    /**
+     * Returns the train departure that holds a slot in the cascade.
+     *
+     * @param claimed the slots the cascade has taken or freed
+     * @param index   the conflict index of the registry
+     * @param slot    the slot to look up
+     * @param <K>     the type of the slot
+     * @return the train departure that holds the slot, or null if the slot is free
+     */
+    private static <K> TrainDeparture owner(HashMap<K, TrainDeparture> claimed,
+                                            HashMap<K, TrainDeparture> index, K slot) {
+      return claimed.containsKey(slot) ? claimed.get(slot) : index.get(slot);
+    }
+  }
+
+  /**
+   * Adds the same extra delay to every train departure in a selection, such as every L4
+   * departure between 14:00 and 16:00. The new times of the whole selection are validated
+   * once against each other and the departures outside the selection, and the delays are
+   * either all set or, if any departure would collide, none of them.
+   *
+   * @param selection  the train departures to delay
+   * @param extraDelay the delay to add to the current delay of each departure
+   * @return the train departures that were delayed, by final departure time ascending
+   * @throws IllegalArgumentException if a delay would be more than 23:59, or if a departure
+   *                                  would collide on line or track with another departure
+   */
+  public List<TrainDeparture> addDelay(DepartureSelection selection, LocalTime extraDelay)
+          throws IllegalArgumentException {
+    return instrumentAndGet(RegistryMetrics.Operation.ADD_DELAY, 0, () -> {
+      List<TrainDeparture> selected = select(selection);
+      int extraMinutes = TrainDeparture.minuteOfDay(extraDelay);
+      int[] minutes = new int[selected.size()];
+      int[] tracks = new int[selected.size()];
+      for (int i = 0; i < selected.size(); i++) {
+        TrainDeparture trainDeparture = selected.get(i);
+        if (TrainDeparture.minuteOfDay(trainDeparture.getDelay()) + extraMinutes
+                >= TrainDeparture.MINUTES_PER_DAY) {
+          throw new IllegalArgumentException("The delay of train "
+                  + trainDeparture.getTrainNumber() + " can not be more than 23:59");
+        }
+        minutes[i] = trainDeparture.getFinalDepartureMinute() + extraMinutes;
+        tracks[i] = trainDeparture.getTrack();
+      }
+      assertSlotsNotOccupied(selected, minutes, tracks);
+      if (journal != null) {
+        journal.appendBulkDelay(selection, extraDelay);
+      }
+
+      for (TrainDeparture trainDeparture : selected) {
+        unindexTrainDeparture(trainDeparture);
+      }
+      for (TrainDeparture trainDeparture : selected) {
+        int delayMinutes = TrainDeparture.minuteOfDay(trainDeparture.getDelay()) + extraMinutes;
+        trainDeparture.setDelay(LocalTime.of(delayMinutes / 60, delayMinutes % 60));
+        indexTrainDeparture(trainDeparture);
+        expiryWheel.schedule(trainDeparture);
+        if (events != null) {
+          events.publish(RegistryEventStream.Type.DELAY_CHANGED, trainDeparture);
+        }
+      }
+
+      publishVersion();
+      if (journal != null) {
+        checkpointJournalIfDue();
+      }
+      return selected;
+    });
+  }
+
+  /**
+   * Moves every train departure in a selection to the same track, such as everything on
+   * track 3 to track 5. The new tracks of the whole selection are validated once, and the
+   * tracks are either all set or, if any departure would collide, none of them.
+   *
+   * @param selection the train departures to move
+   * @param track     the track to move the departures to, -1 to unassign them
+   * @return the train departures that were moved, by final departure time ascending
+   * @throws IllegalArgumentException if the track is not positive or -1, or if a departure
+   *                                  would collide on the track with another departure
+   */
+  public List<TrainDeparture> moveToTrack(DepartureSelection selection, int track)
+          throws IllegalArgumentException {
+    return instrumentAndGet(RegistryMetrics.Operation.MOVE_TO_TRACK, 0, () -> {
+      TrainDeparture.assertPositiveIntegerOrNegativeOne(track);
+      List<TrainDeparture> selected = select(selection);
+      int[] minutes = new int[selected.size()];
+      int[] tracks = new int[selected.size()];
+      for (int i = 0; i < selected.size(); i++) {
+        minutes[i] = selected.get(i).getFinalDepartureMinute();
+        tracks[i] = track;
+      }
+      assertSlotsNotOccupied(selected, minutes, tracks);
+      if (journal != null) {
+        journal.appendBulkTrack(selection, track);
+      }
+
+      for (TrainDeparture trainDeparture : selected) {
+        unindexTrainDeparture(trainDeparture);
+      }
+      for (TrainDeparture trainDeparture : selected) {
+        trainDeparture.setTrack(track);
+        indexTrainDeparture(trainDeparture);
+        if (events != null) {
+          events.publish(RegistryEventStream.Type.TRACK_CHANGED, trainDeparture);
+        }
+      }
+
+      publishVersion();
+      if (journal != null) {
+        checkpointJournalIfDue();
+      }
+      return selected;
+    });
+  }
+
+  /**
+   * Returns every train departure in a selection, read through the index chosen by
+   * {@link #planQuery(DepartureSelection)}.
+   *
+   * @param selection the selection
+   * @return the selected train departures by final departure time ascending
+   */
+  private List<TrainDeparture> select(DepartureSelection selection) {
+    List<TrainDeparture> selected = new ArrayList<>();
+    for (TrainDeparture trainDeparture : planQuery(selection).departures()) {
+      if (selection.matches(trainDeparture)) {
+        selected.add(trainDeparture);
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Chooses the index to read a selection from. The destination, line and track indexes
+   * hold exactly the departures of one key, so their size is known without visiting them.
+   * The number of departures in the window of the selection is estimated from how much of
+   * the span between the first and last departure the window covers. The smallest of these
+   * is chosen, and the window is then cut out of the chosen index, since every index is
+   * ordered by final departure time.
+   *
+   * @param selection the selection to plan
+   * @return the chosen index and the ordered departures to filter
+   */
+  QueryPlan planQuery(DepartureSelection selection) {
+    QueryIndex index = QueryIndex.TIME;
+    NavigableSet<TrainDeparture> chosen = departuresByTime;
+    long chosenSize = estimateWindowSize(selection);
+
+    if (selection.getDestination() != null) {
+      TreeSet<TrainDeparture> group = departuresByDestination.get(
+              normalizeDestination(selection.getDestination()));
+      if (group == null) {
+        return new QueryPlan(QueryIndex.DESTINATION, Collections.emptyNavigableSet());
+      }
+      if (group.size() < chosenSize) {
+        index = QueryIndex.DESTINATION;
+        chosen = group;
+        chosenSize = group.size();
+      }
+    }
+    if (selection.getLine() != null) {
+      TreeSet<TrainDeparture> group = departuresByLine.get(selection.getLine());
+      if (group == null) {
+        return new QueryPlan(QueryIndex.LINE, Collections.emptyNavigableSet());
+      }
+      if (group.size() < chosenSize) {
+        index = QueryIndex.LINE;
+        chosen = group;
+        chosenSize = group.size();
+      }
+    }
+    if (selection.getTrack() > 0) {
+      TreeSet<TrainDeparture> group = departuresByTrack.get(selection.getTrack());
+      if (group == null) {
+        return new QueryPlan(QueryIndex.TRACK, Collections.emptyNavigableSet());
+      }
+      if (group.size() < chosenSize) {
+        index = QueryIndex.TRACK;
+        chosen = group;
+      }
+    }
+
+    if (selection.getFrom() != null) {
+      chosen = chosen.subSet(probe(selection.getFrom(), 1), true,
+              probe(selection.getTo(), Integer.MAX_VALUE), true);
+    }
+    return new QueryPlan(index, chosen);
+  }
+
+  /**
+   * Estimates how many train departures are in the window of a selection, assuming the
+   * departures are spread evenly between the first and the last departure.
+   *
+   * @param selection the selection
+   * @return the estimated number of departures in the window, or the number of departures
+   *         if the selection has no window
+   */
+  private long estimateWindowSize(DepartureSelection selection) {
+    int size = departuresByTime.size();
+    if (selection.getFrom() == null || size == 0) {
+      return size;
+    }
+    int first = departuresByTime.first().getFinalDepartureMinute();
+    int last = departuresByTime.last().getFinalDepartureMinute();
+    int from = Math.max(first, TrainDeparture.timelineMinute(serviceDay, selection.getFrom(),
+            LocalTime.MIN));
+    int to = Math.min(last, TrainDeparture.timelineMinute(serviceDay, selection.getTo(),
+            LocalTime.MIN));
+    if (to < from) {
+      return 0;
+    }
+    return 1 + (long) size * (to - from) / (last - first + 1);
+  }
+
+  /**
+   * Returns a train departure that is only used to look up a time in the ordered indexes.
+   *
+   * @param time        the final departure time on the current service day
+   * @param trainNumber the train number that orders the probe among departures at that time
+   * @return a train departure that is not in the registry
+   */
+  private TrainDeparture probe(LocalTime time, int trainNumber) {
+    return new TrainDeparture(time, LocalTime.MIN, "-", "-", trainNumber, -1, serviceDay);
+  }
+
+  /**
+   * Asserts that a group of train departures can take new line and track slots at once,
+   * without colliding with each other or with the departures outside the group.
+   *
+   * @param group   the train departures that move
+   * @param minutes the new final departure minute of each departure in the group
+   * @param tracks  the new track of each departure in the group
+   * @throws IllegalArgumentException if two departures would share a line or an assigned
+   *                                  track at the same minute
+   */
+  private void assertSlotsNotOccupied(List<TrainDeparture> group, int[] minutes, int[] tracks)
+          throws IllegalArgumentException {
+    HashSet<TrainDeparture> moving = new HashSet<>(group);
+    HashSet<LineSlot> lineSlots = new HashSet<>();
+    HashSet<TrackSlot> trackSlots = new HashSet<>();
+    for (int i = 0; i < group.size(); i++) {
+      TrainDeparture trainDeparture = group.get(i);
+      LineSlot lineSlot = new LineSlot(minutes[i], trainDeparture.getLine());
+      TrainDeparture lineOwner = departuresByLineSlot.get(lineSlot);
+      if (!lineSlots.add(lineSlot) || lineOwner != null && !moving.contains(lineOwner)) {
+        throw rejection(RegistryMetrics.Rejection.SLOTS_OCCUPIED,
+                "Train " + trainDeparture.getTrainNumber()
+                + " would depart at the same time and line as another train departure");
+      }
+      if (tracks[i] != -1) {
+        TrackSlot trackSlot = new TrackSlot(minutes[i], tracks[i]);
+        TrainDeparture trackOwner = departuresByTrackSlot.get(trackSlot);
+        if (!trackSlots.add(trackSlot) || trackOwner != null && !moving.contains(trackOwner)) {
+          throw rejection(RegistryMetrics.Rejection.SLOTS_OCCUPIED,
+                  "Train " + trainDeparture.getTrainNumber()
+                  + " would depart at the same time and track as another train departure");
+        }
+      }
+    }
   }
 
   /**
    * Asserts that departure time is not before time of day.
    *
-   * @param departureTime a LocalTime object of a trains departure time.
+   * @param finalDepartureMinute the departure minute on the timeline accounting for any delays.
    * @throws IllegalArgumentException if departure time is before time of day.
    */
-  private void assertDepartureTimeIsNotBeforeTimeOfDay(LocalTime departureTime)
+  private void assertDepartureTimeIsNotBeforeTimeOfDay(int finalDepartureMinute)
+          throws IllegalArgumentException {
+    if (finalDepartureMinute < currentMinute()) {
+      throw rejection(RegistryMetrics.Rejection.DEPARTURE_BEFORE_TIME_OF_DAY,
+              "Departure time must not be after time of day");
+    }
+  }
+
+  /**
+   * Asserts that departures can be planned on a service day, which must not be later than
+   * the next service day. Departures of earlier days are only accepted if they have not left
+   * yet, which is checked against the time of day.
+   *
+   * @param plannedServiceDay the service day of a departure
+   * @throws IllegalArgumentException if the service day is more than one day after the
+   *                                  current service day.
+   */
+  private void assertServiceDayIsPlannable(int plannedServiceDay)
           throws IllegalArgumentException {
-    if (departureTime.isBefore(timeOfDay)) {
-      throw new IllegalArgumentException("Departure time must not be after time of day");
+    if (plannedServiceDay > serviceDay + 1) {
+      throw rejection(RegistryMetrics.Rejection.SERVICE_DAY_NOT_PLANNABLE,
+              "Departures can not be planned later than service day " + (serviceDay + 1));
     }
   }
 
+  /**
+   * Returns the current time on the timeline of service days.
+   *
+   * @return the number of minutes from the start of service day 0 to the time of day
+   */
+  private int currentMinute() {
+    return TrainDeparture.timelineMinute(serviceDay, timeOfDay, LocalTime.MIN);
+  }
+
   /**
    * Asserts that departures is not empty.
    *
@@ -324,8 +1694,9 @@ public class Registry {
    */
   public void assertDeparturesNotEmpty() throws IllegalArgumentException {
     if (departures.isEmpty()) {
-      throw new IllegalArgumentException("Option is not available because "
-              + "no train departures exist. Please add a train departure to use this option.");
+      throw rejection(RegistryMetrics.Rejection.NO_DEPARTURES,
+              "Option is not available because no train departures exist. "
+              + "Please add a train departure to use this option.");
     }
   }
 
@@ -336,7 +1707,7 @@ public class Registry {
    */
   @Override
   public String toString() {
-    return departures.values()
+    return departuresByTime
             .stream()
             .map(TrainDeparture::toString)
             .collect(Collectors.joining("\n"));
@@ -0,0 +1,220 @@
+package edu.ntnu.stud;
+
+import java.lang.invoke.VarHandle;
+import java.time.LocalTime;
+
+/**
+ * Publishes the changes of a {@link Registry} as a stream of events that other components,
+ * such as departure boards, loggers or replicas, can consume instead of reading every
+ * departure of the registry again.
+ *
+ * <p>The events are kept in a ring buffer of slots that are all allocated when the stream is
+ * created, so publishing an event never allocates and never waits. The registry is the only
+ * publisher, and it overwrites the oldest slot once the buffer is full, whether or not every
+ * {@link Subscriber} has read it. A subscriber that falls more than a full buffer behind skips
+ * ahead to the oldest event that is still kept, and counts the events it missed.</p>
+ *
+ * <p>Subscribers read without any locks, and each subscriber is meant to be polled by one
+ * thread at a time. Every slot holds a sequence number that the publisher clears before it
+ * writes the slot and sets after it, so a subscriber can tell when a slot was overwritten
+ * while it was being read.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public final class RegistryEventStream {
+  private static final long WRITING = -1;
+
+  private final Slot[] slots;
+  private final int mask;
+  private volatile long published;
+
+  /**
+   * The kinds of changes to a registry.
+   */
+  public enum Type {
+    /** A train departure was added. */
+    ADDED,
+    /** The delay of a train departure was changed. */
+    DELAY_CHANGED,
+    /** The track of a train departure was changed. */
+    TRACK_CHANGED,
+    /** A train departure was removed because the time of day passed its departure. */
+    EVICTED
+  }
+
+  /**
+   * Receives the events of a stream.
+   */
+  @FunctionalInterface
+  public interface Handler {
+    /**
+     * Called for every event, in the order the changes were made. The delay and track are
+     * the values the departure had right after the change, even if it has changed since.
+     *
+     * @param sequence       the sequence number of the event, starting from 0
+     * @param type           the kind of change
+     * @param trainDeparture the train departure that changed
+     * @param delay          the delay of the departure after the change
+     * @param track          the track of the departure after the change
+     */
+    void onEvent(long sequence, Type type, TrainDeparture trainDeparture, LocalTime delay,
+                 int track);
+  }
+
+  /**
+   * A slot of the ring buffer, reused for every event that lands on it.
+   */
+  private static final class Slot {
+    private volatile long sequence = WRITING;
+    private Type type;
+    private TrainDeparture trainDeparture;
+    private LocalTime delay;
+    private int track;
+  }
+
+  /**
+   * Constructs a stream that keeps the latest events.
+   *
+   * @param capacity the number of events kept, rounded up to a power of two
+   * @throws IllegalArgumentException if the capacity is not positive
+   */
+  public RegistryEventStream(int capacity) throws IllegalArgumentException {
+    TrainDeparture.assertPositiveIntegerParameter(capacity);
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new Slot[size];
+    for (int i = 0; i < size; i++) {
+      slots[i] = new Slot();
+    }
+    this.mask = size - 1;
+  }
+
+  /**
+   * Returns the number of events that are kept.
+   *
+   * @return the capacity of the ring buffer
+   */
+  public int capacity() {
+    return slots.length;
+  }
+
+  /**
+   * Returns the number of events that have been published.
+   *
+   * @return the sequence number the next event will get
+   */
+  public long published() {
+    return published;
+  }
+
+  /**
+   * Creates a subscriber that receives every event published from now on.
+   *
+   * @return a new subscriber
+   */
+  public Subscriber subscribe() {
+    return new Subscriber(published);
+  }
+
+  /**
+   * Publishes an event. Only called by the registry, which never publishes from more than one
+   * thread at a time.
+   *
+   * @param type           the kind of change
+   * @param trainDeparture the train departure that changed
+   */
+  void publish(Type type, TrainDeparture trainDeparture) {
+    long sequence = published;
+    Slot slot = slots[(int) sequence & mask];
+
+    slot.sequence = WRITING;
+    VarHandle.storeStoreFence();
+    slot.type = type;
+    slot.trainDeparture = trainDeparture;
+    slot.delay = trainDeparture.getDelay();
+    slot.track = trainDeparture.getTrack();
+    slot.sequence = sequence;
+
+    published = sequence + 1;
+  }
+
+  /**
+   * Reads the events of a stream from where it last stopped.
+   */
+  public final class Subscriber {
+    private long next;
+    private long missed;
+
+    private Subscriber(long next) {
+      this.next = next;
+    }
+
+    /**
+     * Hands every event published since the last poll to a handler.
+     *
+     * @param handler the handler to call for every event
+     * @return the number of events handed to the handler
+     */
+    public int poll(Handler handler) {
+      long end = published;
+      int handled = 0;
+      while (next < end) {
+        if (end - next > slots.length) {
+          skipTo(end - slots.length);
+          continue;
+        }
+
+        Slot slot = slots[(int) next & mask];
+        Type type = slot.type;
+        TrainDeparture trainDeparture = slot.trainDeparture;
+        LocalTime delay = slot.delay;
+        int track = slot.track;
+        VarHandle.loadLoadFence();
+        if (slot.sequence != next) {
+          end = published;
+          skipTo(end - slots.length + 1);
+          continue;
+        }
+
+        handler.onEvent(next, type, trainDeparture, delay, track);
+        next++;
+        handled++;
+      }
+      return handled;
+    }
+
+    /**
+     * Moves past events that have already been overwritten.
+     *
+     * @param oldest the sequence number of the oldest event that may still be kept
+     */
+    private void skipTo(long oldest) {
+      if (oldest > next) {
+        missed += oldest - next;
+        next = oldest;
+      }
+    }
+
+    /**
+     * Returns the number of events that were overwritten before this subscriber read them.
+     *
+     * @return the number of missed events
+     */
+    public long missed() {
+      return missed;
+    }
+
+    /**
+     * Returns the number of published events this subscriber has not read yet.
+     *
+     * @return the number of pending events
+     */
+    public long pending() {
+      return published - next;
+    }
+  }
+}
@@ -0,0 +1,638 @@
+package edu.ntnu.stud;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead journal of the changes made to a {@link Registry}, so that the
+ * registry can be rebuilt after the application exits or crashes.
+ *
+ * <p>A registry with a journal appends a record for every departure added, every delay and
+ * track set, every delay cascade, bulk change and track assignment, and every change of the
+ * time of day or service day. The record is appended after the change is validated but before
+ * the registry is changed, so a journal that can not be written rejects the change instead of
+ * losing it. Records are written to an in-memory buffer and a background thread writes the
+ * buffer to the file and forces it to disk every {@value #COMMIT_INTERVAL_MILLIS} ms. All changes made within an interval share one fsync
+ * (group commit), so a crash loses at most the changes of the last interval.</p>
+ *
+ * <p>Every record is stored as its length, a CRC32 checksum and the record itself. A record
+ * that was only partly written when the application crashed fails the checksum, and the
+ * journal is cut off before it when opened.</p>
+ *
+ * <p>A line or destination can be at most {@value #MAX_STRING_BYTES} bytes long in UTF-8,
+ * since its length is stored as an unsigned short where 0xFFFF marks a selection criterion
+ * that is not set.</p>
+ *
+ * <p>After {@value #CHECKPOINT_INTERVAL} records, the journal is replaced by a checkpoint:
+ * a new journal that only holds the current departures, service day and time of day. This bounds the time
+ * it takes to replay the journal. The checkpoint is written to a temporary file that is then
+ * moved over the journal, so the journal on disk is always either the old or the new one.</p>
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * RegistryJournal journal = RegistryJournal.open(path);
+ * Registry registry = new Registry();
+ * journal.replay(registry);
+ * registry.setJournal(journal);
+ * </pre>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public class RegistryJournal implements Closeable {
+  static final int COMMIT_INTERVAL_MILLIS = 10;
+  static final int CHECKPOINT_INTERVAL = 100_000;
+  static final int MAX_STRING_BYTES = 0xFFFE;
+
+  private static final byte ADD = 1;
+  private static final byte DELAY = 2;
+  private static final byte TRACK = 3;
+  private static final byte TIME_OF_DAY = 4;
+  private static final byte ADD_ON_SERVICE_DAY = 5;
+  private static final byte SERVICE_DAY = 6;
+  private static final byte DELAY_CASCADE = 7;
+  private static final byte BULK_DELAY = 8;
+  private static final byte BULK_TRACK = 9;
+  private static final byte ASSIGN_TRACKS = 10;
+  private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private final Path file;
+  private final ScheduledExecutorService committer;
+  private final Object bufferLock = new Object();
+  private final Object fileLock = new Object();
+  private final CRC32 checksum = new CRC32();
+
+  private FileChannel channel;
+  private ByteBuffer pending;
+  private int recordsSinceCheckpoint;
+  private IOException failure;
+
+  /**
+   * Opens a journal and starts its committer thread.
+   *
+   * @param file    the journal file
+   * @param channel the channel of the journal file, positioned at its end
+   */
+  private RegistryJournal(Path file, FileChannel channel) {
+    this.file = file;
+    this.channel = channel;
+    this.pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    this.committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "registry-journal-committer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.committer.scheduleWithFixedDelay(this::commitQuietly, COMMIT_INTERVAL_MILLIS,
+            COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Opens a journal file, creating it if it does not exist. A partly written record at
+   * the end of the file is removed.
+   *
+   * @param file the path of the journal file
+   * @return the opened journal
+   * @throws IOException if the file can not be opened
+   */
+  public static RegistryJournal open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long validLength = validLength(channel);
+    channel.truncate(validLength);
+    channel.position(validLength);
+    return new RegistryJournal(file, channel);
+  }
+
+  /**
+   * Returns true if the journal holds no records.
+   *
+   * @return true if the journal is empty, otherwise false
+   * @throws IOException if the size of the file can not be read
+   */
+  public boolean isEmpty() throws IOException {
+    synchronized (fileLock) {
+      return channel.size() == 0;
+    }
+  }
+
+  /**
+   * Applies every record in the journal to a registry, which should be empty and have no
+   * journal attached. Records the registry rejects are skipped.
+   *
+   * @param registry the registry to rebuild
+   * @return the number of records applied
+   * @throws IOException if the journal can not be read
+   */
+  public int replay(Registry registry) throws IOException {
+    ByteBuffer journal;
+    synchronized (fileLock) {
+      journal = ByteBuffer.allocate((int) channel.size());
+      channel.read(journal, 0);
+    }
+    journal.flip();
+
+    int applied = 0;
+    while (journal.remaining() >= RECORD_HEADER_SIZE) {
+      int length = journal.getInt();
+      journal.getInt();
+      ByteBuffer record = journal.slice(journal.position(), length);
+      journal.position(journal.position() + length);
+      try {
+        apply(record, registry);
+        applied++;
+      } catch (IllegalArgumentException e) {
+        // The registry rejected the record, which means it was rejected when it was made too.
+      }
+    }
+    return applied;
+  }
+
+  /**
+   * Applies a single record to a registry.
+   *
+   * @param record   the record, without its length and checksum
+   * @param registry the registry to apply the record to
+   */
+  private static void apply(ByteBuffer record, Registry registry) {
+    switch (record.get()) {
+      case ADD -> {
+        int trainNumber = record.getInt();
+        LocalTime departureTime = timeOf(record.getShort());
+        LocalTime delay = timeOf(record.getShort());
+        int track = record.getInt();
+        String line = getString(record);
+        String destination = getString(record);
+        registry.addTrainDeparture(departureTime, delay, destination, line, trainNumber, track);
+      }
+      case DELAY -> registry.assertAndSetDelay(record.getInt(), timeOf(record.getShort()));
+      case TRACK -> registry.assertAndSetTrack(record.getInt(), record.getInt());
+      case TIME_OF_DAY -> registry.setTimeOfDay(timeOf(record.getShort()));
+      case ADD_ON_SERVICE_DAY -> {
+        int serviceDay = record.getInt();
+        int trainNumber = record.getInt();
+        LocalTime departureTime = timeOf(record.getShort());
+        LocalTime delay = timeOf(record.getShort());
+        int track = record.getInt();
+        String line = getString(record);
+        String destination = getString(record);
+        registry.addTrainDepartures(List.of(new TrainDeparture(departureTime, delay, destination,
+                line, trainNumber, track, serviceDay)), (index, reason) -> {
+                  throw new IllegalArgumentException(reason);
+                });
+      }
+      case SERVICE_DAY -> registry.startServiceDay(record.getInt());
+      case DELAY_CASCADE -> registry.propagateDelay(record.getInt(), timeOf(record.getShort()));
+      case BULK_DELAY -> registry.addDelay(getSelection(record), timeOf(record.getShort()));
+      case BULK_TRACK -> registry.moveToTrack(getSelection(record), record.getInt());
+      case ASSIGN_TRACKS -> registry.assignTracks(record.getInt(), record.getInt());
+      default -> throw new IllegalArgumentException("Unknown journal record");
+    }
+  }
+
+  /**
+   * Appends a record of an added train departure, together with its service day.
+   *
+   * @param trainDeparture the train departure that was added
+   * @throws IllegalArgumentException if the line or destination is longer than
+   *                                  {@value #MAX_STRING_BYTES} bytes
+   */
+  void appendAdd(TrainDeparture trainDeparture) throws IllegalArgumentException {
+    byte[] line = bytesOf(trainDeparture.getLine());
+    byte[] destination = bytesOf(trainDeparture.getDestination());
+
+    synchronized (bufferLock) {
+      int start = beginRecord(17 + 2 * Short.BYTES + line.length + destination.length);
+      pending.put(ADD_ON_SERVICE_DAY)
+              .putInt(trainDeparture.getServiceDay())
+              .putInt(trainDeparture.getTrainNumber())
+              .putShort(minuteOf(trainDeparture.getDepartureTime()))
+              .putShort(minuteOf(trainDeparture.getDelay()))
+              .putInt(trainDeparture.getTrack())
+              .putShort((short) line.length).put(line)
+              .putShort((short) destination.length).put(destination);
+      endRecord(start);
+    }
+  }
+
+  /**
+   * Appends a record of a delay that was set.
+   *
+   * @param trainNumber the train number of the delayed departure
+   * @param delay       the new delay
+   */
+  void appendDelay(int trainNumber, LocalTime delay) {
+    synchronized (bufferLock) {
+      int start = beginRecord(7);
+      pending.put(DELAY).putInt(trainNumber).putShort(minuteOf(delay));
+      endRecord(start);
+    }
+  }
+
+  /**
+   * Appends a record of a delay that was pushed on to the departures behind it. The
+   * cascade is replayed as a whole, since its single delays can not be set one at a time.
+   *
+   * @param trainNumber the train number of the departure the cascade started from
+   * @param delay       the new delay of that departure
+   */
+  void appendDelayCascade(int trainNumber, LocalTime delay) {
+    synchronized (bufferLock) {
+      int start = beginRecord(7);
+      pending.put(DELAY_CASCADE).putInt(trainNumber).putShort(minuteOf(delay));
+      endRecord(start);
+    }
+  }
+
+  /**
+   * Appends a record of an extra delay that was added to a selection of departures. The
+   * selection is stored instead of the departures, and selects the same departures when
+   * the record is replayed.
+   *
+   * @param selection  the selection of departures that were delayed
+   * @param extraDelay the delay that was added to each departure
+   * @throws IllegalArgumentException if the line or destination of the selection is longer
+   *                                  than {@value #MAX_STRING_BYTES} bytes
+   */
+  void appendBulkDelay(DepartureSelection selection, LocalTime extraDelay) {
+    byte[] line = bytesOf(selection.getLine());
+    byte[] destination = bytesOf(selection.getDestination());
+
+    synchronized (bufferLock) {
+      int start = beginRecord(1 + selectionSize(line, destination) + Short.BYTES);
+      pending.put(BULK_DELAY);
+      putSelection(selection, line, destination);
+      pending.putShort(minuteOf(extraDelay));
+      endRecord(start);
+    }
+  }
+
+  /**
+   * Appends a record of a selection of departures that were moved to a track.
+   *
+   * @param selection the selection of departures that were moved
+   * @param track     the track the departures were moved to
+   * @throws IllegalArgumentException if the line or destination of the selection is longer
+   *                                  than {@value #MAX_STRING_BYTES} bytes
+   */
+  void appendBulkTrack(DepartureSelection selection, int track) {
+    byte[] line = bytesOf(selection.getLine());
+    byte[] destination = bytesOf(selection.getDestination());
+
+    synchronized (bufferLock) {
+      int start = beginRecord(1 + selectionSize(line, destination) + Integer.BYTES);
+      pending.put(BULK_TRACK);
+      putSelection(selection, line, destination);
+      pending.putInt(track);
+      endRecord(start);
+    }
+  }
+
+  /**
+   * Appends a record of tracks that were assigned to the unassigned departures. Like a
+   * delay cascade, the assignment is replayed as a whole, and places the same departures on
+   * the same tracks when the record is replayed.
+   *
+   * @param tracks          the number of tracks that were assigned
+   * @param occupiedMinutes the number of minutes a departure occupies its track
+   */
+  void appendAssignTracks(int tracks, int occupiedMinutes) {
+    synchronized (bufferLock) {
+      int start = beginRecord(9);
+      pending.put(ASSIGN_TRACKS).putInt(tracks).putInt(occupiedMinutes);
+      endRecord(start);
+    }
+  }
+
+  /**
+   * Returns the number of bytes a selection takes in a record.
+   *
+   * @param line        the encoded line of the selection, or null
+   * @param destination the encoded destination of the selection, or null
+   * @return the size of the selection in bytes
+   */
+  private static int selectionSize(byte[] line, byte[] destination) {
+    return 1 + 4 * Short.BYTES + Integer.BYTES + (line == null ? 0 : line.length)
+            + (destination == null ? 0 : destination.length);
+  }
+
+  /**
+   * Writes a selection to the pending buffer. A criterion that is not set is written as a
+   * length of 0xFFFF or a minute of -1, and the delayed-only flag as a byte.
+   *
+   * @param selection   the selection to write
+   * @param line        the encoded line of the selection, or null
+   * @param destination the encoded destination of the selection, or null
+   */
+  private void putSelection(DepartureSelection selection, byte[] line, byte[] destination) {
+    putNullableBytes(line);
+    putNullableBytes(destination);
+    pending.putInt(selection.getTrack())
+            .putShort(selection.getFrom() == null ? -1 : minuteOf(selection.getFrom()))
+            .putShort(selection.getTo() == null ? -1 : minuteOf(selection.getTo()))
+            .put((byte) (selection.isDelayedOnly() ? 1 : 0));
+  }
+
+  /**
+   * Writes a string that may not be set to the pending buffer.
+   *
+   * @param bytes the encoded string, or null
+   */
+  private void putNullableBytes(byte[] bytes) {
+    if (bytes == null) {
+      pending.putShort((short) -1);
+    } else {
+      pending.putShort((short) bytes.length).put(bytes);
+    }
+  }
+
+  /**
+   * Appends a record of a track that was set.
+   *
+   * @param trainNumber the train number of the departure
+   * @param track       the new track
+   */
+  void appendTrack(int trainNumber, int track) {
+    synchronized (bufferLock) {
+      int start = beginRecord(9);
+      pending.put(TRACK).putInt(trainNumber).putInt(track);
+      endRecord(start);
+    }
+  }
+
+  /**
+   * Appends a record of a new time of day.
+   *
+   * @param timeOfDay the new time of day
+   */
+  void appendTimeOfDay(LocalTime timeOfDay) {
+    synchronized (bufferLock) {
+      int start = beginRecord(3);
+      pending.put(TIME_OF_DAY).putShort(minuteOf(timeOfDay));
+      endRecord(start);
+    }
+  }
+
+  /**
+   * Appends a record of a new service day.
+   *
+   * @param serviceDay the service day that was started
+   */
+  void appendServiceDay(int serviceDay) {
+    synchronized (bufferLock) {
+      int start = beginRecord(5);
+      pending.put(SERVICE_DAY).putInt(serviceDay);
+      endRecord(start);
+    }
+  }
+
+  /**
+   * Returns true if enough records have been appended since the last checkpoint
+   * that a new checkpoint should be written.
+   *
+   * @return true if a checkpoint is due, otherwise false
+   */
+  boolean isCheckpointDue() {
+    synchronized (bufferLock) {
+      return recordsSinceCheckpoint >= CHECKPOINT_INTERVAL;
+    }
+  }
+
+  /**
+   * Replaces the journal with a checkpoint of the given state. Records that are not yet
+   * committed are dropped, since the state already contains their changes. The caller must
+   * make sure the registry does not change while the checkpoint is written.
+   *
+   * @param trainDepartures the current train departures of the registry
+   * @param serviceDay      the current service day of the registry
+   * @param timeOfDay       the current time of day of the registry
+   * @throws IOException if the checkpoint can not be written
+   */
+  void checkpoint(Collection<TrainDeparture> trainDepartures, int serviceDay,
+                  LocalTime timeOfDay) throws IOException {
+    synchronized (fileLock) {
+      synchronized (bufferLock) {
+        pending.clear();
+        if (serviceDay > 0) {
+          appendServiceDay(serviceDay);
+        }
+        trainDepartures.forEach(this::appendAdd);
+        appendTimeOfDay(timeOfDay);
+        recordsSinceCheckpoint = 0;
+      }
+
+      Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+      try (FileChannel checkpoint = FileChannel.open(temporary, StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        synchronized (bufferLock) {
+          writeFully(checkpoint, pending.flip());
+          pending.clear();
+        }
+        checkpoint.force(true);
+      }
+
+      channel.close();
+      Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+              StandardCopyOption.REPLACE_EXISTING);
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      channel.position(channel.size());
+    }
+  }
+
+  /**
+   * Writes every appended record to the file and forces it to disk.
+   *
+   * @throws IOException if the records can not be written
+   */
+  public void commit() throws IOException {
+    synchronized (fileLock) {
+      ByteBuffer committing;
+      synchronized (bufferLock) {
+        if (failure != null) {
+          throw failure;
+        }
+        if (pending.position() == 0) {
+          return;
+        }
+        committing = pending.flip();
+        pending = ByteBuffer.allocate(committing.capacity());
+      }
+      writeFully(channel, committing);
+      channel.force(false);
+    }
+  }
+
+  /**
+   * Commits the remaining records, stops the committer thread and closes the file.
+   *
+   * @throws IOException if the remaining records can not be written
+   */
+  @Override
+  public void close() throws IOException {
+    committer.shutdown();
+    try {
+      committer.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      commit();
+    } finally {
+      synchronized (fileLock) {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Commits from the committer thread, keeping the first failure so it can be reported
+   * to the registry on the next change.
+   */
+  private void commitQuietly() {
+    try {
+      commit();
+    } catch (IOException e) {
+      synchronized (bufferLock) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Makes room for a record in the buffer and reserves its header.
+   *
+   * @param length the length of the record without its header
+   * @return the position of the header in the buffer
+   * @throws UncheckedIOException if an earlier commit failed
+   */
+  private int beginRecord(int length) {
+    if (failure != null) {
+      throw new UncheckedIOException("The journal could not be written", failure);
+    }
+    int needed = RECORD_HEADER_SIZE + length;
+    if (pending.remaining() < needed) {
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+              pending.position() + needed));
+      pending = grown.put(pending.flip());
+    }
+    int start = pending.position();
+    pending.position(start + RECORD_HEADER_SIZE);
+    return start;
+  }
+
+  /**
+   * Fills in the length and checksum of the record that was started at the given position.
+   *
+   * @param start the position returned by {@link #beginRecord(int)}
+   */
+  private void endRecord(int start) {
+    int length = pending.position() - start - RECORD_HEADER_SIZE;
+    checksum.reset();
+    checksum.update(pending.array(), start + RECORD_HEADER_SIZE, length);
+    pending.putInt(start, length);
+    pending.putInt(start + Integer.BYTES, (int) checksum.getValue());
+    recordsSinceCheckpoint++;
+  }
+
+  /**
+   * Returns the length of the journal up to the first record that is incomplete
+   * or fails its checksum.
+   *
+   * @param channel the channel of the journal file
+   * @return the number of valid bytes at the start of the file
+   * @throws IOException if the file can not be read
+   */
+  private static long validLength(FileChannel channel) throws IOException {
+    ByteBuffer journal = ByteBuffer.allocate((int) channel.size());
+    channel.read(journal, 0);
+    journal.flip();
+
+    CRC32 checksum = new CRC32();
+    while (journal.remaining() >= RECORD_HEADER_SIZE) {
+      int start = journal.position();
+      int length = journal.getInt();
+      int expected = journal.getInt();
+      if (length <= 0 || length > journal.remaining()) {
+        return start;
+      }
+      checksum.reset();
+      checksum.update(journal.array(), journal.position(), length);
+      if ((int) checksum.getValue() != expected) {
+        return start;
+      }
+      journal.position(journal.position() + length);
+    }
+    return journal.position();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static DepartureSelection getSelection(ByteBuffer record) {
+    String line = getNullableString(record);
+    String destination = getNullableString(record);
+    int track = record.getInt();
+    short from = record.getShort();
+    short to = record.getShort();
+    boolean delayedOnly = record.get() == 1;
+    return DepartureSelection.of(line, destination, track, from == -1 ? null : timeOf(from),
+            to == -1 ? null : timeOf(to), delayedOnly);
+  }
+
+  private static String getNullableString(ByteBuffer record) {
+    int length = Short.toUnsignedInt(record.getShort());
+    if (length == 0xFFFF) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    record.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] bytesOf(String text) throws IllegalArgumentException {
+    if (text == null) {
+      return null;
+    }
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > MAX_STRING_BYTES) {
+      throw new IllegalArgumentException("A line or destination of " + bytes.length
+              + " bytes is longer than the " + MAX_STRING_BYTES + " bytes a journal can hold");
+    }
+    return bytes;
+  }
+
+  private static String getString(ByteBuffer record) {
+    byte[] bytes = new byte[Short.toUnsignedInt(record.getShort())];
+    record.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static short minuteOf(LocalTime time) {
+    return (short) (time.getHour() * 60 + time.getMinute());
+  }
+
+  private static LocalTime timeOf(short minute) {
+    return LocalTime.of(minute / 60, minute % 60);
+  }
+}
@@ -0,0 +1,296 @@
+package edu.ntnu.stud;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms, rejection counters and size gauges of a {@link Registry}, which can be
+ * read over JMX once they are {@link #register() registered}.
+ *
+ * <p>A registry only records metrics after {@link Registry#setMetrics(RegistryMetrics)}, and
+ * costs a single null check per operation until then. Recording never locks: a latency is one
+ * atomic increment in a {@link LatencyHistogram}, and a rejection is counted in a
+ * {@link LongAdder}. The latency of an operation is measured inside the registry, so for a
+ * {@link ConcurrentRegistry} it does not include the time spent waiting for the lock.</p>
+ *
+ * <p>The sizes are read from the registry when they are asked for, without taking its lock,
+ * so they may be slightly behind a registry that is being changed.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public final class RegistryMetrics implements RegistryMetricsMXBean {
+  /** The name the metrics are registered under. */
+  public static final String OBJECT_NAME = "edu.ntnu.stud:type=RegistryMetrics";
+
+  private final LatencyHistogram[] latencies;
+  private final LongAdder[] rejections;
+  private final AtomicReferenceArray<IntSupplier> sizes;
+  private ObjectName registeredName;
+
+  /**
+   * The operations of a registry whose latency is recorded.
+   */
+  public enum Operation {
+    /** {@link Registry#addTrainDeparture}. */
+    ADD_TRAIN_DEPARTURE,
+    /** {@link Registry#addTrainDepartures}. */
+    ADD_TRAIN_DEPARTURES,
+    /** {@link Registry#assertAndSetDelay}. */
+    SET_DELAY,
+    /** {@link Registry#propagateDelay}. */
+    PROPAGATE_DELAY,
+    /** {@link Registry#addDelay}. */
+    ADD_DELAY,
+    /** {@link Registry#assertAndSetTrack}. */
+    SET_TRACK,
+    /** {@link Registry#moveToTrack}. */
+    MOVE_TO_TRACK,
+    /** {@link Registry#assignTracks}. */
+    ASSIGN_TRACKS,
+    /** {@link Registry#setTimeOfDay}. */
+    SET_TIME_OF_DAY,
+    /** {@link Registry#startServiceDay}. */
+    START_SERVICE_DAY,
+    /** {@link Registry#getDepartures}. */
+    GET_DEPARTURES,
+    /** {@link Registry#getTrainDepartureByTrainNumber}. */
+    FIND_TRAIN_DEPARTURE,
+    /** {@link Registry#getDeparturesByDestination}. */
+    GET_DEPARTURES_BY_DESTINATION,
+    /** {@link Registry#getDeparturesByDestinationIgnoreCase}. */
+    SEARCH_DESTINATION,
+    /** {@link Registry#getDeparturesByDestinationPrefix}. */
+    SEARCH_DESTINATION_PREFIX,
+    /** {@link Registry#getNextDepartures}. */
+    GET_NEXT_DEPARTURES,
+    /** {@link Registry#getNextDeparturesOnTrack}. */
+    GET_NEXT_DEPARTURES_ON_TRACK,
+    /** {@link Registry#getNextDeparturesOnLine}. */
+    GET_NEXT_DEPARTURES_ON_LINE,
+    /** {@link Registry#query}. */
+    QUERY
+  }
+
+  /**
+   * The reasons a registry rejects a change, one for each of its assertions.
+   */
+  public enum Rejection {
+    /** The final departure time is before the time of day. */
+    DEPARTURE_BEFORE_TIME_OF_DAY,
+    /** Another departure has the same line at the same minute. */
+    LINE_OCCUPIED,
+    /** Another departure has the same track at the same minute. */
+    TRACK_OCCUPIED,
+    /** A group of departures would collide with each other or with other departures. */
+    SLOTS_OCCUPIED,
+    /** No departure has the train number. */
+    TRAIN_NUMBER_MISSING,
+    /** A departure already has the train number. */
+    TRAIN_NUMBER_EXISTS,
+    /** The new time of day is before the current time of day. */
+    TIME_OF_DAY_BEFORE_CURRENT,
+    /** The departure belongs to a service day that can not be planned yet. */
+    SERVICE_DAY_NOT_PLANNABLE,
+    /** The registry has no departures. */
+    NO_DEPARTURES,
+    /** An argument is not valid, such as a blank destination or a negative track. */
+    INVALID_ARGUMENT
+  }
+
+  /**
+   * The sizes of a registry.
+   */
+  public enum Size {
+    /** The number of train departures. */
+    DEPARTURES,
+    /** The number of distinct destinations. */
+    DESTINATIONS,
+    /** The number of distinct lines. */
+    LINES,
+    /** The number of distinct assigned tracks. */
+    TRACKS
+  }
+
+  /**
+   * Constructs metrics with empty histograms and counters, and sizes that read as 0 until
+   * the metrics are attached to a registry.
+   */
+  public RegistryMetrics() {
+    this.latencies = new LatencyHistogram[Operation.values().length];
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = new LatencyHistogram();
+    }
+    this.rejections = new LongAdder[Rejection.values().length];
+    for (int i = 0; i < rejections.length; i++) {
+      rejections[i] = new LongAdder();
+    }
+    this.sizes = new AtomicReferenceArray<>(Size.values().length);
+  }
+
+  /**
+   * Records the latency of an operation that started at a time.
+   *
+   * @param operation  the operation
+   * @param startNanos the value of {@link System#nanoTime()} when the operation started
+   */
+  void record(Operation operation, long startNanos) {
+    latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Counts a rejected change.
+   *
+   * @param reason the reason the change was rejected
+   */
+  void reject(Rejection reason) {
+    rejections[reason.ordinal()].increment();
+  }
+
+  /**
+   * Sets where a size is read from.
+   *
+   * @param size   the size
+   * @param reader reads the size from the registry
+   */
+  void watch(Size size, IntSupplier reader) {
+    sizes.set(size.ordinal(), reader);
+  }
+
+  /**
+   * Returns the number of recorded calls of an operation.
+   *
+   * @param operation the operation
+   * @return the number of calls
+   */
+  public long getCount(Operation operation) {
+    return latencies[operation.ordinal()].count();
+  }
+
+  /**
+   * Returns a percentile of the latency of an operation.
+   *
+   * @param operation the operation
+   * @param quantile  the share of the calls, between 0 and 1, such as 0.99
+   * @return the latency in nanoseconds that the share of the calls are at or below, or 0 if
+   *         the operation has not been called
+   */
+  public long getPercentileNanos(Operation operation, double quantile) {
+    return latencies[operation.ordinal()].percentile(quantile);
+  }
+
+  /**
+   * Returns the number of changes rejected for a reason.
+   *
+   * @param reason the reason
+   * @return the number of rejections
+   */
+  public long getRejections(Rejection reason) {
+    return rejections[reason.ordinal()].sum();
+  }
+
+  /**
+   * Returns a size of the registry.
+   *
+   * @param size the size
+   * @return the current size, or 0 if the metrics are not attached to a registry
+   */
+  public int getSize(Size size) {
+    IntSupplier reader = sizes.get(size.ordinal());
+    return reader == null ? 0 : reader.getAsInt();
+  }
+
+  @Override
+  public Map<String, Long> getOperationCounts() {
+    return byOperation(this::getCount);
+  }
+
+  @Override
+  public Map<String, Long> getP50Nanos() {
+    return byOperation(operation -> getPercentileNanos(operation, 0.5));
+  }
+
+  @Override
+  public Map<String, Long> getP99Nanos() {
+    return byOperation(operation -> getPercentileNanos(operation, 0.99));
+  }
+
+  @Override
+  public Map<String, Long> getP999Nanos() {
+    return byOperation(operation -> getPercentileNanos(operation, 0.999));
+  }
+
+  @Override
+  public Map<String, Long> getRejections() {
+    Map<String, Long> values = new LinkedHashMap<>();
+    for (Rejection reason : Rejection.values()) {
+      values.put(reason.name(), getRejections(reason));
+    }
+    return values;
+  }
+
+  @Override
+  public Map<String, Integer> getSizes() {
+    Map<String, Integer> values = new LinkedHashMap<>();
+    for (Size size : Size.values()) {
+      values.put(size.name(), getSize(size));
+    }
+    return values;
+  }
+
+  @Override
+  public void reset() {
+    for (LatencyHistogram latency : latencies) {
+      latency.reset();
+    }
+    for (LongAdder rejection : rejections) {
+      rejection.reset();
+    }
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server under {@value #OBJECT_NAME}.
+   *
+   * @throws JMException if the metrics can not be registered, for example because other
+   *                     metrics are already registered under the name
+   */
+  public synchronized void register() throws JMException {
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    registeredName = name;
+  }
+
+  /**
+   * Removes the metrics from the platform MBean server, if they are registered.
+   *
+   * @throws JMException if the metrics can not be removed
+   */
+  public synchronized void unregister() throws JMException {
+    if (registeredName != null) {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+      registeredName = null;
+    }
+  }
+
+  /**
+   * Returns a value for every operation.
+   *
+   * @param value computes the value of an operation
+   * @return the values by operation name
+   */
+  private Map<String, Long> byOperation(ToLongFunction<Operation> value) {
+    Map<String, Long> values = new LinkedHashMap<>();
+    for (Operation operation : Operation.values()) {
+      values.put(operation.name(), value.applyAsLong(operation));
+    }
+    return values;
+  }
+}
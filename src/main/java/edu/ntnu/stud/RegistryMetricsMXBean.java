@@ -0,0 +1,60 @@
+package edu.ntnu.stud;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link RegistryMetrics}, which JMX clients such as JConsole
+ * read. Every map is keyed by the name of an operation, a rejection reason or a size.
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public interface RegistryMetricsMXBean {
+  /**
+   * Returns the number of calls of every operation.
+   *
+   * @return the number of calls by operation
+   */
+  Map<String, Long> getOperationCounts();
+
+  /**
+   * Returns the median latency of every operation.
+   *
+   * @return the 50th percentile in nanoseconds by operation
+   */
+  Map<String, Long> getP50Nanos();
+
+  /**
+   * Returns the 99th percentile latency of every operation.
+   *
+   * @return the 99th percentile in nanoseconds by operation
+   */
+  Map<String, Long> getP99Nanos();
+
+  /**
+   * Returns the 99.9th percentile latency of every operation.
+   *
+   * @return the 99.9th percentile in nanoseconds by operation
+   */
+  Map<String, Long> getP999Nanos();
+
+  /**
+   * Returns the number of times the registry rejected a change for every reason.
+   *
+   * @return the number of rejections by reason
+   */
+  Map<String, Long> getRejections();
+
+  /**
+   * Returns the current sizes of the registry.
+   *
+   * @return the sizes by name
+   */
+  Map<String, Integer> getSizes();
+
+  /**
+   * Forgets every recorded latency and rejection.
+   */
+  void reset();
+}
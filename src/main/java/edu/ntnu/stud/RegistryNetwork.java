@@ -0,0 +1,419 @@
+package edu.ntnu.stud;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * A network of stations, where every station has its own {@link Registry} and all stations
+ * share one service day and time of day.
+ *
+ * <p>A train number is unique in the whole network. The network remembers which station
+ * every train departure was added to, so lookups and changes by train number go straight to
+ * that station. The network schedules the departures on an {@link ExpiryWheel} of its own,
+ * in step with the wheels of the stations, so it forgets a departure when the time of day
+ * passes it, at the same time as its station removes it.</p>
+ *
+ * <p>Work that touches every station is split over a {@link ForkJoinPool}: the time of day
+ * is advanced on all stations in parallel, and network-wide queries ask every station in
+ * parallel and merge the results, which each station already returns ordered by final
+ * departure time.</p>
+ *
+ * <p>Departures are only added and changed through the network, so that the network knows
+ * where every train number is and the clocks of the stations stay the same. A station is
+ * handed over to the network when it is added, and is afterwards only read through its
+ * latest {@link RegistryVersion}. The network itself is not thread-safe, but it can be
+ * queried while it changes if every station is a {@link ConcurrentRegistry}.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public class RegistryNetwork {
+  private static final int STATIONS_PER_TASK = 4;
+
+  private final ForkJoinPool pool;
+  private final TreeMap<String, Registry> stationsByName;
+  private final HashMap<Integer, Route> routes;
+  private final ExpiryWheel expiryWheel;
+  private Registry[] stations;
+  private int serviceDay;
+  private LocalTime timeOfDay;
+
+  /**
+   * Where a train departure of the network is.
+   *
+   * @param station        the registry of the station the departure was added to
+   * @param trainDeparture the train departure
+   */
+  private record Route(Registry station, TrainDeparture trainDeparture) {
+  }
+
+  /**
+   * Constructs an empty network with the time of day 00:00, that splits its work over the
+   * common fork-join pool.
+   */
+  public RegistryNetwork() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs an empty network with the time of day 00:00.
+   *
+   * @param pool the pool to split work over every station on
+   */
+  public RegistryNetwork(ForkJoinPool pool) {
+    this.pool = pool;
+    this.stationsByName = new TreeMap<>();
+    this.routes = new HashMap<>();
+    this.expiryWheel = new ExpiryWheel(0);
+    this.stations = new Registry[0];
+    this.timeOfDay = LocalTime.of(0, 0);
+  }
+
+  /**
+   * Adds a station to the network. The departures the station already has become part of the
+   * network, and versions are enabled on the station so it can be read through
+   * {@link #getStation(String)}. The station must not be changed directly afterwards.
+   *
+   * @param name    the name of the station
+   * @param station the registry of the station, with the same service day and time of day as
+   *                the network
+   * @throws IllegalArgumentException if the name is blank or already used, if the station has
+   *                                  another service day or time of day than the network, or
+   *                                  if it has a train number that the network already has
+   */
+  public void addStation(String name, Registry station) throws IllegalArgumentException {
+    TrainDeparture.assertStringNotBlank(name);
+    if (stationsByName.containsKey(name)) {
+      throw new IllegalArgumentException("A station named " + name + " already exists");
+    }
+    if (station.getServiceDay() != serviceDay || !station.getTimeOfDay().equals(timeOfDay)) {
+      throw new IllegalArgumentException("The station " + name + " is at service day "
+              + station.getServiceDay() + " " + station.getTimeOfDay() + ", but the network is at "
+              + serviceDay + " " + timeOfDay);
+    }
+
+    List<TrainDeparture> trainDepartures = station.getDepartures();
+    for (TrainDeparture trainDeparture : trainDepartures) {
+      assertTrainNumberNotInNetwork(trainDeparture.getTrainNumber());
+    }
+    for (TrainDeparture trainDeparture : trainDepartures) {
+      routes.put(trainDeparture.getTrainNumber(), new Route(station, trainDeparture));
+      expiryWheel.schedule(trainDeparture);
+    }
+
+    station.enableVersions();
+    stationsByName.put(name, station);
+    stations = stationsByName.values().toArray(new Registry[0]);
+  }
+
+  /**
+   * Returns the latest version of a station, for example to query it. The version can not
+   * be changed, so departures are only added and changed through the network.
+   *
+   * @param name the name of the station
+   * @return the latest version of the departures of the station
+   * @throws IllegalArgumentException if there is no station with the name
+   */
+  public RegistryVersion getStation(String name) throws IllegalArgumentException {
+    return registryOf(name).getVersion();
+  }
+
+  /**
+   * Returns the number of train departures in the network.
+   *
+   * @return the number of train departures of every station
+   */
+  public int size() {
+    return routes.size();
+  }
+
+  /**
+   * Returns the names of the stations of the network.
+   *
+   * @return the station names in alphabetical order
+   */
+  public List<String> getStationNames() {
+    return new ArrayList<>(stationsByName.keySet());
+  }
+
+  /**
+   * Returns the time of day of the network.
+   *
+   * @return the time of day every station has
+   */
+  public LocalTime getTimeOfDay() {
+    return timeOfDay;
+  }
+
+  /**
+   * Returns the service day of the network.
+   *
+   * @return the service day every station has
+   */
+  public int getServiceDay() {
+    return serviceDay;
+  }
+
+  /**
+   * Sets the time of day of every station in parallel, which removes the departures that
+   * have left from every station.
+   *
+   * @param newTime the new time of day
+   * @throws IllegalArgumentException if the new time is before the current time of day
+   */
+  public void setTimeOfDay(LocalTime newTime) throws IllegalArgumentException {
+    if (newTime.isBefore(timeOfDay)) {
+      throw new IllegalArgumentException("New time " + newTime
+              + " must be after current time of day " + timeOfDay);
+    }
+    Registry[] all = stations;
+    fanOut(all.length, index -> all[index].setTimeOfDay(newTime));
+    expiryWheel.advance(TrainDeparture.timelineMinute(serviceDay, newTime, LocalTime.MIN),
+            this::forget);
+    this.timeOfDay = newTime;
+  }
+
+  /**
+   * Starts a later service day on every station in parallel, which removes the departures of
+   * the earlier days that have left from every station.
+   *
+   * @param newServiceDay the service day to start
+   * @throws IllegalArgumentException if the service day is not after the current service day
+   */
+  public void startServiceDay(int newServiceDay) throws IllegalArgumentException {
+    if (newServiceDay <= serviceDay) {
+      throw new IllegalArgumentException("New service day " + newServiceDay
+              + " must be after current service day " + serviceDay);
+    }
+    Registry[] all = stations;
+    fanOut(all.length, index -> all[index].startServiceDay(newServiceDay));
+    expiryWheel.advance(newServiceDay * TrainDeparture.MINUTES_PER_DAY, this::forget);
+    this.serviceDay = newServiceDay;
+    this.timeOfDay = LocalTime.MIN;
+  }
+
+  /**
+   * Adds a train departure to a station, with the same validation as
+   * {@link Registry#addTrainDeparture}. The train number must also be unique in the network.
+   *
+   * @param station       the name of the station
+   * @param departureTime the departure time of the train
+   * @param delay         the delay of the train
+   * @param destination   the destination of the train
+   * @param line          the line of the train
+   * @param trainNumber   the train number, unique in the network
+   * @param track         the track of the train, -1 means that the train is unassigned
+   * @throws IllegalArgumentException if there is no station with the name, if the train
+   *                                  number is already used in the network, or if the
+   *                                  station rejects the departure
+   */
+  public void addTrainDeparture(String station, LocalTime departureTime, LocalTime delay,
+                                String destination, String line, int trainNumber, int track)
+          throws IllegalArgumentException {
+    Registry registry = registryOf(station);
+    assertTrainNumberNotInNetwork(trainNumber);
+
+    registry.addTrainDeparture(departureTime, delay, destination, line, trainNumber, track);
+    TrainDeparture trainDeparture = registry.getTrainDepartureByTrainNumber(trainNumber);
+    routes.put(trainNumber, new Route(registry, trainDeparture));
+    expiryWheel.schedule(trainDeparture);
+  }
+
+  /**
+   * Gets a train departure by train number from the latest version of the station it was
+   * added to. The departure is a copy, so it does not change when the network changes it.
+   *
+   * @param trainNumber the train number of a train you want to find
+   * @return a copy of the train departure with the train number
+   * @throws IllegalArgumentException if no station has a departure with the train number
+   */
+  public TrainDeparture getTrainDepartureByTrainNumber(int trainNumber)
+          throws IllegalArgumentException {
+    return routeOf(trainNumber).station().getVersion().getTrainDepartureByTrainNumber(trainNumber);
+  }
+
+  /**
+   * Sets the track of a train departure on the station it was added to, with the same
+   * validation as {@link Registry#assertAndSetTrack}.
+   *
+   * @param trainNumber the train number of the train departure to be updated
+   * @param track       the new track, -1 means that the train is unassigned
+   * @throws IllegalArgumentException if no station has a departure with the train number,
+   *                                  or if the station rejects the track
+   */
+  public void assertAndSetTrack(int trainNumber, int track) throws IllegalArgumentException {
+    routeOf(trainNumber).station().assertAndSetTrack(trainNumber, track);
+  }
+
+  /**
+   * Sets the delay of a train departure on the station it was added to, with the same
+   * validation as {@link Registry#assertAndSetDelay}, and schedules the departure again
+   * for its new final departure time.
+   *
+   * @param trainNumber the train number of the train departure to be updated
+   * @param delay       the new delay
+   * @throws IllegalArgumentException if no station has a departure with the train number,
+   *                                  or if the station rejects the delay
+   */
+  public void assertAndSetDelay(int trainNumber, LocalTime delay)
+          throws IllegalArgumentException {
+    Route route = routeOf(trainNumber);
+    route.station().assertAndSetDelay(trainNumber, delay);
+    expiryWheel.schedule(route.trainDeparture());
+  }
+
+  /**
+   * Returns every train departure of the network.
+   *
+   * @return a list of the train departures of every station by time ascending
+   */
+  public List<TrainDeparture> getDepartures() {
+    return query(Registry::getDepartures);
+  }
+
+  /**
+   * Returns the train departures to a destination from every station of the network.
+   *
+   * @param destination the destination of the train departures
+   * @return a list of the train departures by time ascending, empty if none match
+   */
+  public List<TrainDeparture> getDeparturesByDestination(String destination) {
+    return query(station -> station.getDeparturesByDestination(destination));
+  }
+
+  /**
+   * Returns the train departures to a destination regardless of case from every station of
+   * the network.
+   *
+   * @param destination the destination of the train departures
+   * @return a list of the train departures by time ascending, empty if none match
+   */
+  public List<TrainDeparture> getDeparturesByDestinationIgnoreCase(String destination) {
+    return query(station -> station.getDeparturesByDestinationIgnoreCase(destination));
+  }
+
+  /**
+   * Runs a query on every station in parallel, and merges the results.
+   *
+   * @param query a query that returns train departures ordered by final departure time
+   * @return the results of every station by time ascending
+   */
+  private List<TrainDeparture> query(Function<Registry, List<TrainDeparture>> query) {
+    Registry[] all = stations;
+    List<List<TrainDeparture>> results = new ArrayList<>(Collections.nCopies(all.length, null));
+    fanOut(all.length, index -> results.set(index, query.apply(all[index])));
+    return Registry.mergeByFinalDepartureTime(results);
+  }
+
+  /**
+   * Returns the registry of a station.
+   *
+   * @param name the name of the station
+   * @return the registry of the station
+   * @throws IllegalArgumentException if there is no station with the name
+   */
+  private Registry registryOf(String name) throws IllegalArgumentException {
+    Registry station = stationsByName.get(name);
+    if (station == null) {
+      throw new IllegalArgumentException("There is no station named " + name);
+    }
+    return station;
+  }
+
+  /**
+   * Finds where a train departure is.
+   *
+   * @param trainNumber the train number of the train departure
+   * @return the route of the train departure
+   * @throws IllegalArgumentException if no station has a departure with the train number
+   */
+  private Route routeOf(int trainNumber) throws IllegalArgumentException {
+    Route route = routes.get(trainNumber);
+    if (route == null) {
+      throw new IllegalArgumentException("A train departure with this train number does not exist"
+              + " please type in another train number");
+    }
+    return route;
+  }
+
+  /**
+   * Asserts that no station of the network has a departure with a train number.
+   *
+   * @param trainNumber the train number to check
+   * @throws IllegalArgumentException if a station has a departure with the train number
+   */
+  private void assertTrainNumberNotInNetwork(int trainNumber) throws IllegalArgumentException {
+    if (routes.containsKey(trainNumber)) {
+      throw new IllegalArgumentException("A train departure with this train number already exists,"
+              + " please type in a another train number");
+    }
+  }
+
+  /**
+   * Forgets the route of a train departure that the expiry wheel found to have left, unless
+   * the train number has been routed to another departure since.
+   *
+   * @param expired the train departure that has left
+   */
+  private void forget(TrainDeparture expired) {
+    Route route = routes.get(expired.getTrainNumber());
+    if (route != null && route.trainDeparture() == expired) {
+      routes.remove(expired.getTrainNumber());
+    }
+  }
+
+  /**
+   * Runs an action for every station index on the pool, and waits for all of them.
+   *
+   * @param count  the number of stations
+   * @param action the action to run with every station index
+   */
+  private void fanOut(int count, IntConsumer action) {
+    if (count <= STATIONS_PER_TASK) {
+      for (int index = 0; index < count; index++) {
+        action.accept(index);
+      }
+      return;
+    }
+    pool.invoke(new FanOut(action, 0, count));
+  }
+
+  /**
+   * Runs an action for a range of station indexes, splitting the range in half until it is
+   * small enough to run on one thread.
+   */
+  private static final class FanOut extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient IntConsumer action;
+    private final int from;
+    private final int to;
+
+    private FanOut(IntConsumer action, int from, int to) {
+      this.action = action;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= STATIONS_PER_TASK) {
+        for (int index = from; index < to; index++) {
+          action.accept(index);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new FanOut(action, from, middle), new FanOut(action, middle, to));
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package edu.ntnu.stud;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for one mutation or query of a {@link Registry}, so that a
+ * slow departure board can be matched with garbage collection and allocation in the same
+ * recording.
+ *
+ * <p>The event is disabled unless a recording enables it, for example with the
+ * {@code --recording=<file>} option of {@link App}. The registry asks {@link #isRecorded()}
+ * before it creates the event, so while no recording enables it an operation allocates
+ * nothing for it, and Flight Recorder is not even started.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+@Name("edu.ntnu.stud.RegistryOperation")
+@Label("Registry Operation")
+@Category({"Train Dispatch", "Registry"})
+@Description("A mutation or query of a registry of train departures")
+@Enabled(false)
+@StackTrace(false)
+final class RegistryOperationEvent extends Event {
+  @Label("Operation")
+  String operation;
+
+  @Label("Train Number")
+  @Description("The train number the operation is about, or 0 if it is not about one train")
+  int trainNumber;
+
+  @Label("Registry Size")
+  @Description("The number of train departures after the operation")
+  int registrySize;
+
+  @Label("Outcome")
+  @Description("OK, or why the operation was rejected or failed")
+  String outcome;
+
+  /**
+   * Returns whether a running recording has enabled the event. The type of the event is only
+   * looked up once Flight Recorder has been started, since looking it up starts it.
+   *
+   * @return true if the event should be created for an operation
+   */
+  static boolean isRecorded() {
+    return FlightRecorder.isInitialized() && Type.EVENT_TYPE.isEnabled();
+  }
+
+  /**
+   * Returns the outcome of an operation.
+   *
+   * @param failure the exception the operation threw, or null if it succeeded
+   * @return OK, or the reason the operation was rejected or failed
+   */
+  static String outcome(RuntimeException failure) {
+    if (failure == null) {
+      return "OK";
+    }
+    if (failure instanceof IllegalArgumentException) {
+      return "Rejected: " + failure.getMessage();
+    }
+    return "Failed: " + failure;
+  }
+
+  /**
+   * Holds the type of the event, which is looked up when it is first used.
+   */
+  private static final class Type {
+    private static final EventType EVENT_TYPE =
+            EventType.getEventType(RegistryOperationEvent.class);
+  }
+}
@@ -0,0 +1,203 @@
+package edu.ntnu.stud;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes and reads a compact binary snapshot of a {@link Registry}.
+ *
+ * <p>The snapshot holds the service day and time of day, a table of every distinct line and
+ * destination, and every departure with its line and destination as an index into the
+ * table:</p>
+ * <pre>
+ * magic "TDSS", version         int, int
+ * service day, time of day      int, short minute of the day
+ * string count, strings         int, then per string: unsigned short length, UTF-8 bytes
+ * departure count, departures   int, then per departure: int train number,
+ *                               int service day, short departure minute,
+ *                               short delay minutes, int track,
+ *                               int line index, int destination index
+ * </pre>
+ *
+ * <p>A line or destination can be at most {@value #MAX_STRING_BYTES} bytes long in UTF-8.</p>
+ *
+ * <p>Snapshots of version 1, written before service days, have no service days and are
+ * read as service day 0.</p>
+ *
+ * <p>A snapshot is written to a temporary file that is forced to disk and then atomically
+ * moved over the snapshot file, so a crash never leaves a partly written snapshot. It is read
+ * through a memory-mapped file, and the departures are put straight into the registry without
+ * validating them again, since they were valid when the snapshot was written. Every line and
+ * destination string is only created once, and shared by all departures that use it.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public final class RegistrySnapshot {
+  static final int MAX_STRING_BYTES = 0xFFFF;
+
+  private static final int MAGIC = 0x54445353;
+  private static final int VERSION = 2;
+  private static final int VERSION_WITHOUT_SERVICE_DAYS = 1;
+  private static final int DEPARTURE_SIZE = 5 * Integer.BYTES + 2 * Short.BYTES;
+
+  private RegistrySnapshot() {
+  }
+
+  /**
+   * Reads a snapshot into a new registry.
+   *
+   * @param snapshot the path of the snapshot file
+   * @return a registry with the departures and time of day of the snapshot
+   * @throws IOException if the file can not be read or is not a valid snapshot
+   */
+  public static Registry read(Path snapshot) throws IOException {
+    Registry registry = new Registry();
+    read(snapshot, registry);
+    return registry;
+  }
+
+  /**
+   * Reads a snapshot into an empty registry, for example a {@link ConcurrentRegistry}.
+   *
+   * @param snapshot the path of the snapshot file
+   * @param registry the empty registry to restore the snapshot into
+   * @throws IOException              if the file can not be read or is not a valid snapshot
+   * @throws IllegalArgumentException if the registry is not empty
+   */
+  public static void read(Path snapshot, Registry registry) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC) {
+      throw new IOException(snapshot + " is not a registry snapshot");
+    }
+    int version = buffer.getInt();
+    if (version != VERSION && version != VERSION_WITHOUT_SERVICE_DAYS) {
+      throw new IOException(snapshot + " is a registry snapshot of unknown version " + version);
+    }
+    boolean hasServiceDays = version == VERSION;
+
+    int serviceDay;
+    LocalTime timeOfDay;
+    List<TrainDeparture> trainDepartures;
+    try {
+      serviceDay = hasServiceDays ? buffer.getInt() : 0;
+      timeOfDay = timeOf(buffer.getShort());
+
+      String[] strings = new String[buffer.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+
+      int count = buffer.getInt();
+      trainDepartures = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        int trainNumber = buffer.getInt();
+        int departureServiceDay = hasServiceDays ? buffer.getInt() : 0;
+        LocalTime departureTime = timeOf(buffer.getShort());
+        LocalTime delay = timeOf(buffer.getShort());
+        int track = buffer.getInt();
+        String line = strings[buffer.getInt()];
+        String destination = strings[buffer.getInt()];
+        trainDepartures.add(new TrainDeparture(departureTime, delay, destination, line,
+                trainNumber, track, departureServiceDay));
+      }
+    } catch (RuntimeException e) {
+      throw new IOException(snapshot + " is not a valid registry snapshot", e);
+    }
+
+    registry.restore(trainDepartures, serviceDay, timeOfDay);
+  }
+
+  /**
+   * Writes a snapshot of the given state. Called by {@link Registry#writeSnapshot(Path)},
+   * which makes sure the state does not change while it is written.
+   *
+   * @param trainDepartures the train departures of the registry
+   * @param serviceDay      the service day of the registry
+   * @param timeOfDay       the time of day of the registry
+   * @param snapshot        the path of the snapshot file
+   * @throws IOException if the snapshot can not be written, or a line or destination is
+   *                     longer than {@value #MAX_STRING_BYTES} bytes
+   */
+  static void write(Collection<TrainDeparture> trainDepartures, int serviceDay,
+                    LocalTime timeOfDay, Path snapshot) throws IOException {
+    StringDictionary strings = new StringDictionary();
+    int[] lineIds = new int[trainDepartures.size()];
+    int[] destinationIds = new int[trainDepartures.size()];
+    int next = 0;
+    for (TrainDeparture trainDeparture : trainDepartures) {
+      lineIds[next] = strings.idOf(trainDeparture.getLine());
+      destinationIds[next] = strings.idOf(trainDeparture.getDestination());
+      next++;
+    }
+
+    List<byte[]> encodedStrings = new ArrayList<>(strings.size());
+    int size = 5 * Integer.BYTES + Short.BYTES + trainDepartures.size() * DEPARTURE_SIZE;
+    for (int id = 0; id < strings.size(); id++) {
+      byte[] bytes = strings.stringOf(id).getBytes(StandardCharsets.UTF_8);
+      if (bytes.length > MAX_STRING_BYTES) {
+        throw new IOException("A line or destination of " + bytes.length
+                + " bytes is longer than the " + MAX_STRING_BYTES + " bytes a snapshot can hold");
+      }
+      encodedStrings.add(bytes);
+      size += Short.BYTES + bytes.length;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(serviceDay).putShort(minuteOf(timeOfDay));
+    buffer.putInt(encodedStrings.size());
+    for (byte[] bytes : encodedStrings) {
+      buffer.putShort((short) bytes.length).put(bytes);
+    }
+    buffer.putInt(trainDepartures.size());
+    next = 0;
+    for (TrainDeparture trainDeparture : trainDepartures) {
+      buffer.putInt(trainDeparture.getTrainNumber())
+              .putInt(trainDeparture.getServiceDay())
+              .putShort(minuteOf(trainDeparture.getDepartureTime()))
+              .putShort(minuteOf(trainDeparture.getDelay()))
+              .putInt(trainDeparture.getTrack())
+              .putInt(lineIds[next])
+              .putInt(destinationIds[next]);
+      next++;
+    }
+    buffer.flip();
+
+    Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static short minuteOf(LocalTime time) {
+    return (short) (time.getHour() * 60 + time.getMinute());
+  }
+
+  private static LocalTime timeOf(short minute) {
+    return LocalTime.of(minute / 60, minute % 60);
+  }
+}
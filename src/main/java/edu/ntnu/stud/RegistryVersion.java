@@ -0,0 +1,136 @@
+package edu.ntnu.stud;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An immutable version of the departures of a {@link Registry}, published by the registry
+ * after every change once {@link Registry#enableVersions()} has been called.
+ *
+ * <p>A version never changes after it is published. It holds copies of the train departures
+ * that the registry does not change when it sets a delay or a track, so a reader such as a
+ * departure board can iterate a version without locks and without copying it, while the
+ * dispatcher keeps changing the registry. The departures are kept in two
+ * {@link PersistentTree}s, by final departure time and by train number, that share all
+ * unchanged nodes with the previous version.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public final class RegistryVersion implements Iterable<TrainDeparture> {
+  private final long number;
+  private final int serviceDay;
+  private final LocalTime timeOfDay;
+  private final PersistentTree<TrainDeparture> departuresByTime;
+  private final PersistentTree<TrainDeparture> departuresByTrainNumber;
+
+  /**
+   * Constructs a version.
+   *
+   * @param number                  the number of the version, counting up from 0
+   * @param serviceDay              the service day of the registry
+   * @param timeOfDay               the time of day of the registry
+   * @param departuresByTime        the departures keyed by {@link #timeKey(TrainDeparture)}
+   * @param departuresByTrainNumber the departures keyed by train number
+   */
+  RegistryVersion(long number, int serviceDay, LocalTime timeOfDay,
+                  PersistentTree<TrainDeparture> departuresByTime,
+                  PersistentTree<TrainDeparture> departuresByTrainNumber) {
+    this.number = number;
+    this.serviceDay = serviceDay;
+    this.timeOfDay = timeOfDay;
+    this.departuresByTime = departuresByTime;
+    this.departuresByTrainNumber = departuresByTrainNumber;
+  }
+
+  /**
+   * Returns the key that orders a train departure by final departure time and then by
+   * train number, like the ordered indexes of the registry.
+   *
+   * @param trainDeparture the train departure
+   * @return the final departure minute in the high bits and the train number in the low bits
+   */
+  static long timeKey(TrainDeparture trainDeparture) {
+    return (long) trainDeparture.getFinalDepartureMinute() << Integer.SIZE
+            | trainDeparture.getTrainNumber();
+  }
+
+  /**
+   * Returns the number of the version, which is one higher for every version the registry
+   * publishes.
+   *
+   * @return the number of the version
+   */
+  public long getNumber() {
+    return number;
+  }
+
+  /**
+   * Returns the service day of the registry when the version was published.
+   *
+   * @return the service day
+   */
+  public int getServiceDay() {
+    return serviceDay;
+  }
+
+  /**
+   * Returns the time of day of the registry when the version was published.
+   *
+   * @return the time of day
+   */
+  public LocalTime getTimeOfDay() {
+    return timeOfDay;
+  }
+
+  /**
+   * Returns the number of train departures in the version.
+   *
+   * @return the number of train departures
+   */
+  public int size() {
+    return departuresByTime.size();
+  }
+
+  /**
+   * Returns the train departure with a train number.
+   *
+   * @param trainNumber the train number
+   * @return the train departure as it was when the version was published
+   * @throws IllegalArgumentException if the version has no train departure with the number
+   */
+  public TrainDeparture getTrainDepartureByTrainNumber(int trainNumber)
+          throws IllegalArgumentException {
+    TrainDeparture trainDeparture = departuresByTrainNumber.get(trainNumber);
+    if (trainDeparture == null) {
+      throw new IllegalArgumentException("A train departure with this train number does not exist"
+              + " please type in another train number");
+    }
+    return trainDeparture;
+  }
+
+  /**
+   * Returns a list of the train departures by final departure time ascending.
+   *
+   * @return a new list of the train departures
+   */
+  public List<TrainDeparture> getDepartures() {
+    List<TrainDeparture> trainDepartures = new ArrayList<>(size());
+    departuresByTime.forEach(trainDepartures::add);
+    return trainDepartures;
+  }
+
+  /**
+   * Returns an iterator over the train departures by final departure time ascending,
+   * which walks the version without copying it.
+   *
+   * @return an iterator over the train departures
+   */
+  @Override
+  public Iterator<TrainDeparture> iterator() {
+    return departuresByTime.iterator();
+  }
+}
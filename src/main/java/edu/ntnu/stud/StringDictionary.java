@@ -0,0 +1,71 @@
+package edu.ntnu.stud;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Assigns a dense int id to every distinct string it is given, starting from 0.
+ * Used to store lines and destinations as ints instead of repeating the strings.
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+final class StringDictionary {
+  private final HashMap<String, Integer> ids;
+  private final List<String> strings;
+
+  /**
+   * Constructs an empty dictionary.
+   */
+  StringDictionary() {
+    this.ids = new HashMap<>();
+    this.strings = new ArrayList<>();
+  }
+
+  /**
+   * Returns the id of a string, assigning the next free id if the string is new.
+   *
+   * @param string the string to look up
+   * @return the id of the string
+   */
+  int idOf(String string) {
+    Integer id = ids.get(string);
+    if (id == null) {
+      id = strings.size();
+      ids.put(string, id);
+      strings.add(string);
+    }
+    return id;
+  }
+
+  /**
+   * Returns the id of a string without assigning a new one.
+   *
+   * @param string the string to look up
+   * @return the id of the string, or -1 if the string has no id
+   */
+  int findId(String string) {
+    return ids.getOrDefault(string, -1);
+  }
+
+  /**
+   * Returns the string with the given id.
+   *
+   * @param id an id given out by this dictionary
+   * @return the string with the id
+   */
+  String stringOf(int id) {
+    return strings.get(id);
+  }
+
+  /**
+   * Returns the number of strings in the dictionary.
+   *
+   * @return the number of strings, which is also the next id to be given out
+   */
+  int size() {
+    return strings.size();
+  }
+}
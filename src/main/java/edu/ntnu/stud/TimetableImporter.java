@@ -0,0 +1,272 @@
+package edu.ntnu.stud;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imports a timetable file into a {@link Registry}.
+ *
+ * <p>The timetable has one train departure per line, with the fields separated by commas
+ * in the same order as the parameters of {@link Registry#addTrainDeparture}:</p>
+ * <pre>
+ * departureTime,delay,destination,line,trainNumber,track
+ * 15:30,00:15,Bergen,L4,1,-1
+ * </pre>
+ * <p>Times are in a hh:mm format. Blank lines, lines starting with {@code #} and a header line
+ * starting with {@code departureTime} are skipped. Fields are not quoted, so a destination can
+ * not contain a comma.</p>
+ *
+ * <p>The file is read line by line and added to the registry in batches through
+ * {@link Registry#addTrainDepartures}, so memory use does not grow with the size of the file.
+ * A line that can not be parsed or that the registry rejects does not stop the import. It is
+ * reported as a {@link Rejection} with its line number and reason instead.</p>
+ *
+ * <p>The departures are imported on the current service day of the registry, or on a given
+ * service day, so that the timetable of the next day can be loaded before the day starts.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+public class TimetableImporter {
+  private static final int BATCH_SIZE = 4096;
+  private static final int FIELD_COUNT = 6;
+  private static final LocalTime[] TIMES = new LocalTime[24 * 60];
+
+  static {
+    for (int minute = 0; minute < TIMES.length; minute++) {
+      TIMES[minute] = LocalTime.of(minute / 60, minute % 60);
+    }
+  }
+
+  private final Registry registry;
+  private final int serviceDay;
+
+  /**
+   * A line of the timetable that was not added to the registry.
+   *
+   * @param lineNumber the line number in the timetable, starting from 1
+   * @param reason     the reason the line was rejected
+   */
+  public record Rejection(int lineNumber, String reason) {
+  }
+
+  /**
+   * The outcome of an import.
+   *
+   * @param added      the number of train departures added to the registry
+   * @param rejections the rejected lines, in the order they appear in the timetable
+   */
+  public record Result(int added, List<Rejection> rejections) {
+  }
+
+  /**
+   * Constructs an importer that adds train departures to the given registry on its current
+   * service day.
+   *
+   * @param registry the registry to import into
+   */
+  public TimetableImporter(Registry registry) {
+    this(registry, registry.getServiceDay());
+  }
+
+  /**
+   * Constructs an importer that adds train departures to the given registry on a given
+   * service day.
+   *
+   * @param registry   the registry to import into
+   * @param serviceDay the service day of the departures in the timetable
+   */
+  public TimetableImporter(Registry registry, int serviceDay) {
+    this.registry = registry;
+    this.serviceDay = serviceDay;
+  }
+
+  /**
+   * Imports a UTF-8 encoded timetable file.
+   *
+   * @param timetable the path of the timetable file
+   * @return the number of added departures and the rejected lines
+   * @throws IOException if the file can not be read
+   */
+  public Result importTimetable(Path timetable) throws IOException {
+    try (Reader reader = Files.newBufferedReader(timetable, StandardCharsets.UTF_8)) {
+      return importTimetable(reader);
+    }
+  }
+
+  /**
+   * Imports a timetable from a reader. The reader is not closed.
+   *
+   * @param timetable the reader to read the timetable from
+   * @return the number of added departures and the rejected lines
+   * @throws IOException if the reader can not be read
+   */
+  public Result importTimetable(Reader timetable) throws IOException {
+    BufferedReader reader = timetable instanceof BufferedReader bufferedReader
+            ? bufferedReader : new BufferedReader(timetable);
+    List<Rejection> rejections = new ArrayList<>();
+    List<TrainDeparture> batch = new ArrayList<>(BATCH_SIZE);
+    int[] batchLineNumbers = new int[BATCH_SIZE];
+    int added = 0;
+    int lineNumber = 0;
+
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (isSkipped(line)) {
+        continue;
+      }
+
+      try {
+        batchLineNumbers[batch.size()] = lineNumber;
+        batch.add(parseTrainDeparture(line, serviceDay));
+      } catch (IllegalArgumentException e) {
+        rejections.add(new Rejection(lineNumber, e.getMessage()));
+        continue;
+      }
+
+      if (batch.size() == BATCH_SIZE) {
+        added += addBatch(batch, batchLineNumbers, rejections);
+      }
+    }
+    added += addBatch(batch, batchLineNumbers, rejections);
+
+    rejections.sort((first, second) -> Integer.compare(first.lineNumber(), second.lineNumber()));
+    return new Result(added, rejections);
+  }
+
+  /**
+   * Adds a batch to the registry, records its rejections and empties it.
+   *
+   * @param batch            the parsed train departures
+   * @param batchLineNumbers the line number of every departure in the batch
+   * @param rejections       the list to add rejections to
+   * @return the number of departures added
+   */
+  private int addBatch(List<TrainDeparture> batch, int[] batchLineNumbers,
+                       List<Rejection> rejections) {
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    int added = registry.addTrainDepartures(batch, (index, reason) ->
+            rejections.add(new Rejection(batchLineNumbers[index], reason)));
+    batch.clear();
+    return added;
+  }
+
+  /**
+   * Returns true if a line holds no train departure.
+   *
+   * @param line a line of the timetable
+   * @return true if the line is blank, a comment or the header
+   */
+  private static boolean isSkipped(String line) {
+    String stripped = line.strip();
+    return stripped.isEmpty() || stripped.startsWith("#") || stripped.startsWith("departureTime");
+  }
+
+  /**
+   * Parses a line of the timetable into a train departure.
+   *
+   * @param line a line of the timetable
+   * @return the train departure on the line
+   * @throws IllegalArgumentException if the line does not have six valid fields
+   */
+  static TrainDeparture parseTrainDeparture(String line) throws IllegalArgumentException {
+    return parseTrainDeparture(line, 0);
+  }
+
+  /**
+   * Parses a line of the timetable into a train departure on a service day.
+   *
+   * @param line       a line of the timetable
+   * @param serviceDay the service day of the departure
+   * @return the train departure on the line
+   * @throws IllegalArgumentException if the line does not have six valid fields
+   */
+  static TrainDeparture parseTrainDeparture(String line, int serviceDay)
+          throws IllegalArgumentException {
+    String[] fields = new String[FIELD_COUNT];
+    int start = 0;
+    for (int field = 0; field < FIELD_COUNT; field++) {
+      int end = field == FIELD_COUNT - 1 ? line.length() : line.indexOf(',', start);
+      if (end == -1) {
+        throw new IllegalArgumentException("Expected " + FIELD_COUNT + " fields separated by "
+                + "commas, but found " + (field + 1));
+      }
+      fields[field] = line.substring(start, end).strip();
+      start = end + 1;
+    }
+    if (fields[FIELD_COUNT - 1].indexOf(',') != -1) {
+      throw new IllegalArgumentException("Expected " + FIELD_COUNT + " fields separated by "
+              + "commas, but found more");
+    }
+
+    return new TrainDeparture(parseTime(fields[0]), parseTime(fields[1]), fields[2], fields[3],
+            parseInt(fields[4], "train number"), parseInt(fields[5], "track"), serviceDay);
+  }
+
+  /**
+   * Parses a time in a h:mm or hh:mm format without creating any objects.
+   *
+   * @param text the time to parse
+   * @return the LocalTime of the text
+   * @throws IllegalArgumentException if the text is not a valid time of day
+   */
+  static LocalTime parseTime(String text) throws IllegalArgumentException {
+    int colon = text.length() - 3;
+    if ((colon != 1 && colon != 2) || text.charAt(colon) != ':') {
+      throw new IllegalArgumentException("The time " + text + " is not in a hh:mm format");
+    }
+
+    int hour = digit(text, 0);
+    if (colon == 2) {
+      hour = hour * 10 + digit(text, 1);
+    }
+    int minute = digit(text, colon + 1) * 10 + digit(text, colon + 2);
+    if (hour > 23 || minute > 59) {
+      throw new IllegalArgumentException("The time " + text + " is not a valid time of day");
+    }
+    return TIMES[hour * 60 + minute];
+  }
+
+  /**
+   * Returns the digit at a position of a time.
+   *
+   * @param text     the time being parsed
+   * @param position the position of the digit
+   * @return the value of the digit
+   * @throws IllegalArgumentException if the character is not a digit
+   */
+  private static int digit(String text, int position) throws IllegalArgumentException {
+    int digit = text.charAt(position) - '0';
+    if (digit < 0 || digit > 9) {
+      throw new IllegalArgumentException("The time " + text + " is not in a hh:mm format");
+    }
+    return digit;
+  }
+
+  /**
+   * Parses an integer field.
+   *
+   * @param text the field to parse
+   * @param name the name of the field, used in the reason if the field is not valid
+   * @return the integer value of the field
+   * @throws IllegalArgumentException if the field is not an integer
+   */
+  private static int parseInt(String text, String name) throws IllegalArgumentException {
+    try {
+      return Integer.parseInt(text);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The " + name + " " + text + " is not an integer");
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package edu.ntnu.stud;
+
+/**
+ * Keeps one occupancy bitmap per track over a window of minutes on the timeline, and finds
+ * free tracks for train departures in it.
+ *
+ * <p>A departure occupies its track for a number of minutes that ends at its final departure
+ * minute. Bit {@code m} of the bitmap of a track is set when the track is occupied at minute
+ * {@code firstMinute + m}. Checking whether a track is free for a departure is a check of the
+ * bits of its occupied minutes, done a whole word of 64 minutes at a time, so no departures
+ * are visited to find a free track.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+final class TrackAllocator {
+  private final long[][] occupancy;
+  private final int firstMinute;
+  private final int minutes;
+  private final int occupiedMinutes;
+
+  /**
+   * Constructs an allocator where every track is free.
+   *
+   * @param tracks          the number of tracks, numbered from 1
+   * @param firstMinute     the first minute on the timeline the bitmaps cover
+   * @param lastMinute      the last minute on the timeline the bitmaps cover
+   * @param occupiedMinutes the number of minutes a departure occupies its track,
+   *                        up to and including its final departure minute
+   * @throws IllegalArgumentException if the number of tracks or occupied minutes is not
+   *                                  positive, or the last minute is before the first minute
+   */
+  TrackAllocator(int tracks, int firstMinute, int lastMinute, int occupiedMinutes)
+          throws IllegalArgumentException {
+    TrainDeparture.assertPositiveIntegerParameter(tracks);
+    TrainDeparture.assertPositiveIntegerParameter(occupiedMinutes);
+    if (lastMinute < firstMinute) {
+      throw new IllegalArgumentException("The last minute " + lastMinute
+              + " must not be before the first minute " + firstMinute);
+    }
+    this.firstMinute = firstMinute;
+    this.minutes = lastMinute - firstMinute + 1;
+    this.occupiedMinutes = occupiedMinutes;
+    this.occupancy = new long[tracks][(minutes + Long.SIZE - 1) / Long.SIZE];
+  }
+
+  /**
+   * Marks a track as occupied by a departure that already has the track. Tracks beyond the
+   * tracks of the allocator are ignored.
+   *
+   * @param track                the assigned track of the departure
+   * @param finalDepartureMinute the departure minute on the timeline accounting for any delays
+   */
+  void occupy(int track, int finalDepartureMinute) {
+    if (track < 1 || track > occupancy.length) {
+      return;
+    }
+    int to = finalDepartureMinute - firstMinute;
+    int from = to - occupiedMinutes + 1;
+    if (to < 0 || from >= minutes) {
+      return;
+    }
+    update(occupancy[track - 1], Math.max(from, 0), Math.min(to, minutes - 1), true);
+  }
+
+  /**
+   * Finds the lowest track that is free for all the minutes a departure occupies,
+   * and marks it as occupied.
+   *
+   * @param finalDepartureMinute the departure minute on the timeline accounting for any delays
+   * @return the track that was allocated, or -1 if every track is occupied or the departure
+   *         is outside the minutes of the allocator
+   */
+  int allocate(int finalDepartureMinute) {
+    int to = finalDepartureMinute - firstMinute;
+    int from = Math.max(to - occupiedMinutes + 1, 0);
+    if (to < 0 || to >= minutes) {
+      return -1;
+    }
+    for (int track = 0; track < occupancy.length; track++) {
+      if (update(occupancy[track], from, to, false)) {
+        update(occupancy[track], from, to, true);
+        return track + 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Checks or sets the bits of a range of minutes in a bitmap, one word at a time.
+   *
+   * @param bits the bitmap of a track
+   * @param from the first bit of the range
+   * @param to   the last bit of the range, inclusive
+   * @param set  true to set the bits, false to only check them
+   * @return true if none of the bits were set before
+   */
+  private static boolean update(long[] bits, int from, int to, boolean set) {
+    boolean free = true;
+    for (int word = from >>> 6; word <= to >>> 6; word++) {
+      long mask = -1L;
+      if (word == from >>> 6) {
+        mask &= -1L << from;
+      }
+      if (word == to >>> 6) {
+        mask &= -1L >>> (Long.SIZE - 1 - (to & (Long.SIZE - 1)));
+      }
+      if ((bits[word] & mask) != 0) {
+        free = false;
+        if (!set) {
+          return false;
+        }
+      }
+      if (set) {
+        bits[word] |= mask;
+      }
+    }
+    return free;
+  }
+}
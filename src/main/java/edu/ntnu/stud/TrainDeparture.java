@@ -50,6 +50,24 @@ import java.time.LocalTime;
  *     <li>{@code track} - Can be altered based on application functionalities
  *     to set the track.</li>
  * </ul>
+ * Both can only be set from this package, by the {@link Registry} that holds the departure,
+ * since its indexes are kept in the order of the final departure minute and the track.
+ * Changing a departure that was returned by a registry would leave those indexes behind.
+ * Both are read through volatile fields, so a thread reading a departure from a
+ * {@link ConcurrentRegistry} always sees the latest delay and track set by the dispatcher
+ * thread. The final departure time and minute are derived from the delay. They are computed
+ * when the departure is created and again when the delay is set, so the comparators and
+ * conflict checks of a registry only read a field instead of adding the delay to the
+ * departure time. The delay and the times derived from it are published together in one
+ * immutable holder, so a reading thread never sees a new delay with an old final departure
+ * time.
+ *
+ * <p><b>Service days:</b></p>
+ * Every departure belongs to a service day, counted from day 0 when the registry started.
+ * The departure time is the time of day on that day. A delay that moves the departure past
+ * midnight does not wrap around: {@link #getFinalDepartureMinute()} places the departure on
+ * one continuous timeline of minutes, so a late night service still comes after the evening
+ * services of its own day.
  *
  * <p><b>Handling invalid data:</b></p>
  * This class takes steps to validate data upon the creation of a TrainDeparture object:
@@ -72,12 +90,40 @@ import java.time.LocalTime;
  * @since v0.1.0-alpha
  */
 public class TrainDeparture {
+  static final int MINUTES_PER_DAY = 24 * 60;
+
+  private final int serviceDay;
   private final LocalTime departureTime;
-  private LocalTime delay;
   private final String destination;
   private final String line;
   private final int trainNumber;
-  private int track;
+  private volatile int track;
+  private volatile Timing timing;
+  private volatile RenderedRow row;
+
+  /**
+   * The delay of a train departure together with the final departure time and minute
+   * derived from it, so all three are set and read at once.
+   *
+   * @param delay                the delay
+   * @param finalDepartureTime   the departure time plus the delay, wrapping at midnight
+   * @param finalDepartureMinute the departure time plus the delay on the timeline of days
+   */
+  private record Timing(LocalTime delay, LocalTime finalDepartureTime,
+                        int finalDepartureMinute) {
+  }
+
+  /**
+   * The cached String of a train departure, together with the delay and track it was
+   * formatted with. A row formatted by one thread while another thread sets the delay or
+   * the track is therefore never returned for the new values.
+   *
+   * @param delay the delay the row was formatted with
+   * @param track the track the row was formatted with
+   * @param text  the formatted row
+   */
+  private record RenderedRow(LocalTime delay, int track, String text) {
+  }
 
   /**
    * Constructs a object resembling a train departure.
@@ -99,19 +145,56 @@ public class TrainDeparture {
    */
   public TrainDeparture(LocalTime departureTime, LocalTime delay, String destination,
                         String line, int trainNumber, int track) throws IllegalArgumentException {
+    this(departureTime, delay, destination, line, trainNumber, track, 0);
+  }
+
+  /**
+   * Constructs a object resembling a train departure on a given service day.
+   * Does this only after verifying that the parameters are valid.
+   *
+   * @param departureTime a LocalTime object representing the departure time of a train
+   *                      in a hh:mm format without the delay.
+   * @param delay         a LocalTime object representing the delay time after the departure time.
+   *                      If is not delayed it is set to 00:00.
+   * @param destination   a String parameter representing the destination of a train.
+   * @param line          a String parameter representing the line the train will be taking.
+   * @param trainNumber   a positive integer representing a unique train number.
+   * @param track         an int parameter that represents the track where the train is supposed to
+   *                      arrive at and depart from. If a train does not have a track assigned it is
+   *                      set to -1.
+   * @param serviceDay    the service day the departure time belongs to, from 0.
+   * @throws IllegalArgumentException if any of the String parameters are blank, trainNumber is not
+   *                                  a positive integer, if the track parameter is not a positive
+   *                                  integer or -1, or if the service day is negative.
+   */
+  public TrainDeparture(LocalTime departureTime, LocalTime delay, String destination,
+                        String line, int trainNumber, int track, int serviceDay)
+          throws IllegalArgumentException {
     assertStringNotBlank(destination);
     assertStringNotBlank(line);
     assertPositiveIntegerParameter(trainNumber);
     assertPositiveIntegerOrNegativeOne(track);
+    if (serviceDay < 0) {
+      throw new IllegalArgumentException("The service day was negative, please retry.");
+    }
 
+    this.serviceDay = serviceDay;
     this.departureTime = departureTime;
-    this.delay = delay;
     this.destination = destination;
     this.line = line;
     this.trainNumber = trainNumber;
     this.track = track;
+    this.timing = timingOf(delay);
+  }
+
+  /**
+   * Returns the service day the departure time belongs to.
+   *
+   * @return the service day, from 0
+   */
+  public int getServiceDay() {
+    return serviceDay;
   }
-  
 
   /**
    * Returns the LocalTime object representing the departure time of a train.
@@ -128,7 +211,7 @@ public class TrainDeparture {
    * @return a LocalTime object in a 24-hour format (hh:mm)
    */
   public LocalTime getDelay() {
-    return delay;
+    return timing.delay();
   }
 
   /**
@@ -169,33 +252,96 @@ public class TrainDeparture {
   }
 
   /**
-   * Returns the departure time plus the delay.
+   * Returns the departure time plus the delay. The time is computed when the delay is set,
+   * so calling this method does not allocate.
    *
    * @return a LocalTime object with departure time plus hours of delay and minutes of delay.
    */
   public LocalTime getFinalDepartureTime() {
-    return departureTime.plusHours(delay.getHour()).plusMinutes(delay.getMinute());
+    return timing.finalDepartureTime();
+  }
+
+  /**
+   * Returns the departure time plus the delay as a minute on the timeline of service days,
+   * without wrapping around at midnight. This is the sort key of the ordered indexes and
+   * the key of the conflict indexes of a registry. It is computed when the delay is set, so
+   * comparing departures by it only reads an int field.
+   *
+   * @return the number of minutes from the start of service day 0 to the final departure
+   */
+  public int getFinalDepartureMinute() {
+    return timing.finalDepartureMinute();
+  }
+
+  /**
+   * Returns a delay together with the final departure time and minute of this departure
+   * with that delay.
+   *
+   * @param delay the delay
+   * @return the timing of the departure with the delay
+   */
+  private Timing timingOf(LocalTime delay) {
+    return new Timing(delay,
+            departureTime.plusHours(delay.getHour()).plusMinutes(delay.getMinute()),
+            timelineMinute(serviceDay, departureTime, delay));
+  }
+
+  /**
+   * Returns a copy of the train departure with the same attributes, which does not change
+   * when the delay or track of this train departure is set.
+   *
+   * @return a new train departure equal to this one
+   */
+  TrainDeparture copy() {
+    return new TrainDeparture(departureTime, timing.delay(), destination, line, trainNumber,
+            track, serviceDay);
+  }
+
+  /**
+   * Returns the minute on the timeline of service days of a departure time plus a delay.
+   *
+   * @param serviceDay    the service day of the departure time
+   * @param departureTime the departure time on the service day
+   * @param delay         the delay
+   * @return the number of minutes from the start of service day 0
+   */
+  static int timelineMinute(int serviceDay, LocalTime departureTime, LocalTime delay) {
+    return serviceDay * MINUTES_PER_DAY + minuteOfDay(departureTime) + minuteOfDay(delay);
+  }
+
+  /**
+   * Returns the minute of the day of a time.
+   *
+   * @param time the time
+   * @return the number of whole minutes since midnight
+   */
+  static int minuteOfDay(LocalTime time) {
+    return time.getHour() * 60 + time.getMinute();
   }
 
   /**
    * Sets a positive integer value or -1 as the track attribute of an
-   * existing TrainDeparture object.
+   * existing TrainDeparture object. Only called by the registry that holds the departure.
    *
    * @param track is a positive integer value or -1 (unassigned track)
    * @throws IllegalArgumentException if the input parameter is not a positive integer or -1.
    */
-  public void setTrack(int track) throws IllegalArgumentException {
+  void setTrack(int track) throws IllegalArgumentException {
     assertPositiveIntegerOrNegativeOne(track);
     this.track = track;
+    this.row = null;
   }
 
   /**
-   * Sets a LocalTime object value as the delay attribute of an existing TrainDeparture object.
+   * Sets a LocalTime object value as the delay attribute of an existing TrainDeparture object,
+   * and computes the final departure time and minute again. Only called by the registry that
+   * holds the departure.
    *
    * @param delay is a LocalTime object for the delay of a train departure.
    */
-  public void setDelay(LocalTime delay) {
-    this.delay = delay;
+  void setDelay(LocalTime delay) {
+    this.timing = timingOf(delay);
+    this.row = null;
   }
 
   /**
@@ -204,7 +350,7 @@ public class TrainDeparture {
    * @param parameter the string parameter to validate
    * @throws IllegalArgumentException if the string is blank
    */
-  private void assertStringNotBlank(String parameter) throws IllegalArgumentException {
+  static void assertStringNotBlank(String parameter) throws IllegalArgumentException {
     if (parameter.isBlank()) {
       throw new IllegalArgumentException("The the parameter was a blank string, "
               + "please retry.");
@@ -217,7 +363,7 @@ public class TrainDeparture {
    * @param parameter the integer parameter to validate
    * @throws IllegalArgumentException if the integer is negative
    */
-  private void assertPositiveIntegerParameter(int parameter) throws IllegalArgumentException {
+  static void assertPositiveIntegerParameter(int parameter) throws IllegalArgumentException {
     if (parameter < 1) {
       throw new IllegalArgumentException("The integer for the parameter was negative, "
               + "please retry.");
@@ -231,7 +377,7 @@ public class TrainDeparture {
    * @throws IllegalArgumentException if the integer is not bigger than zero
    *                                  or equal to negative one.
    */
-  private void assertPositiveIntegerOrNegativeOne(int parameter) throws IllegalArgumentException {
+  static void assertPositiveIntegerOrNegativeOne(int parameter) throws IllegalArgumentException {
     if (parameter < 1 && parameter != -1) {
       throw new IllegalArgumentException("The integer for the parameter was not over 0 or -1, "
               + "please retry.");
@@ -241,20 +387,39 @@ public class TrainDeparture {
   /**
    * Prints a String that represents a train departure with all its attribute information.
    * Where delay is not printed if delay is 00:00, and where the track is not printed
-   * if it is -1 (unassigned).
+   * if it is -1 (unassigned). The String is formatted once and cached until the delay
+   * or the track is set.
    *
    * @return a String that represents the train departure information.
    */
   @Override
   public String toString() {
-    String delay = getDelay().toString();
-    String track = String.valueOf(getTrack());
+    LocalTime currentDelay = timing.delay();
+    int currentTrack = track;
+    RenderedRow cached = row;
+    if (cached == null || cached.delay() != currentDelay || cached.track() != currentTrack) {
+      cached = new RenderedRow(currentDelay, currentTrack, formatRow(currentDelay, currentTrack));
+      row = cached;
+    }
+    return cached.text();
+  }
+
+  /**
+   * Formats the String returned by {@link #toString()}.
+   *
+   * @param currentDelay the delay to format
+   * @param currentTrack the track to format
+   * @return a String that represents the train departure information.
+   */
+  private String formatRow(LocalTime currentDelay, int currentTrack) {
+    String delay = currentDelay.toString();
+    String track = String.valueOf(currentTrack);
 
-    if (getDelay().equals(LocalTime.MIN)) {
+    if (currentDelay.equals(LocalTime.MIN)) {
       delay = "";
     }
 
-    if (getTrack() == -1) {
+    if (currentTrack == -1) {
       track = "";
     }
 
@@ -0,0 +1,198 @@
+package edu.ntnu.stud;
+
+/**
+ * A map from train numbers to train departures, specialized for primitive int keys.
+ *
+ * <p>The map uses open addressing with linear probing over two parallel arrays, one of train
+ * numbers and one of departures. Train numbers are never boxed and no node object is created
+ * per entry. An empty slot is a slot without a departure, and removed entries are closed by
+ * shifting the following entries of the probe sequence back, so no tombstones are left.</p>
+ *
+ * @author Adrian Aleksander Buczek
+ * @version v1.1.0
+ * @since v1.1.0
+ */
+final class TrainNumberMap {
+  private static final int MINIMUM_CAPACITY = 16;
+  private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+  private int[] trainNumbers;
+  private TrainDeparture[] departures;
+  private int mask;
+  private int shift;
+  private int size;
+
+  /**
+   * Constructs an empty map.
+   */
+  TrainNumberMap() {
+    allocate(MINIMUM_CAPACITY);
+  }
+
+  /**
+   * Returns the number of departures in the map.
+   *
+   * @return the number of departures
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns true if the map holds no departures.
+   *
+   * @return true if the map is empty, otherwise false
+   */
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns true if the map holds a departure with the train number.
+   *
+   * @param trainNumber the train number to look for
+   * @return true if the train number exists, otherwise false
+   */
+  boolean containsKey(int trainNumber) {
+    return get(trainNumber) != null;
+  }
+
+  /**
+   * Returns the departure with the train number.
+   *
+   * @param trainNumber the train number to look for
+   * @return the departure, or null if the train number does not exist
+   */
+  TrainDeparture get(int trainNumber) {
+    for (int slot = slotOf(trainNumber); departures[slot] != null; slot = (slot + 1) & mask) {
+      if (trainNumbers[slot] == trainNumber) {
+        return departures[slot];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Puts a departure in the map, keyed by its train number.
+   *
+   * @param trainNumber the train number of the departure
+   * @param departure   the departure, must not be null
+   * @return the departure previously stored with the train number, or null if there was none
+   */
+  TrainDeparture put(int trainNumber, TrainDeparture departure) {
+    int slot = slotOf(trainNumber);
+    while (departures[slot] != null) {
+      if (trainNumbers[slot] == trainNumber) {
+        TrainDeparture previous = departures[slot];
+        departures[slot] = departure;
+        return previous;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    trainNumbers[slot] = trainNumber;
+    departures[slot] = departure;
+    if (++size > maximumSize()) {
+      rehash(departures.length * 2);
+    }
+    return null;
+  }
+
+  /**
+   * Removes the departure with the train number from the map.
+   *
+   * @param trainNumber the train number of the departure to remove
+   * @return the removed departure, or null if the train number does not exist
+   */
+  TrainDeparture remove(int trainNumber) {
+    int slot = slotOf(trainNumber);
+    while (departures[slot] != null) {
+      if (trainNumbers[slot] == trainNumber) {
+        TrainDeparture removed = departures[slot];
+        closeGap(slot);
+        size--;
+        return removed;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Empties a slot and moves later entries of the same probe sequence into the gap,
+   * so that every entry can still be reached from its home slot.
+   *
+   * @param gap the slot to empty
+   */
+  private void closeGap(int gap) {
+    int slot = gap;
+    while (true) {
+      slot = (slot + 1) & mask;
+      if (departures[slot] == null) {
+        break;
+      }
+      int home = slotOf(trainNumbers[slot]);
+      // The entry may only move back if its home slot is not between the gap and the slot.
+      if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+        trainNumbers[gap] = trainNumbers[slot];
+        departures[gap] = departures[slot];
+        gap = slot;
+      }
+    }
+    departures[gap] = null;
+  }
+
+  /**
+   * Returns the home slot of a train number, using Fibonacci hashing to spread
+   * consecutive train numbers over the table.
+   *
+   * @param trainNumber the train number to place
+   * @return the index of the first slot to probe
+   */
+  private int slotOf(int trainNumber) {
+    return (trainNumber * GOLDEN_RATIO) >>> shift;
+  }
+
+  /**
+   * Returns the number of entries the table may hold before it grows, a load factor of 0.75.
+   *
+   * @return the maximum size at the current capacity
+   */
+  private int maximumSize() {
+    return departures.length - (departures.length >>> 2);
+  }
+
+  /**
+   * Moves every entry into a new table with the given capacity.
+   *
+   * @param capacity the new capacity, a power of two
+   */
+  private void rehash(int capacity) {
+    int[] oldTrainNumbers = trainNumbers;
+    TrainDeparture[] oldDepartures = departures;
+    allocate(capacity);
+
+    for (int i = 0; i < oldDepartures.length; i++) {
+      if (oldDepartures[i] != null) {
+        int slot = slotOf(oldTrainNumbers[i]);
+        while (departures[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        trainNumbers[slot] = oldTrainNumbers[i];
+        departures[slot] = oldDepartures[i];
+      }
+    }
+  }
+
+  /**
+   * Allocates empty arrays with the given capacity.
+   *
+   * @param capacity the capacity, a power of two
+   */
+  private void allocate(int capacity) {
+    trainNumbers = new int[capacity];
+    departures = new TrainDeparture[capacity];
+    mask = capacity - 1;
+    shift = Integer.numberOfLeadingZeros(capacity - 1);
+  }
+}
@@ -1,7 +1,19 @@
 package edu.ntnu.stud;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
 
 /**
  * The UserInterface class is responsible for the user interface of the application.
@@ -13,23 +25,41 @@ import java.util.Scanner;
  */
 public class UserInterface {
   private static final Scanner scanner = new Scanner(System.in);
+  private static final String DEPARTURES_HEADER = String.format(
+          "%-15s | %-5s | %-13s | %-12s | %-7s | %-5s",
+          "Departure Time", "Line", "Train Number", "Destination", "Delay", "Track");
+  private static final String DEPARTURES_DIVIDER =
+          "------------------------------------------------------------------------";
+  private static final long BOARD_REFRESH_MILLIS = 1000;
+  private static final String[] MENU_COMMANDS =
+          {"", "list", "add", "track", "delay", "find", "search", "time", "board", "exit"};
   private Registry departures;
+  private RegistryJournal journal;
+  private Path snapshotFile;
+  private int commandTrainNumber;
 
   /**
    * Runs the main menu of the terminal. Prints the main menu and interprets user input
    * while validating that the input is a valid integer and that the command exists.
-   * Application closes when user inputs option 9.
+   * Application closes when user inputs option 9. Every command is recorded as a
+   * {@link DispatchCommandEvent} when a flight recording enables the event, including the
+   * exit command, which is recorded after the journal is closed and the snapshot is saved.
    */
   public void run() {
     printTrainArtwork();
     System.out.println("\n--- Train Dispatch Application Version 1.0 ---\n");
 
-    mainMenu:
-    while (true) {
+    boolean exiting = false;
+    while (!exiting) {
       printMainMenu();
 
+      DispatchCommandEvent event = new DispatchCommandEvent();
+      event.begin();
+      commandTrainNumber = 0;
       try {
         int choice = Integer.parseInt(scanner.nextLine());
+        event.command = choice > 0 && choice < MENU_COMMANDS.length
+                ? MENU_COMMANDS[choice] : String.valueOf(choice);
         System.out.println();
 
         if (choice == 1 || choice == 3 || choice == 4 || choice == 5 || choice == 6) {
@@ -44,18 +74,29 @@ public class UserInterface {
           case 5 -> searchByTrainNumber();
           case 6 -> searchByDestination();
           case 7 -> updateTime();
+          case 8 -> showDepartureBoard();
           case 9 -> {
-            break mainMenu;
+            closeJournal();
+            saveSnapshot();
+            exiting = true;
           }
           default -> System.out.println("Invalid choice, "
                   + "please select an option between 1-8 or 9 to exit the application");
         }
+        event.outcome = "OK";
 
       } catch (Exception e) {
         System.out.println(e.getMessage());
         System.out.println("Input is not a valid integer ");
+        event.outcome = "Rejected: " + e.getMessage();
 
       }
+      event.end();
+      if (event.shouldCommit()) {
+        event.trainNumber = commandTrainNumber;
+        event.registrySize = departures.size();
+        event.commit();
+      }
       System.out.println();
 
     }
@@ -63,6 +104,23 @@ public class UserInterface {
 
   }
 
+  /**
+   * Runs the dispatch commands of a stream back to back, without printing any menus, and
+   * prints their results. The journal and snapshot are closed and saved afterwards, the same
+   * way as when the main menu is exited.
+   *
+   * @param commands the stream of commands, see {@link BatchCommandRunner}
+   * @throws IOException if the commands can not be read
+   */
+  public void runBatch(Reader commands) throws IOException {
+    try {
+      new BatchCommandRunner(departures).run(commands, new OutputStreamWriter(System.out));
+    } finally {
+      closeJournal();
+      saveSnapshot();
+    }
+  }
+
   /**
    * Initializes the application with a registry with some train departures.
    */
@@ -75,6 +133,106 @@ public class UserInterface {
     departures.addTrainDeparture(LocalTime.of(7, 21), LocalTime.of(0, 0), "Asker", "A4", 21, -1);
   }
 
+  /**
+   * Initializes the application with a registry with the train departures of a timetable file.
+   * Lines of the timetable that could not be added are printed with their reason.
+   *
+   * @param timetable the path of the timetable file, see {@link TimetableImporter}
+   * @throws IOException if the timetable file can not be read
+   */
+  public void init(Path timetable) throws IOException {
+    departures = new Registry();
+
+    TimetableImporter.Result result = new TimetableImporter(departures)
+            .importTimetable(timetable);
+
+    System.out.println("Imported " + result.added() + " train departures from " + timetable);
+    result.rejections().forEach(rejection -> System.out.println("Line "
+            + rejection.lineNumber() + " was not imported: " + rejection.reason()));
+  }
+
+  /**
+   * Initializes the application with the registry of a snapshot file, written by an earlier
+   * run. The snapshot file is also where the registry is saved when the application exits.
+   * If the snapshot file does not exist yet, the application is initialized with some train
+   * departures like {@link #init()}.
+   *
+   * @param snapshot the path of the snapshot file
+   * @throws IOException if the snapshot file exists but can not be read
+   */
+  public void initFromSnapshot(Path snapshot) throws IOException {
+    snapshotFile = snapshot;
+    if (!Files.exists(snapshot)) {
+      init();
+      return;
+    }
+
+    departures = RegistrySnapshot.read(snapshot);
+    System.out.println("Restored " + departures.getDepartures().size()
+            + " train departures from " + snapshot);
+  }
+
+  /**
+   * Saves the registry to the snapshot file, if the application was started from one.
+   */
+  private void saveSnapshot() {
+    if (snapshotFile == null) {
+      return;
+    }
+    try {
+      departures.writeSnapshot(snapshotFile);
+    } catch (IOException e) {
+      System.out.println("The snapshot could not be saved: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Opens a journal that every change to the registry is written to. If the journal already
+   * holds changes from an earlier run, the registry is rebuilt from the journal instead of
+   * keeping the departures it was initialized with.
+   *
+   * @param journalFile the path of the journal file, created if it does not exist
+   * @throws IOException if the journal can not be read or written
+   */
+  public void openJournal(Path journalFile) throws IOException {
+    journal = RegistryJournal.open(journalFile);
+    if (!journal.isEmpty()) {
+      departures = new Registry();
+      int applied = journal.replay(departures);
+      System.out.println("Restored " + applied + " changes from " + journalFile);
+    }
+    departures.setJournal(journal);
+  }
+
+  /**
+   * Writes the remaining changes to the journal and closes it, if a journal is open.
+   */
+  private void closeJournal() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.close();
+    } catch (IOException e) {
+      System.out.println("The journal could not be closed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Records the latency of the registry operations, the rejected changes and the sizes of
+   * the registry, and publishes them over JMX as {@value RegistryMetrics#OBJECT_NAME}.
+   * Must be called after the registry is initialized and any journal is opened.
+   */
+  public void enableMetrics() {
+    RegistryMetrics metrics = new RegistryMetrics();
+    departures.setMetrics(metrics);
+    try {
+      metrics.register();
+    } catch (JMException e) {
+      System.out.println("The metrics could not be published: " + e.getMessage());
+    }
+  }
+
   /**
    * Gets user input as a string and prints a message to the user.
    *
@@ -117,6 +275,7 @@ public class UserInterface {
         String destination = getUserInputString("Type in the destination");
         String line = getUserInputString("Type in the line");
         int trainNumber = getUserInputInt("Type in the train number");
+        commandTrainNumber = trainNumber;
         int track = getUserInputInt("Type in track, -1 if unassigned");
 
         departures.addTrainDeparture(departureTime, delay, destination, line, trainNumber, track);
@@ -137,6 +296,7 @@ public class UserInterface {
         printTrainDepartures();
 
         int trainNumber = getUserInputInt("Type in the train number");
+        commandTrainNumber = trainNumber;
         int track = getUserInputInt("Type in the track");
 
         departures.assertAndSetTrack(trainNumber, track);
@@ -156,6 +316,7 @@ public class UserInterface {
         printTrainDepartures();
 
         int trainNumber = getUserInputInt("Type in the train number");
+        commandTrainNumber = trainNumber;
         LocalTime delay = LocalTime.parse(getUserInputString("Type in delay in a hh:mm format"));
 
         departures.assertAndSetDelay(trainNumber, delay);
@@ -173,6 +334,7 @@ public class UserInterface {
     while (true) {
       try {
         int trainNumber = getUserInputInt("Type in a train number");
+        commandTrainNumber = trainNumber;
 
         printTrainDeparturesHeader();
         System.out.println(departures.getTrainDepartureByTrainNumber(trainNumber));
@@ -189,7 +351,7 @@ public class UserInterface {
         String destination = getUserInputString("Type in a destination");
 
         printTrainDeparturesHeader();
-        departures.getDeparturesByDestination(destination).forEach(System.out::println);
+        departures.getDeparturesByDestinationIgnoreCase(destination).forEach(System.out::println);
         break;
       } catch (Exception e) {
         System.out.println(e.getMessage());
@@ -240,6 +402,7 @@ public class UserInterface {
             [5] - Search for a train departure by train number
             [6] - Search for a train departure by destination
             [7] - Update time
+            [8] - Show departure board
             [9] - Exit application
                 
             Type in a number of an option below and press enter:""");
@@ -256,18 +419,61 @@ public class UserInterface {
    * Prints the train departure header.
    */
   private void printTrainDeparturesHeader() {
-    System.out.printf("%-15s | %-5s | %-13s | %-12s | %-7s | %-5s%n",
-            "Departure Time", "Line", "Train Number", "Destination", "Delay", "Track");
-    System.out.println("------------------------------------------------------------------------");
+    System.out.println(DEPARTURES_HEADER);
+    System.out.println(DEPARTURES_DIVIDER);
   }
 
   /**
    * Prints train departures in ascending order by totalTime.
+   * The rows are collected first and printed with a single write.
    */
   private void printTrainDepartures() {
     printTimeOfDay();
     printTrainDeparturesHeader();
-    departures.getDepartures().forEach(System.out::println);
+
+    StringBuilder rows = new StringBuilder();
+    departures.getDepartures().forEach(trainDeparture ->
+            rows.append(trainDeparture).append(System.lineSeparator()));
+    System.out.print(rows);
+  }
+
+  /**
+   * Shows a departure board that is redrawn every second until the user presses enter.
+   * Only the rows that changed since the last redraw are written to the terminal.
+   */
+  private void showDepartureBoard() {
+    departures.enableVersions();
+    DepartureBoard board = new DepartureBoard(new PrintWriter(System.out));
+    ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor();
+    refresher.scheduleAtFixedRate(() -> board.draw(departureBoardLines()),
+            0, BOARD_REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+
+    scanner.nextLine();
+    refresher.shutdown();
+    try {
+      refresher.awaitTermination(BOARD_REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the lines of the departure board: the time of day, the header and a row
+   * for every train departure in ascending order. The lines are read from the latest
+   * version of the registry, so the board never sees a departure change while it is drawn.
+   *
+   * @return the lines of the departure board
+   */
+  private List<String> departureBoardLines() {
+    RegistryVersion version = departures.getVersion();
+    List<String> lines = new ArrayList<>(version.size() + 5);
+    lines.add("Time: [ " + version.getTimeOfDay() + " ]");
+    lines.add("");
+    lines.add(DEPARTURES_HEADER);
+    lines.add(DEPARTURES_DIVIDER);
+    version.forEach(trainDeparture -> lines.add(trainDeparture.toString()));
+    lines.add("Press enter to return to the main menu");
+    return lines;
   }
 
 }
@@ -0,0 +1,142 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCommandRunnerTest {
+  private Registry registry;
+  private BatchCommandRunner runner;
+  private StringWriter output;
+
+  @BeforeEach
+  void setUp() {
+    registry = new Registry();
+    registry.addTrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 15), "Bergen", "L4", 1, -1);
+    runner = new BatchCommandRunner(registry);
+    output = new StringWriter();
+  }
+
+  private BatchCommandRunner.Result run(String commands) throws IOException {
+    return runner.run(new StringReader(commands), output);
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the BatchCommandRunner class")
+  public class PositiveBatchCommandRunnerTests {
+    @Test
+    void runExecutesEveryCommand() throws IOException {
+      BatchCommandRunner.Result result = run("""
+              add,11:20,00:05,Trondheim,B3,2,-1
+              track,2,3
+              delay,1,00:20
+              time,11:00
+              """);
+
+      assertEquals(result, new BatchCommandRunner.Result(4, 0));
+      assertEquals(registry.getTrainDepartureByTrainNumber(2).getTrack(), 3);
+      assertEquals(registry.getTrainDepartureByTrainNumber(1).getDelay(), LocalTime.of(0, 20));
+      assertEquals(registry.getTimeOfDay(), LocalTime.of(11, 0));
+      assertEquals(registry.getDepartures().size(), 2);
+    }
+
+    @Test
+    void runPrintsTheResultsOfQueries() throws IOException {
+      run("""
+              search,bergen
+              find,1
+              list
+              """);
+
+      String row = registry.getTrainDepartureByTrainNumber(1).toString();
+      assertEquals(output.toString().lines().filter(row::equals).count(), 3L);
+      assertTrue(output.toString().endsWith("Executed 3 commands, 0 failed"
+              + System.lineSeparator()));
+    }
+
+    @Test
+    void runStartsALaterServiceDay() throws IOException {
+      assertEquals(run("day,1\n"), new BatchCommandRunner.Result(1, 0));
+      assertEquals(registry.getServiceDay(), 1);
+      assertTrue(registry.getDepartures().isEmpty());
+    }
+
+    @Test
+    void runChangesEveryDepartureInASelection() throws IOException {
+      BatchCommandRunner.Result result = run("""
+              delayall,L4,,,15:00,16:00,00:10
+              moveall,,bergen,-1,,,4
+              """);
+
+      assertEquals(result, new BatchCommandRunner.Result(2, 0));
+      assertEquals(registry.getTrainDepartureByTrainNumber(1).getDelay(), LocalTime.of(0, 25));
+      assertEquals(registry.getTrainDepartureByTrainNumber(1).getTrack(), 4);
+    }
+
+    @Test
+    void runPrintsAPageOfAQuery() throws IOException {
+      run("""
+              add,11:20,00:05,Trondheim,L4,2,-1
+              query,L4,,,,,delayed,0,1
+              """);
+
+      assertTrue(output.toString().contains(registry.getTrainDepartureByTrainNumber(2).toString()));
+      assertTrue(output.toString().contains("More departures after 1"));
+    }
+
+    @Test
+    void runSkipsBlankLinesAndComments() throws IOException {
+      assertEquals(run("# comment\n\nfind,1\n"), new BatchCommandRunner.Result(1, 0));
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the BatchCommandRunner class")
+  public class NegativeBatchCommandRunnerTests {
+    @Test
+    void runReportsFailedCommandsAndContinues() throws IOException {
+      BatchCommandRunner.Result result = run("""
+              find,7
+              launch,1
+              track,1
+              delay,1,25:00
+              track,1,4
+              """);
+
+      assertEquals(result, new BatchCommandRunner.Result(5, 4));
+      assertEquals(registry.getTrainDepartureByTrainNumber(1).getTrack(), 4);
+      assertTrue(output.toString().contains("Line 2: Unknown command launch"));
+      assertTrue(output.toString().contains("Line 3: Expected 2 arguments"));
+    }
+
+    @Test
+    void runReportsCommandsRejectedByTheRegistry() throws IOException {
+      BatchCommandRunner.Result result = run("add,15:30,00:15,Bergen,L4,1,-1\n");
+
+      assertEquals(result, new BatchCommandRunner.Result(1, 1));
+      assertEquals(registry.getDepartures().size(), 1);
+    }
+
+    @Test
+    void runFlushesTheOutputWhenTheBatchStops() {
+      Registry failing = new Registry() {
+        @Override
+        public void setTimeOfDay(LocalTime newTime) {
+          throw new UncheckedIOException(new IOException("The journal could not be written"));
+        }
+      };
+      failing.addTrainDeparture(LocalTime.of(15, 30), LocalTime.MIN, "Bergen", "L4", 1, -1);
+      BatchCommandRunner failingRunner = new BatchCommandRunner(failing);
+
+      assertThrows(UncheckedIOException.class, () -> failingRunner.run(
+              new StringReader("find,1\ntime,12:00\nlist\n"), output));
+      assertTrue(output.toString().contains("Bergen"));
+    }
+  }
+}
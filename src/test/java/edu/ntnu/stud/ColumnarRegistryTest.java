@@ -0,0 +1,200 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarRegistryTest {
+  private ColumnarRegistry departures;
+
+  @BeforeEach
+  void setUp() {
+    departures = new ColumnarRegistry();
+
+    departures.addTrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 15),
+            "Bergen", "L4", 1, -1);
+    departures.addTrainDeparture(LocalTime.of(11, 20), LocalTime.of(0, 5),
+            "Trondheim", "B3", 2, -1);
+    departures.addTrainDeparture(LocalTime.of(11, 20), LocalTime.of(0, 5),
+            "Trondheim", "L3", 3, 2);
+    departures.addTrainDeparture(LocalTime.of(7, 20), LocalTime.of(0, 0),
+            "Kragerø", "L4", 4, 2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    departures = null;
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the ColumnarRegistry class")
+  public class PositiveColumnarRegistryTests {
+    @Test
+    void getDeparturesIsSortedByFinalDepartureTime() {
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(4, 2, 3, 1));
+    }
+
+    @Test
+    void getDeparturesByDestinationIsSortedByFinalDepartureTime() {
+      departures.assertAndSetDelay(2, LocalTime.of(1, 0));
+      assertEquals(departures.getDeparturesByDestination("Trondheim").stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(3, 2));
+    }
+
+    @Test
+    void getTrainDepartureByTrainNumberGiveCorrectTrainDeparture() {
+      TrainDeparture departure = departures.getTrainDepartureByTrainNumber(1);
+
+      assertEquals(departure.getDepartureTime(), LocalTime.of(15, 30));
+      assertEquals(departure.getDelay(), LocalTime.of(0, 15));
+      assertEquals(departure.getDestination(), "Bergen");
+      assertEquals(departure.getLine(), "L4");
+      assertEquals(departure.getTrainNumber(), 1);
+      assertEquals(departure.getTrack(), -1);
+    }
+
+    @Test
+    void setTimeOfDayRemovesDeparturesBeforeTime() {
+      departures.setTimeOfDay(LocalTime.of(12, 0));
+      assertEquals(departures.size(), 1);
+      assertEquals(departures.getTrainDepartureByTrainNumber(1).getDestination(), "Bergen");
+    }
+
+    @Test
+    void assertAndSetTrackSetsTrack() {
+      departures.assertAndSetTrack(1, 7);
+      assertEquals(departures.getTrainDepartureByTrainNumber(1).getTrack(), 7);
+    }
+
+    @Test
+    void addManyTrainDeparturesGivesCorrectSize() {
+      for (int trainNumber = 10; trainNumber < 1000; trainNumber++) {
+        departures.addTrainDeparture(LocalTime.of(20, trainNumber % 60), LocalTime.MIN,
+                "Oslo S", "R" + trainNumber, trainNumber, -1);
+      }
+      assertEquals(departures.size(), 994);
+      assertEquals(departures.getTrainDepartureByTrainNumber(999).getLine(), "R999");
+    }
+
+    @Test
+    void nightServicesSortAndLeaveLikeRegistry() {
+      departures.addTrainDeparture(LocalTime.of(23, 50), LocalTime.of(0, 20), "Bodø", "N1", 5, 3);
+      departures.addTrainDeparture(LocalTime.of(0, 5), LocalTime.MIN, "Bodø", "N1", 6, 3);
+      Registry registry = new Registry();
+      registry.addTrainDeparture(LocalTime.of(23, 50), LocalTime.of(0, 20), "Bodø", "N1", 5, 3);
+      registry.addTrainDeparture(LocalTime.of(0, 5), LocalTime.MIN, "Bodø", "N1", 6, 3);
+
+      assertEquals(departures.getDeparturesByDestination("Bodø").stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(6, 5));
+      assertEquals(departures.getDeparturesByDestination("Bodø").stream()
+              .map(TrainDeparture::getTrainNumber).toList(),
+              registry.getDeparturesByDestination("Bodø").stream()
+                      .map(TrainDeparture::getTrainNumber).toList());
+
+      departures.setTimeOfDay(LocalTime.of(23, 59));
+      departures.startServiceDay(1);
+      assertEquals(departures.getServiceDay(), 1);
+      assertEquals(departures.getTimeOfDay(), LocalTime.MIN);
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(5));
+      assertEquals(departures.getTrainDepartureByTrainNumber(5).getServiceDay(), 0);
+    }
+
+    @Test
+    void departuresAtTheSameMinuteAreOrderedByTrainNumber() {
+      departures.addTrainDeparture(LocalTime.of(20, 0), LocalTime.MIN, "Oslo S", "R30", 30, -1);
+      departures.addTrainDeparture(LocalTime.of(19, 50), LocalTime.of(0, 10), "Oslo S", "R20",
+              20, -1);
+      departures.addTrainDeparture(LocalTime.of(20, 0), LocalTime.MIN, "Oslo S", "R25", 25, -1);
+
+      assertEquals(departures.getDeparturesByDestination("Oslo S").stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(20, 25, 30));
+    }
+
+    @Test
+    void conflictsFollowDelaysAndRemovedDepartures() {
+      departures.assertAndSetDelay(2, LocalTime.of(1, 0));
+      departures.setTimeOfDay(LocalTime.of(9, 0));
+
+      assertThrows(IllegalArgumentException.class, () -> departures
+              .addTrainDeparture(LocalTime.of(12, 20), LocalTime.MIN, "Oslo S", "B3", 8, -1));
+      assertThrows(IllegalArgumentException.class, () -> departures
+              .addTrainDeparture(LocalTime.of(11, 25), LocalTime.MIN, "Oslo S", "R9", 9, 2));
+      departures.addTrainDeparture(LocalTime.of(11, 25), LocalTime.MIN, "Oslo S", "B3", 10, 1);
+      departures.addTrainDeparture(LocalTime.of(7, 20), LocalTime.of(2, 0), "Oslo S", "L4", 11, 2);
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(11, 3, 10, 2, 1));
+    }
+
+    @Test
+    void addTrainDepartureAddsToTheCurrentServiceDay() {
+      departures.startServiceDay(2);
+      departures.addTrainDeparture(LocalTime.of(6, 0), LocalTime.of(0, 10), "Oslo S", "R10",
+              10, 1);
+      departures.assertAndSetDelay(10, LocalTime.of(0, 30));
+
+      TrainDeparture added = departures.getTrainDepartureByTrainNumber(10);
+      assertEquals(added.getServiceDay(), 2);
+      assertEquals(added.getFinalDepartureMinute(), 2 * 24 * 60 + 6 * 60 + 30);
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the ColumnarRegistry class")
+  public class NegativeColumnarRegistryTests {
+    @Test
+    void getTrainDepartureByTrainNumberDoesThrow() {
+      assertThrows(IllegalArgumentException.class,
+              () -> departures.getTrainDepartureByTrainNumber(5));
+    }
+
+    @Test
+    void addTrainDeparturesDoesThrowWhenTrainNumberAlreadyExists() {
+      assertThrows(IllegalArgumentException.class, () -> departures
+              .addTrainDeparture(LocalTime.of(22, 0), LocalTime.of(0, 15),
+                      "Hønefoss", "L33", 1, 7));
+    }
+
+    @Test
+    void addTrainDeparturesDoesThrowOnBlankDestination() {
+      assertThrows(IllegalArgumentException.class, () -> departures
+              .addTrainDeparture(LocalTime.of(22, 0), LocalTime.of(0, 15),
+                      "", "L33", 9, 7));
+    }
+
+    @Test
+    void assertAndSetTrackDoesThrow() {
+      assertThrows(IllegalArgumentException.class, () -> departures.assertAndSetTrack(2, 2));
+    }
+
+    @Test
+    void assertAndSetDelayDoesThrow() {
+      assertThrows(IllegalArgumentException.class, () -> departures
+              .assertAndSetDelay(4, LocalTime.of(4, 5)));
+    }
+
+    @Test
+    void startServiceDayDoesThrowOnEarlierDay() {
+      departures.startServiceDay(1);
+      assertThrows(IllegalArgumentException.class, () -> departures.startServiceDay(1));
+    }
+
+    @Test
+    void addTrainDepartureDoesThrowOnNightServiceCollidingAfterMidnight() {
+      departures.addTrainDeparture(LocalTime.of(23, 50), LocalTime.of(0, 20), "Bodø", "N1", 5, 3);
+      assertThrows(IllegalArgumentException.class, () -> departures
+              .addTrainDeparture(LocalTime.of(23, 40), LocalTime.of(0, 30), "Bodø", "N1", 6, -1));
+    }
+
+    @Test
+    void setTimeOfDayDoesThrow() {
+      departures.setTimeOfDay(LocalTime.of(16, 0));
+      assertThrows(IllegalArgumentException.class,
+              () -> departures.setTimeOfDay(LocalTime.of(12, 0)));
+    }
+  }
+}
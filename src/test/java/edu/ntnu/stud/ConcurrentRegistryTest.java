@@ -0,0 +1,128 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentRegistryTest {
+  private ConcurrentRegistry departures;
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() {
+    departures = new ConcurrentRegistry();
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    executor.shutdownNow();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    departures = null;
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the ConcurrentRegistry class")
+  public class PositiveConcurrentRegistryTests {
+    @Test
+    void readersSeeSortedDeparturesWhileDispatcherWrites() throws Exception {
+      AtomicBoolean writing = new AtomicBoolean(true);
+
+      Future<?> dispatcher = executor.submit(() -> {
+        for (int trainNumber = 1; trainNumber <= 2000; trainNumber++) {
+          departures.addTrainDeparture(LocalTime.of(12, trainNumber % 60), LocalTime.MIN,
+                  "Bergen", "L" + trainNumber, trainNumber, -1);
+          departures.assertAndSetDelay(trainNumber, LocalTime.of(1, trainNumber % 60));
+        }
+        writing.set(false);
+      });
+      Future<?> board = executor.submit(() -> {
+        while (writing.get()) {
+          List<TrainDeparture> board1 = departures.getDepartures();
+          for (int i = 1; i < board1.size(); i++) {
+            assertFalse(board1.get(i).getFinalDepartureTime()
+                    .isBefore(board1.get(i - 1).getFinalDepartureTime()));
+          }
+        }
+      });
+      Future<?> kiosk = executor.submit(() -> {
+        while (writing.get()) {
+          departures.getDeparturesByDestinationPrefix("ber");
+          departures.getTimeOfDay();
+        }
+      });
+
+      dispatcher.get(30, TimeUnit.SECONDS);
+      board.get(30, TimeUnit.SECONDS);
+      kiosk.get(30, TimeUnit.SECONDS);
+      assertEquals(departures.getDepartures().size(), 2000);
+    }
+
+    @Test
+    void lookupsByTrainNumberSeeTheDepartureWhileTheTableGrows() throws Exception {
+      departures.addTrainDeparture(LocalTime.of(6, 0), LocalTime.MIN, "Oslo", "R1", 1, -1);
+      AtomicBoolean writing = new AtomicBoolean(true);
+
+      Future<?> dispatcher = executor.submit(() -> {
+        for (int trainNumber = 2; trainNumber <= 4000; trainNumber++) {
+          departures.addTrainDeparture(LocalTime.of(12, trainNumber % 60), LocalTime.MIN,
+                  "Bergen", "L" + trainNumber, trainNumber, -1);
+        }
+        writing.set(false);
+      });
+      Future<?> kiosk = executor.submit(() -> {
+        while (writing.get()) {
+          assertEquals(departures.getTrainDepartureByTrainNumber(1).getDestination(), "Oslo");
+        }
+      });
+
+      dispatcher.get(30, TimeUnit.SECONDS);
+      kiosk.get(30, TimeUnit.SECONDS);
+      assertEquals(departures.getTrainDepartureByTrainNumber(4000).getLine(), "L4000");
+    }
+
+    @Test
+    void getTrainDepartureByTrainNumberGiveCorrectTrainDeparture() {
+      departures.addTrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 15),
+              "Bergen", "L4", 1, -1);
+      assertEquals(departures.getTrainDepartureByTrainNumber(1).getDestination(), "Bergen");
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the ConcurrentRegistry class")
+  public class NegativeConcurrentRegistryTests {
+    @Test
+    void getTrainDepartureByTrainNumberDoesThrow() {
+      assertThrows(IllegalArgumentException.class,
+              () -> departures.getTrainDepartureByTrainNumber(5));
+    }
+
+    @Test
+    void assertDeparturesNotEmptyDoesThrowAndCountsTheRejectionOnce() {
+      RegistryMetrics metrics = new RegistryMetrics();
+      departures.setMetrics(metrics);
+
+      assertThrows(IllegalArgumentException.class, () -> departures.assertDeparturesNotEmpty());
+      assertEquals(metrics.getRejections(RegistryMetrics.Rejection.NO_DEPARTURES), 1L);
+    }
+
+    @Test
+    void assertAndSetTrackDoesThrowAndReleasesLock() {
+      departures.addTrainDeparture(LocalTime.of(11, 20), LocalTime.of(0, 5),
+              "Trondheim", "L3", 3, 2);
+      departures.addTrainDeparture(LocalTime.of(11, 20), LocalTime.of(0, 5),
+              "Trondheim", "B3", 2, -1);
+      assertThrows(IllegalArgumentException.class, () -> departures.assertAndSetTrack(2, 2));
+      assertDoesNotThrow(() -> departures.assertAndSetTrack(2, 4));
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DepartureBoardTest {
+  private StringWriter terminal;
+  private DepartureBoard board;
+
+  @BeforeEach
+  void setUp() {
+    terminal = new StringWriter();
+    board = new DepartureBoard(terminal);
+    board.draw(List.of("Time: [ 12:00 ]", "Bergen", "Trondheim"));
+    terminal.getBuffer().setLength(0);
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the DepartureBoard class")
+  public class PositiveDepartureBoardTests {
+    @Test
+    void drawRedrawsOnlyChangedLines() {
+      int redrawn = board.draw(List.of("Time: [ 12:01 ]", "Bergen", "Trondheim"));
+
+      assertEquals(redrawn, 1);
+      assertTrue(terminal.toString().contains("12:01"));
+      assertFalse(terminal.toString().contains("Bergen"));
+    }
+
+    @Test
+    void drawClearsLinesThatAreNoLongerShown() {
+      int redrawn = board.draw(List.of("Time: [ 12:00 ]", "Bergen"));
+
+      assertEquals(redrawn, 1);
+      assertTrue(terminal.toString().startsWith("\u001b[3;1H\u001b[K"));
+    }
+
+    @Test
+    void drawAfterResetRedrawsEveryLine() {
+      board.reset();
+      int redrawn = board.draw(List.of("Time: [ 12:00 ]", "Bergen", "Trondheim"));
+
+      assertEquals(redrawn, 3);
+      assertTrue(terminal.toString().startsWith("\u001b[2J"));
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the DepartureBoard class")
+  public class NegativeDepartureBoardTests {
+    @Test
+    void drawSameFrameRedrawsNothing() {
+      assertEquals(board.draw(List.of("Time: [ 12:00 ]", "Bergen", "Trondheim")), 0);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DepartureSelectionTest {
+  private TrainDeparture trainDeparture;
+
+  @BeforeEach
+  void setUp() {
+    trainDeparture = new TrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 15), "Bergen",
+            "L4", 1, 3);
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the DepartureSelection class")
+  public class PositiveDepartureSelectionTests {
+    @Test
+    void allMatchesEveryLineAndTrack() {
+      assertTrue(DepartureSelection.all().matches(trainDeparture));
+    }
+
+    @Test
+    void narrowedSelectionKeepsEveryCriterion() {
+      DepartureSelection selection = DepartureSelection.all().line("L4").track(3)
+              .destination("bergen").between(LocalTime.of(14, 0), LocalTime.of(16, 0));
+
+      assertTrue(selection.matches(trainDeparture));
+      assertFalse(selection.destination("Oslo").matches(trainDeparture));
+      assertEquals(selection.getDestination(), "bergen");
+      assertEquals(selection.getFrom(), LocalTime.of(14, 0));
+      assertEquals(selection.getTo(), LocalTime.of(16, 0));
+    }
+
+    @Test
+    void destinationMatchesRegardlessOfCaseAndSurroundingSpaces() {
+      TrainDeparture padded = new TrainDeparture(LocalTime.of(16, 0), LocalTime.MIN, " BERGEN ",
+              "L4", 2, 3);
+
+      assertTrue(DepartureSelection.all().destination(" bErgen").matches(trainDeparture));
+      assertTrue(DepartureSelection.all().destination("bergen").matches(padded));
+    }
+
+    @Test
+    void delayedOnlyMatchesDelayedDepartures() {
+      assertTrue(DepartureSelection.all().delayedOnly().matches(trainDeparture));
+      trainDeparture.setDelay(LocalTime.MIN);
+      assertFalse(DepartureSelection.all().delayedOnly().matches(trainDeparture));
+    }
+
+    @Test
+    void narrowingDoesNotChangeTheOriginalSelection() {
+      DepartureSelection.all().line("L5");
+
+      assertNull(DepartureSelection.all().getLine());
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the DepartureSelection class")
+  public class NegativeDepartureSelectionTests {
+    @Test
+    void otherLineOrTrackDoesNotMatch() {
+      assertFalse(DepartureSelection.all().line("L5").matches(trainDeparture));
+      assertFalse(DepartureSelection.all().track(-1).matches(trainDeparture));
+    }
+
+    @Test
+    void narrowingDoesThrow() {
+      assertThrows(IllegalArgumentException.class, () -> DepartureSelection.all().line(" "));
+      assertThrows(IllegalArgumentException.class, () -> DepartureSelection.all().track(0));
+      assertThrows(IllegalArgumentException.class, () -> DepartureSelection.all()
+              .between(LocalTime.of(16, 0), LocalTime.of(14, 0)));
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package edu.ntnu.stud;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DispatchCommandEventTest {
+  private static final String EVENT_NAME = "edu.ntnu.stud.DispatchCommand";
+
+  private List<RecordedEvent> runBatch(Recording recording, String commands) throws Exception {
+    recording.start();
+    new BatchCommandRunner(new Registry()).run(new StringReader(commands), new StringWriter());
+    recording.stop();
+    Path file = Files.createTempFile("commands", ".jfr");
+    try {
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file).stream()
+              .filter(event -> event.getEventType().getName().equals(EVENT_NAME))
+              .toList();
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the DispatchCommandEvent class")
+  public class PositiveDispatchCommandEventTests {
+    @Test
+    void batchCommandsAreRecorded() throws Exception {
+      try (Recording recording = new Recording()) {
+        recording.enable(DispatchCommandEvent.class);
+        List<RecordedEvent> events = runBatch(recording,
+                "add,12:00,00:00,Oslo,L1,7,1\ndelay,8,00:05\nlist\n");
+
+        assertEquals(events.size(), 3);
+        assertEquals(events.get(0).getString("command"), "add");
+        assertEquals(events.get(0).getInt("trainNumber"), 7);
+        assertEquals(events.get(0).getInt("registrySize"), 1);
+        assertEquals(events.get(0).getString("outcome"), "OK");
+        assertEquals(events.get(1).getInt("trainNumber"), 8);
+        assertTrue(events.get(1).getString("outcome").startsWith("Rejected: "));
+        assertEquals(events.get(2).getInt("trainNumber"), 0);
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the DispatchCommandEvent class")
+  public class NegativeDispatchCommandEventTests {
+    @Test
+    void commandsAreNotRecordedUnlessEnabled() throws Exception {
+      try (Recording recording = new Recording()) {
+        assertTrue(runBatch(recording, "list\n").isEmpty());
+      }
+    }
+
+    @Test
+    void unreadableTrainNumbersAreRecordedAsZero() throws Exception {
+      try (Recording recording = new Recording()) {
+        recording.enable(DispatchCommandEvent.class);
+        List<RecordedEvent> events = runBatch(recording, "find,seven\n");
+
+        assertEquals(events.get(0).getInt("trainNumber"), 0);
+        assertTrue(events.get(0).getString("outcome").startsWith("Rejected: "));
+      }
+    }
+  }
+}
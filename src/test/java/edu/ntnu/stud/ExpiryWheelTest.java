@@ -0,0 +1,127 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiryWheelTest {
+  private static final int DAY = TrainDeparture.MINUTES_PER_DAY;
+
+  private ExpiryWheel wheel;
+  private List<Integer> expired;
+
+  private static TrainDeparture departure(int trainNumber, LocalTime departureTime,
+                                          int serviceDay) {
+    return new TrainDeparture(departureTime, LocalTime.of(0, 0), "Bergen", "L4", trainNumber, -1,
+            serviceDay);
+  }
+
+  private static int minute(int serviceDay, int hour, int minute) {
+    return serviceDay * DAY + hour * 60 + minute;
+  }
+
+  private void advance(int newMinute) {
+    wheel.advance(newMinute, trainDeparture -> expired.add(trainDeparture.getTrainNumber()));
+  }
+
+  @BeforeEach
+  void setUp() {
+    wheel = new ExpiryWheel(minute(0, 8, 0));
+    expired = new ArrayList<>();
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the ExpiryWheel class")
+  public class PositiveExpiryWheelTests {
+    @Test
+    void advanceExpiresDeparturesBeforeTheNewMinuteInOrder() {
+      wheel.schedule(departure(1, LocalTime.of(9, 30), 0));
+      wheel.schedule(departure(2, LocalTime.of(8, 15), 0));
+      wheel.schedule(departure(3, LocalTime.of(10, 0), 0));
+
+      advance(minute(0, 10, 0));
+
+      assertEquals(expired, List.of(2, 1));
+    }
+
+    @Test
+    void advanceExpiresDepartureInItsNewBucketAfterADelay() {
+      TrainDeparture trainDeparture = departure(1, LocalTime.of(9, 0), 0);
+      wheel.schedule(trainDeparture);
+      trainDeparture.setDelay(LocalTime.of(2, 0));
+      wheel.schedule(trainDeparture);
+
+      advance(minute(0, 10, 0));
+      assertEquals(expired, List.of());
+
+      advance(minute(0, 11, 1));
+      assertEquals(expired, List.of(1));
+    }
+
+    @Test
+    void advanceKeepsDepartureDelayedPastMidnightUntilTheNextDay() {
+      TrainDeparture trainDeparture = departure(1, LocalTime.of(23, 0), 0);
+      wheel.schedule(trainDeparture);
+      trainDeparture.setDelay(LocalTime.of(2, 0));
+      wheel.schedule(trainDeparture);
+
+      advance(minute(1, 0, 0));
+      assertEquals(expired, List.of());
+
+      advance(minute(1, 1, 1));
+      assertEquals(expired, List.of(1));
+    }
+
+    @Test
+    void advanceExpiresDeparturesOfLaterDaysInReusedDaySlots() {
+      wheel.schedule(departure(1, LocalTime.of(9, 0), 1));
+      advance(minute(1, 0, 0));
+      wheel.schedule(departure(2, LocalTime.of(9, 0), 2));
+
+      advance(minute(2, 12, 0));
+
+      assertEquals(expired, List.of(1, 2));
+    }
+
+    @Test
+    void advanceExpiresOverdueDepartures() {
+      TrainDeparture trainDeparture = departure(1, LocalTime.of(8, 30), 0);
+      trainDeparture.setDelay(LocalTime.of(1, 0));
+      wheel.schedule(trainDeparture);
+      advance(minute(0, 9, 0));
+      trainDeparture.setDelay(LocalTime.of(0, 0));
+      wheel.schedule(trainDeparture);
+
+      advance(minute(0, 9, 0));
+
+      assertEquals(expired, List.of(1));
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the ExpiryWheel class")
+  public class NegativeExpiryWheelTests {
+    @Test
+    void advanceDoesNotExpireDeparturesAtTheNewMinute() {
+      wheel.schedule(departure(1, LocalTime.of(9, 0), 0));
+
+      advance(minute(0, 9, 0));
+
+      assertEquals(expired, List.of());
+    }
+
+    @Test
+    void advanceDoesNotExpireTheSameEntryTwice() {
+      wheel.schedule(departure(1, LocalTime.of(9, 0), 0));
+
+      advance(minute(0, 9, 30));
+      advance(minute(0, 10, 0));
+
+      assertEquals(expired, List.of(1));
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+  private LatencyHistogram histogram;
+
+  @BeforeEach
+  void setUp() {
+    histogram = new LatencyHistogram();
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the LatencyHistogram class")
+  public class PositiveLatencyHistogramTests {
+    @Test
+    void smallLatenciesAreExact() {
+      for (long nanos = 1; nanos <= 7; nanos++) {
+        histogram.record(nanos);
+      }
+
+      assertEquals(histogram.count(), 7);
+      assertEquals(histogram.percentile(0.5), 4);
+      assertEquals(histogram.percentile(1), 7);
+    }
+
+    @Test
+    void percentilesAreWithinOneBucket() {
+      for (int i = 0; i < 990; i++) {
+        histogram.record(1_000);
+      }
+      for (int i = 0; i < 10; i++) {
+        histogram.record(1_000_000);
+      }
+
+      long p50 = histogram.percentile(0.5);
+      long p999 = histogram.percentile(0.999);
+      assertTrue(p50 >= 1_000 && p50 <= 1_125);
+      assertTrue(p999 >= 1_000_000 && p999 <= 1_125_000);
+      assertEquals(histogram.percentile(0.99), p50);
+    }
+
+    @Test
+    void bucketsHoldTheirHighestValue() {
+      for (long nanos : new long[] {0, 8, 9, 17, 1_000, 123_456_789, Long.MAX_VALUE}) {
+        int bucket = LatencyHistogram.bucket(nanos);
+        assertTrue(LatencyHistogram.highestValue(bucket) >= nanos);
+        assertTrue(bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < nanos);
+      }
+    }
+
+    @Test
+    void resetForgetsEveryLatency() {
+      histogram.record(100);
+      histogram.reset();
+
+      assertEquals(histogram.count(), 0);
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the LatencyHistogram class")
+  public class NegativeLatencyHistogramTests {
+    @Test
+    void percentileIsZeroWithoutLatencies() {
+      assertEquals(histogram.percentile(0.99), 0);
+    }
+
+    @Test
+    void negativeLatenciesAreCountedAsZero() {
+      histogram.record(-5);
+
+      assertEquals(histogram.percentile(1), 0);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentTreeTest {
+  private PersistentTree<String> tree;
+
+  private static List<String> values(PersistentTree<String> tree) {
+    List<String> values = new ArrayList<>();
+    tree.forEach(values::add);
+    return values;
+  }
+
+  @BeforeEach
+  void setUp() {
+    tree = PersistentTree.<String>empty().put(20, "b").put(10, "a").put(30, "c");
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the PersistentTree class")
+  public class PositivePersistentTreeTests {
+    @Test
+    void iteratorGivesValuesInKeyOrder() {
+      assertEquals(values(tree), List.of("a", "b", "c"));
+      assertEquals(tree.size(), 3);
+    }
+
+    @Test
+    void changesLeaveTheOldTreeUnchanged() {
+      PersistentTree<String> changed = tree.remove(10).put(20, "x").put(40, "d");
+
+      assertEquals(values(tree), List.of("a", "b", "c"));
+      assertEquals(values(changed), List.of("x", "c", "d"));
+      assertEquals(changed.get(20), "x");
+    }
+
+    @Test
+    void manyChangesMatchATreeMap() {
+      Random random = new Random(42);
+      TreeMap<Long, String> expected = new TreeMap<>();
+      PersistentTree<String> actual = PersistentTree.empty();
+      for (int i = 0; i < 20_000; i++) {
+        long key = random.nextInt(2_000);
+        if (random.nextBoolean()) {
+          expected.put(key, "v" + i);
+          actual = actual.put(key, "v" + i);
+        } else {
+          expected.remove(key);
+          actual = actual.remove(key);
+        }
+      }
+
+      assertEquals(values(actual), new ArrayList<>(expected.values()));
+      assertEquals(actual.size(), expected.size());
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the PersistentTree class")
+  public class NegativePersistentTreeTests {
+    @Test
+    void getMissingKeyGivesNull() {
+      assertNull(tree.get(15));
+    }
+
+    @Test
+    void removeMissingKeyGivesTheSameTree() {
+      assertSame(tree.remove(15), tree);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistryEventStreamTest {
+  private Registry registry;
+  private RegistryEventStream events;
+  private RegistryEventStream.Subscriber subscriber;
+  private List<String> received;
+
+  @BeforeEach
+  void setUp() {
+    registry = new Registry();
+    events = new RegistryEventStream(4);
+    registry.setEventStream(events);
+    subscriber = events.subscribe();
+    received = new ArrayList<>();
+  }
+
+  private int poll() {
+    return subscriber.poll((sequence, type, trainDeparture, delay, track) ->
+            received.add(sequence + " " + type + " " + trainDeparture.getTrainNumber()
+                    + " " + delay + " " + track));
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the RegistryEventStream class")
+  public class PositiveRegistryEventStreamTests {
+    @Test
+    void pollReceivesEveryChangeInOrder() {
+      registry.addTrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 15), "Bergen", "L4", 1,
+              -1);
+      registry.assertAndSetDelay(1, LocalTime.of(0, 20));
+      registry.assertAndSetTrack(1, 3);
+      registry.setTimeOfDay(LocalTime.of(16, 0));
+
+      assertEquals(poll(), 4);
+      assertEquals(received, List.of(
+              "0 ADDED 1 00:15 -1",
+              "1 DELAY_CHANGED 1 00:20 -1",
+              "2 TRACK_CHANGED 1 00:20 3",
+              "3 EVICTED 1 00:20 3"));
+      assertEquals(subscriber.missed(), 0);
+    }
+
+    @Test
+    void pollOnlyReceivesNewEvents() {
+      registry.addTrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 0), "Bergen", "L4", 1, -1);
+      poll();
+      registry.addTrainDeparture(LocalTime.of(16, 30), LocalTime.of(0, 0), "Bergen", "L4", 2, -1);
+
+      assertEquals(subscriber.pending(), 1);
+      assertEquals(poll(), 1);
+      assertEquals(received.get(1), "1 ADDED 2 00:00 -1");
+    }
+
+    @Test
+    void batchAddPublishesAddedDepartures() {
+      registry.addTrainDepartures(List.of(
+              new TrainDeparture(LocalTime.of(9, 0), LocalTime.of(0, 0), "Oslo", "R1", 1, -1),
+              new TrainDeparture(LocalTime.of(9, 0), LocalTime.of(0, 0), "Oslo", "R1", 2, -1)),
+              (index, reason) -> { });
+
+      assertEquals(poll(), 1);
+    }
+
+    @Test
+    void concurrentSubscriberSeesEveryEventOrCountsItAsMissed() throws InterruptedException {
+      ConcurrentRegistry concurrentRegistry = new ConcurrentRegistry();
+      RegistryEventStream stream = new RegistryEventStream(64);
+      concurrentRegistry.setEventStream(stream);
+      RegistryEventStream.Subscriber concurrentSubscriber = stream.subscribe();
+      int changes = 20_000;
+      long[] last = {-1};
+      long[] handled = {0};
+
+      Thread reader = new Thread(() -> {
+        while (handled[0] + concurrentSubscriber.missed() < changes) {
+          concurrentSubscriber.poll((sequence, type, trainDeparture, delay, track) -> {
+            assertTrue(sequence > last[0]);
+            last[0] = sequence;
+            handled[0]++;
+          });
+        }
+      });
+      reader.start();
+      for (int trainNumber = 1; trainNumber <= changes; trainNumber++) {
+        concurrentRegistry.addTrainDeparture(LocalTime.of(0, 0), LocalTime.of(0, 0), "Bergen",
+                "L" + trainNumber, trainNumber, -1);
+      }
+      reader.join(10_000);
+
+      assertFalse(reader.isAlive());
+      assertEquals(handled[0] + concurrentSubscriber.missed(), changes);
+    }
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+      assertEquals(new RegistryEventStream(5).capacity(), 8);
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the RegistryEventStream class")
+  public class NegativeRegistryEventStreamTests {
+    @Test
+    void slowSubscriberSkipsOverwrittenEvents() {
+      for (int trainNumber = 1; trainNumber <= 6; trainNumber++) {
+        registry.addTrainDeparture(LocalTime.of(10, trainNumber), LocalTime.of(0, 0), "Bergen",
+                "L4", trainNumber, -1);
+      }
+
+      assertEquals(poll(), 4);
+      assertEquals(subscriber.missed(), 2);
+      assertTrue(received.get(0).startsWith("2 ADDED 3"));
+    }
+
+    @Test
+    void rejectedChangesPublishNothing() {
+      registry.addTrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 0), "Bergen", "L4", 1, -1);
+      poll();
+
+      assertThrows(IllegalArgumentException.class,
+              () -> registry.assertAndSetDelay(1, LocalTime.of(0, 0)));
+      assertEquals(poll(), 0);
+    }
+
+    @Test
+    void constructorWithNonPositiveCapacityThrows() {
+      assertThrows(IllegalArgumentException.class, () -> new RegistryEventStream(0));
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistryJournalTest {
+  @TempDir
+  Path directory;
+
+  private Path journalFile;
+  private Registry departures;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    journalFile = directory.resolve("registry.journal");
+    departures = new Registry();
+    departures.addTrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 15),
+            "Bergen", "L4", 1, -1);
+
+    try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+      departures.setJournal(journal);
+      departures.addTrainDeparture(LocalTime.of(11, 20), LocalTime.of(0, 5),
+              "Trondheim", "L3", 3, 2);
+      departures.addTrainDeparture(LocalTime.of(7, 20), LocalTime.of(0, 0),
+              "Kragerø", "L4", 4, 2);
+      departures.assertAndSetDelay(3, LocalTime.of(1, 0));
+      departures.assertAndSetTrack(1, 6);
+      departures.setTimeOfDay(LocalTime.of(8, 0));
+    }
+  }
+
+  private Registry replay() throws IOException {
+    Registry replayed = new Registry();
+    try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+      journal.replay(replayed);
+    }
+    return replayed;
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the RegistryJournal class")
+  public class PositiveRegistryJournalTests {
+    @Test
+    void replayRestoresDeparturesAndTimeOfDay() throws IOException {
+      Registry replayed = replay();
+
+      assertEquals(replayed.getTimeOfDay(), LocalTime.of(8, 0));
+      assertEquals(replayed.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(3, 1));
+      assertEquals(replayed.getTrainDepartureByTrainNumber(3).getDelay(), LocalTime.of(1, 0));
+      assertEquals(replayed.getTrainDepartureByTrainNumber(1).getTrack(), 6);
+    }
+
+    @Test
+    void setJournalWritesCheckpointOfCurrentState() throws IOException {
+      Registry replayed = replay();
+      try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+        replayed.setJournal(journal);
+      }
+
+      Registry checkpointed = replay();
+      assertEquals(checkpointed.getTimeOfDay(), LocalTime.of(8, 0));
+      assertEquals(checkpointed.getDepartures().size(), 2);
+    }
+
+    @Test
+    void replayAndCheckpointRestoreServiceDays() throws IOException {
+      Registry replayed = replay();
+      try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+        replayed.setJournal(journal);
+        replayed.addTrainDepartures(List.of(new TrainDeparture(LocalTime.of(6, 0),
+                LocalTime.MIN, "Oslo", "R1", 8, -1, 1)), (index, reason) -> fail(reason));
+        replayed.startServiceDay(1);
+      }
+
+      Registry restarted = replay();
+      assertEquals(restarted.getServiceDay(), 1);
+      assertEquals(restarted.getTrainDepartureByTrainNumber(8).getServiceDay(), 1);
+
+      try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+        restarted.setJournal(journal);
+      }
+      Registry checkpointed = replay();
+      assertEquals(checkpointed.getServiceDay(), 1);
+      assertEquals(checkpointed.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(8));
+    }
+
+    @Test
+    void replayRestoresDelayCascade() throws IOException {
+      Registry replayed = replay();
+      try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+        replayed.setJournal(journal);
+        replayed.addTrainDeparture(LocalTime.of(12, 0), LocalTime.MIN, "Voss", "L5", 5, 2);
+        replayed.propagateDelay(5, LocalTime.of(0, 20));
+      }
+
+      Registry restarted = replay();
+      assertEquals(restarted.getTrainDepartureByTrainNumber(5).getDelay(), LocalTime.of(0, 20));
+      assertEquals(restarted.getTrainDepartureByTrainNumber(3).getDelay(), LocalTime.of(1, 1));
+    }
+
+    @Test
+    void replayRestoresBulkChanges() throws IOException {
+      Registry replayed = replay();
+      try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+        replayed.setJournal(journal);
+        replayed.addDelay(DepartureSelection.all().destination("bergen")
+                .between(LocalTime.of(15, 0), LocalTime.of(16, 0)), LocalTime.of(0, 10));
+        replayed.moveToTrack(DepartureSelection.all().line("L3"), 4);
+      }
+
+      Registry restarted = replay();
+      assertEquals(restarted.getTrainDepartureByTrainNumber(1).getDelay(), LocalTime.of(0, 25));
+      assertEquals(restarted.getTrainDepartureByTrainNumber(3).getTrack(), 4);
+    }
+
+    @Test
+    void replayRestoresStringsLongerThanASignedShort() throws IOException {
+      String line = "L".repeat(40_000);
+      Registry replayed = replay();
+      try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+        replayed.setJournal(journal);
+        replayed.addTrainDeparture(LocalTime.of(20, 0), LocalTime.MIN, "Voss", line, 9, -1);
+        replayed.addDelay(DepartureSelection.all().line(line), LocalTime.of(0, 10));
+      }
+
+      Registry restarted = replay();
+      assertEquals(restarted.getTrainDepartureByTrainNumber(9).getLine(), line);
+      assertEquals(restarted.getTrainDepartureByTrainNumber(9).getDelay(), LocalTime.of(0, 10));
+    }
+
+    @Test
+    void replayRestoresAssignedTracks() throws IOException {
+      Registry replayed = replay();
+      try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+        replayed.setJournal(journal);
+        replayed.addTrainDeparture(LocalTime.of(16, 0), LocalTime.MIN, "Voss", "L5", 5, -1);
+        replayed.assertAndSetTrack(1, -1);
+        replayed.assignTracks(2, 30);
+      }
+
+      Registry restarted = replay();
+      assertEquals(restarted.getTrainDepartureByTrainNumber(1).getTrack(), 1);
+      assertEquals(restarted.getTrainDepartureByTrainNumber(5).getTrack(), 2);
+    }
+
+    @Test
+    void openRemovesPartlyWrittenRecord() throws IOException {
+      long length = Files.size(journalFile);
+      Files.write(journalFile, new byte[] {0, 0, 0, 9, 1, 2, 3}, StandardOpenOption.APPEND);
+
+      Registry replayed = replay();
+      assertEquals(replayed.getDepartures().size(), 2);
+      assertEquals(Files.size(journalFile), length);
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the RegistryJournal class")
+  public class NegativeRegistryJournalTests {
+    @Test
+    void appendDoesThrowOnStringTooLongForAJournal() throws IOException {
+      TrainDeparture trainDeparture = new TrainDeparture(LocalTime.of(20, 0), LocalTime.MIN,
+              "a".repeat(RegistryJournal.MAX_STRING_BYTES + 1), "L9", 9, -1);
+      try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+        assertThrows(IllegalArgumentException.class, () -> journal.appendAdd(trainDeparture));
+      }
+    }
+
+    @Test
+    void rejectedChangesAreNotJournaled() throws IOException {
+      Registry replayed = replay();
+      try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+        replayed.setJournal(journal);
+        assertThrows(IllegalArgumentException.class, () -> replayed.assertAndSetTrack(3, -5));
+        assertThrows(IllegalArgumentException.class, () -> replayed
+                .addTrainDeparture(LocalTime.of(7, 0), LocalTime.MIN, "Voss", "F1", 9, -1));
+      }
+
+      Registry again = replay();
+      assertEquals(again.getTrainDepartureByTrainNumber(3).getTrack(), 2);
+      assertEquals(again.getDepartures().size(), 2);
+    }
+
+    @Test
+    void changesTheJournalCanNotHoldAreRejectedBeforeTheRegistryChanges() throws IOException {
+      String destination = "a".repeat(RegistryJournal.MAX_STRING_BYTES + 1);
+      Registry replayed = replay();
+      try (RegistryJournal journal = RegistryJournal.open(journalFile)) {
+        replayed.setJournal(journal);
+        assertThrows(IllegalArgumentException.class, () -> replayed
+                .addTrainDeparture(LocalTime.of(20, 0), LocalTime.MIN, destination, "L9", 9, -1));
+        assertThrows(IllegalArgumentException.class, () -> replayed
+                .moveToTrack(DepartureSelection.all().destination(destination), 5));
+        List<String> rejected = new ArrayList<>();
+        assertEquals(replayed.addTrainDepartures(List.of(new TrainDeparture(LocalTime.of(20, 0),
+                LocalTime.MIN, destination, "L9", 9, -1)), (index, reason) -> rejected.add(reason)),
+                0);
+        assertEquals(rejected.size(), 1);
+      }
+
+      assertEquals(replayed.getDepartures().size(), 2);
+      assertEquals(replayed.getDeparturesByDestination(destination), List.of());
+      assertEquals(replay().getDepartures().size(), 2);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package edu.ntnu.stud;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalTime;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistryMetricsTest {
+  private Registry registry;
+  private RegistryMetrics metrics;
+
+  @BeforeEach
+  void setUp() {
+    registry = new Registry();
+    metrics = new RegistryMetrics();
+    registry.setMetrics(metrics);
+    registry.addTrainDeparture(LocalTime.of(12, 0), LocalTime.MIN, "Oslo", "L1", 1, 1);
+    registry.addTrainDeparture(LocalTime.of(13, 0), LocalTime.MIN, "Bergen", "L2", 2, -1);
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the RegistryMetrics class")
+  public class PositiveRegistryMetricsTests {
+    @Test
+    void operationsAreCounted() {
+      registry.getDepartures();
+      registry.assertAndSetDelay(1, LocalTime.of(0, 5));
+      registry.setTimeOfDay(LocalTime.of(11, 0));
+
+      assertEquals(metrics.getCount(RegistryMetrics.Operation.ADD_TRAIN_DEPARTURE), 2);
+      assertEquals(metrics.getCount(RegistryMetrics.Operation.GET_DEPARTURES), 1);
+      assertEquals(metrics.getCount(RegistryMetrics.Operation.SET_DELAY), 1);
+      assertEquals(metrics.getCount(RegistryMetrics.Operation.SET_TIME_OF_DAY), 1);
+      assertTrue(metrics.getPercentileNanos(RegistryMetrics.Operation.ADD_TRAIN_DEPARTURE,
+              0.99) > 0);
+    }
+
+    @Test
+    void rejectionsAreCountedByReason() {
+      assertThrows(IllegalArgumentException.class, () -> registry.addTrainDeparture(
+              LocalTime.of(12, 0), LocalTime.MIN, "Oslo", "L1", 3, -1));
+      assertThrows(IllegalArgumentException.class, () -> registry.assertAndSetTrack(9, 1));
+
+      assertEquals(metrics.getRejections(RegistryMetrics.Rejection.LINE_OCCUPIED), 1);
+      assertEquals(metrics.getRejections(RegistryMetrics.Rejection.TRAIN_NUMBER_MISSING), 1);
+      assertEquals(metrics.getRejections(RegistryMetrics.Rejection.TRACK_OCCUPIED), 0);
+      assertEquals(metrics.getCount(RegistryMetrics.Operation.ADD_TRAIN_DEPARTURE), 3);
+    }
+
+    @Test
+    void invalidArgumentsAreCountedOnce() {
+      assertThrows(IllegalArgumentException.class, () -> registry.addTrainDeparture(
+              LocalTime.of(14, 0), LocalTime.MIN, " ", "L3", 3, -1));
+      assertThrows(IllegalArgumentException.class, () -> registry.assertAndSetTrack(2, 0));
+      assertThrows(IllegalArgumentException.class, () -> registry.addTrainDeparture(
+              LocalTime.of(14, 0), LocalTime.MIN, "Oslo", "L3", 1, -1));
+
+      assertEquals(metrics.getRejections(RegistryMetrics.Rejection.INVALID_ARGUMENT), 2);
+      assertEquals(metrics.getRejections(RegistryMetrics.Rejection.TRAIN_NUMBER_EXISTS), 1);
+    }
+
+    @Test
+    void sizesAreReadFromTheRegistry() {
+      assertEquals(metrics.getSize(RegistryMetrics.Size.DEPARTURES), 2);
+      assertEquals(metrics.getSize(RegistryMetrics.Size.DESTINATIONS), 2);
+      assertEquals(metrics.getSize(RegistryMetrics.Size.LINES), 2);
+      assertEquals(metrics.getSize(RegistryMetrics.Size.TRACKS), 1);
+    }
+
+    @Test
+    void resetForgetsLatenciesAndRejections() {
+      assertThrows(IllegalArgumentException.class,
+              () -> registry.assertUniqueDepartureScheduling(LocalTime.of(12, 0), "L1", 1));
+      metrics.reset();
+
+      assertEquals(metrics.getCount(RegistryMetrics.Operation.ADD_TRAIN_DEPARTURE), 0);
+      assertEquals(metrics.getRejections(RegistryMetrics.Rejection.LINE_OCCUPIED), 0);
+      assertEquals(metrics.getSize(RegistryMetrics.Size.DEPARTURES), 2);
+    }
+
+    @Test
+    void concurrentRegistryRecordsMetrics() {
+      Registry concurrent = new ConcurrentRegistry();
+      RegistryMetrics concurrentMetrics = new RegistryMetrics();
+      concurrent.setMetrics(concurrentMetrics);
+      concurrent.addTrainDeparture(LocalTime.of(12, 0), LocalTime.MIN, "Oslo", "L1", 1, 1);
+      concurrent.getNextDepartures(5, LocalTime.MIN);
+
+      assertEquals(concurrentMetrics.getCount(RegistryMetrics.Operation.GET_NEXT_DEPARTURES), 1);
+      assertEquals(concurrentMetrics.getSize(RegistryMetrics.Size.DEPARTURES), 1);
+    }
+
+    @Test
+    void metricsAreReadOverJmx() throws Exception {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(RegistryMetrics.OBJECT_NAME);
+      metrics.register();
+      try {
+        TabularData counts = (TabularData) server.getAttribute(name, "OperationCounts");
+        TabularData sizes = (TabularData) server.getAttribute(name, "Sizes");
+
+        assertEquals(counts.get(new Object[] {"ADD_TRAIN_DEPARTURE"}).get("value"), 2L);
+        assertEquals(sizes.get(new Object[] {"DEPARTURES"}).get("value"), 2);
+      } finally {
+        metrics.unregister();
+      }
+      assertFalse(server.isRegistered(name));
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the RegistryMetrics class")
+  public class NegativeRegistryMetricsTests {
+    @Test
+    void detachedMetricsStopRecording() {
+      registry.setMetrics(null);
+      registry.getDepartures();
+
+      assertEquals(metrics.getCount(RegistryMetrics.Operation.GET_DEPARTURES), 0);
+    }
+
+    @Test
+    void sizesAreZeroWithoutARegistry() {
+      assertEquals(new RegistryMetrics().getSize(RegistryMetrics.Size.DEPARTURES), 0);
+    }
+
+    @Test
+    void registerTwiceDoesThrow() throws Exception {
+      metrics.register();
+      try {
+        assertThrows(JMException.class, () -> new RegistryMetrics().register());
+      } finally {
+        metrics.unregister();
+      }
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistryNetworkTest {
+  private static final int STATION_COUNT = 12;
+
+  private ForkJoinPool pool;
+  private RegistryNetwork network;
+
+  @BeforeEach
+  void setUp() {
+    pool = new ForkJoinPool(4);
+    network = new RegistryNetwork(pool);
+    for (int station = 0; station < STATION_COUNT; station++) {
+      network.addStation("Station " + station, new Registry());
+      network.addTrainDeparture("Station " + station, LocalTime.of(8 + station, 0),
+              LocalTime.of(0, 0), station % 2 == 0 ? "Bergen" : "Oslo", "L1", station + 1, -1);
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    pool.shutdown();
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the RegistryNetwork class")
+  public class PositiveRegistryNetworkTests {
+    @Test
+    void getTrainDepartureByTrainNumberFindsTheDepartureOnItsStation() {
+      TrainDeparture trainDeparture = network.getTrainDepartureByTrainNumber(5);
+
+      assertEquals(trainDeparture.getDepartureTime(), LocalTime.of(12, 0));
+      assertEquals(network.getStation("Station 4").getTrainDepartureByTrainNumber(5)
+              .getDepartureTime(), trainDeparture.getDepartureTime());
+    }
+
+    @Test
+    void getDeparturesMergesEveryStationByTime() {
+      List<TrainDeparture> departures = network.getDepartures();
+
+      assertEquals(departures.size(), STATION_COUNT);
+      for (int i = 0; i < STATION_COUNT; i++) {
+        assertEquals(departures.get(i).getTrainNumber(), i + 1);
+      }
+    }
+
+    @Test
+    void getDeparturesByDestinationMergesMatchingStations() {
+      List<TrainDeparture> departures = network.getDeparturesByDestinationIgnoreCase("oslo");
+
+      assertEquals(departures.size(), STATION_COUNT / 2);
+      assertEquals(departures.get(0).getTrainNumber(), 2);
+      assertEquals(network.getDeparturesByDestination("Bergen").size(), STATION_COUNT / 2);
+    }
+
+    @Test
+    void setTimeOfDayAdvancesEveryStation() {
+      network.setTimeOfDay(LocalTime.of(12, 30));
+
+      assertEquals(network.getTimeOfDay(), LocalTime.of(12, 30));
+      for (String name : network.getStationNames()) {
+        assertEquals(network.getStation(name).getTimeOfDay(), LocalTime.of(12, 30));
+      }
+      assertEquals(network.getDepartures().size(), STATION_COUNT - 5);
+    }
+
+    @Test
+    void changesAreRoutedToTheStationOfTheTrainNumber() {
+      network.assertAndSetDelay(3, LocalTime.of(0, 10));
+      network.assertAndSetTrack(3, 2);
+
+      TrainDeparture trainDeparture = network.getStation("Station 2")
+              .getTrainDepartureByTrainNumber(3);
+      assertEquals(trainDeparture.getDelay(), LocalTime.of(0, 10));
+      assertEquals(trainDeparture.getTrack(), 2);
+    }
+
+    @Test
+    void getTrainDepartureByTrainNumberReturnsACopyOfTheLatestVersion() {
+      TrainDeparture before = network.getTrainDepartureByTrainNumber(4);
+      network.assertAndSetDelay(4, LocalTime.of(0, 10));
+
+      assertEquals(before.getDelay(), LocalTime.MIN);
+      assertEquals(network.getTrainDepartureByTrainNumber(4).getDelay(), LocalTime.of(0, 10));
+    }
+
+    @Test
+    void trainNumberOfADepartureThatLeftCanBeUsedAgain() {
+      network.setTimeOfDay(LocalTime.of(9, 0));
+      network.addTrainDeparture("Station 5", LocalTime.of(20, 0), LocalTime.of(0, 0), "Oslo",
+              "L2", 1, -1);
+
+      assertEquals(network.getTrainDepartureByTrainNumber(1).getLine(), "L2");
+      assertEquals(network.getStation("Station 5").getTrainDepartureByTrainNumber(1).getLine(),
+              "L2");
+    }
+
+    @Test
+    void departuresThatLeftAreForgottenWhenTheTimeAdvances() {
+      network.assertAndSetDelay(1, LocalTime.of(3, 0));
+      network.setTimeOfDay(LocalTime.of(10, 30));
+
+      assertEquals(network.size(), STATION_COUNT - 2);
+      assertEquals(network.getTrainDepartureByTrainNumber(1).getDelay(), LocalTime.of(3, 0));
+
+      network.startServiceDay(1);
+      assertEquals(network.size(), 0);
+    }
+
+    @Test
+    void getStationReturnsTheLatestVersionOfTheStation() {
+      RegistryVersion before = network.getStation("Station 3");
+      network.addTrainDeparture("Station 3", LocalTime.of(20, 0), LocalTime.of(0, 0), "Oslo",
+              "L2", 20, -1);
+
+      assertEquals(before.size(), 1);
+      assertEquals(network.getStation("Station 3").size(), 2);
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the RegistryNetwork class")
+  public class NegativeRegistryNetworkTests {
+    @Test
+    void addTrainDepartureWithTrainNumberOfAnotherStationThrows() {
+      assertThrows(IllegalArgumentException.class, () -> network.addTrainDeparture("Station 0",
+              LocalTime.of(22, 0), LocalTime.of(0, 0), "Oslo", "L9", 12, -1));
+    }
+
+    @Test
+    void addStationWithUsedNameOrOtherTimeThrows() {
+      Registry late = new Registry();
+      late.setTimeOfDay(LocalTime.of(10, 0));
+
+      assertThrows(IllegalArgumentException.class,
+              () -> network.addStation("Station 0", new Registry()));
+      assertThrows(IllegalArgumentException.class, () -> network.addStation("Late", late));
+    }
+
+    @Test
+    void getTrainDepartureThatLeftThrows() {
+      network.setTimeOfDay(LocalTime.of(9, 0));
+
+      assertThrows(IllegalArgumentException.class,
+              () -> network.getTrainDepartureByTrainNumber(1));
+    }
+
+    @Test
+    void setTimeOfDayBeforeCurrentTimeThrows() {
+      network.setTimeOfDay(LocalTime.of(9, 0));
+
+      assertThrows(IllegalArgumentException.class,
+              () -> network.setTimeOfDay(LocalTime.of(8, 0)));
+    }
+
+    @Test
+    void getStationThatDoesNotExistThrows() {
+      assertThrows(IllegalArgumentException.class, () -> network.getStation("Nowhere"));
+    }
+  }
+}
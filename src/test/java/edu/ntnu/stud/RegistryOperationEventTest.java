@@ -0,0 +1,127 @@
+package edu.ntnu.stud;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistryOperationEventTest {
+  private static final String EVENT_NAME = "edu.ntnu.stud.RegistryOperation";
+
+  private Registry registry;
+
+  @BeforeEach
+  void setUp() {
+    registry = new Registry();
+    registry.addTrainDeparture(LocalTime.of(12, 0), LocalTime.MIN, "Oslo", "L1", 1, 1);
+  }
+
+  private List<RecordedEvent> record(Recording recording, Runnable operations) throws Exception {
+    recording.start();
+    operations.run();
+    recording.stop();
+    Path file = Files.createTempFile("registry", ".jfr");
+    try {
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file).stream()
+              .filter(event -> event.getEventType().getName().equals(EVENT_NAME))
+              .toList();
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the RegistryOperationEvent class")
+  public class PositiveRegistryOperationEventTests {
+    @Test
+    void operationsAreRecordedWithTrainNumberSizeAndOutcome() throws Exception {
+      try (Recording recording = new Recording()) {
+        recording.enable(RegistryOperationEvent.class);
+        List<RecordedEvent> events = record(recording, () -> {
+          registry.addTrainDeparture(LocalTime.of(13, 0), LocalTime.MIN, "Bergen", "L2", 2, -1);
+          registry.getDepartures();
+        });
+
+        assertEquals(events.size(), 2);
+        RecordedEvent added = events.get(0);
+        assertEquals(added.getString("operation"), "ADD_TRAIN_DEPARTURE");
+        assertEquals(added.getInt("trainNumber"), 2);
+        assertEquals(added.getInt("registrySize"), 2);
+        assertEquals(added.getString("outcome"), "OK");
+        assertEquals(events.get(1).getString("operation"), "GET_DEPARTURES");
+        assertEquals(events.get(1).getInt("trainNumber"), 0);
+      }
+    }
+
+    @Test
+    void rejectedOperationsAreRecordedWithTheReason() throws Exception {
+      try (Recording recording = new Recording()) {
+        recording.enable(RegistryOperationEvent.class);
+        List<RecordedEvent> events = record(recording, () ->
+                assertThrows(IllegalArgumentException.class,
+                        () -> registry.assertAndSetDelay(9, LocalTime.MIN)));
+
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0).getString("operation"), "SET_DELAY");
+        assertEquals(events.get(0).getInt("trainNumber"), 9);
+        assertTrue(events.get(0).getString("outcome").startsWith("Rejected: "));
+      }
+    }
+
+    @Test
+    void destinationTrackAndLineQueriesAreRecorded() throws Exception {
+      try (Recording recording = new Recording()) {
+        recording.enable(RegistryOperationEvent.class);
+        List<RecordedEvent> events = record(recording, () -> {
+          registry.getDeparturesByDestination("Oslo");
+          registry.getDeparturesByDestinationPrefix("Os");
+          registry.getNextDeparturesOnTrack(5, LocalTime.MIN, 1);
+          registry.getNextDeparturesOnLine(5, LocalTime.MIN, "L1");
+        });
+
+        assertEquals(events.stream().map(event -> event.getString("operation")).toList(),
+                List.of("GET_DEPARTURES_BY_DESTINATION", "SEARCH_DESTINATION_PREFIX",
+                        "GET_NEXT_DEPARTURES_ON_TRACK", "GET_NEXT_DEPARTURES_ON_LINE"));
+      }
+    }
+
+    @Test
+    void isRecordedOnlyWhileARecordingEnablesTheEvent() throws Exception {
+      try (Recording recording = new Recording()) {
+        recording.enable(RegistryOperationEvent.class);
+        recording.start();
+        assertTrue(RegistryOperationEvent.isRecorded());
+        recording.stop();
+      }
+      assertFalse(RegistryOperationEvent.isRecorded());
+    }
+
+    @Test
+    void outcomeTellsRejectionsFromFailures() {
+      assertEquals(RegistryOperationEvent.outcome(null), "OK");
+      assertEquals(RegistryOperationEvent.outcome(new IllegalArgumentException("taken")),
+              "Rejected: taken");
+      assertTrue(RegistryOperationEvent.outcome(new IllegalStateException()).startsWith("Failed"));
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the RegistryOperationEvent class")
+  public class NegativeRegistryOperationEventTests {
+    @Test
+    void operationsAreNotRecordedUnlessEnabled() throws Exception {
+      try (Recording recording = new Recording()) {
+        List<RecordedEvent> events = record(recording, () -> registry.getDepartures());
+
+        assertTrue(events.isEmpty());
+      }
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistrySnapshotTest {
+  @TempDir
+  Path directory;
+
+  private Path snapshotFile;
+  private Registry departures;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    snapshotFile = directory.resolve("registry.snapshot");
+    departures = new Registry();
+    departures.addTrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 15),
+            "Bergen", "L4", 1, -1);
+    departures.addTrainDeparture(LocalTime.of(11, 20), LocalTime.of(0, 5),
+            "Trondheim", "B3", 2, -1);
+    departures.addTrainDeparture(LocalTime.of(11, 20), LocalTime.of(0, 5),
+            "Trondheim", "L3", 3, 2);
+    departures.addTrainDeparture(LocalTime.of(7, 20), LocalTime.of(0, 0),
+            "Kragerø", "L4", 4, 2);
+    departures.setTimeOfDay(LocalTime.of(8, 0));
+    departures.writeSnapshot(snapshotFile);
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the RegistrySnapshot class")
+  public class PositiveRegistrySnapshotTests {
+    @Test
+    void readRestoresDeparturesAndTimeOfDay() throws IOException {
+      Registry restored = RegistrySnapshot.read(snapshotFile);
+
+      assertEquals(restored.getTimeOfDay(), LocalTime.of(8, 0));
+      assertEquals(restored.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(2, 3, 1));
+      assertEquals(restored.getTrainDepartureByTrainNumber(1).getDelay(), LocalTime.of(0, 15));
+      assertEquals(restored.getTrainDepartureByTrainNumber(3).getTrack(), 2);
+      assertEquals(restored.getDeparturesByDestinationPrefix("tro").size(), 2);
+    }
+
+    @Test
+    void readRestoresServiceDays() throws IOException {
+      departures.addTrainDepartures(List.of(new TrainDeparture(LocalTime.of(6, 0),
+              LocalTime.MIN, "Oslo", "R1", 8, -1, 1)), (index, reason) -> fail(reason));
+      departures.startServiceDay(1);
+      departures.writeSnapshot(snapshotFile);
+
+      Registry restored = RegistrySnapshot.read(snapshotFile);
+
+      assertEquals(restored.getServiceDay(), 1);
+      assertEquals(restored.getTrainDepartureByTrainNumber(8).getServiceDay(), 1);
+      restored.setTimeOfDay(LocalTime.of(6, 1));
+      assertEquals(restored.getDepartures().size(), 0);
+    }
+
+    @Test
+    void readSharesStringsBetweenDepartures() throws IOException {
+      Registry restored = RegistrySnapshot.read(snapshotFile);
+
+      assertSame(restored.getTrainDepartureByTrainNumber(2).getDestination(),
+              restored.getTrainDepartureByTrainNumber(3).getDestination());
+    }
+
+    @Test
+    void readRestoresStringsLongerThanASignedShort() throws IOException {
+      String destination = "Ø".repeat(20_000);
+      departures.addTrainDeparture(LocalTime.of(20, 0), LocalTime.MIN, destination, "L9", 9, -1);
+      departures.writeSnapshot(snapshotFile);
+
+      Registry restored = RegistrySnapshot.read(snapshotFile);
+      assertEquals(restored.getTrainDepartureByTrainNumber(9).getDestination(), destination);
+    }
+
+    @Test
+    void restoredRegistryStillValidatesNewDepartures() throws IOException {
+      Registry restored = RegistrySnapshot.read(snapshotFile);
+
+      assertThrows(IllegalArgumentException.class, () -> restored
+              .addTrainDeparture(LocalTime.of(11, 25), LocalTime.MIN, "Voss", "L3", 9, -1));
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the RegistrySnapshot class")
+  public class NegativeRegistrySnapshotTests {
+    @Test
+    void writeDoesThrowOnStringTooLongForASnapshot() {
+      departures.addTrainDeparture(LocalTime.of(20, 0), LocalTime.MIN,
+              "a".repeat(RegistrySnapshot.MAX_STRING_BYTES + 1), "L9", 9, -1);
+      assertThrows(IOException.class, () -> departures.writeSnapshot(snapshotFile));
+    }
+
+    @Test
+    void readDoesThrowOnFileThatIsNotASnapshot() throws IOException {
+      Path other = directory.resolve("other");
+      Files.writeString(other, "15:30,00:15,Bergen,L4,1,-1");
+      assertThrows(IOException.class, () -> RegistrySnapshot.read(other));
+    }
+
+    @Test
+    void readDoesThrowOnTruncatedSnapshot() throws IOException {
+      byte[] bytes = Files.readAllBytes(snapshotFile);
+      Files.write(snapshotFile, Arrays.copyOf(bytes, bytes.length - 3));
+      assertThrows(IOException.class, () -> RegistrySnapshot.read(snapshotFile));
+    }
+
+    @Test
+    void readDoesThrowIntoRegistryThatIsNotEmpty() {
+      assertThrows(IllegalArgumentException.class,
+              () -> RegistrySnapshot.read(snapshotFile, departures));
+    }
+  }
+}
@@ -3,6 +3,8 @@ package edu.ntnu.stud;
 import org.junit.jupiter.api.*;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -47,6 +49,31 @@ class RegistryTest {
       assertEquals(departures.getDeparturesByDestination("Trondheim").size(), 2);
     }
 
+    @Test
+    void getDeparturesByDestinationIsCaseSensitive() {
+      assertTrue(departures.getDeparturesByDestination("trondheim").isEmpty());
+    }
+
+    @Test
+    void getDeparturesByDestinationIgnoreCaseEqualsRightSize() {
+      assertEquals(departures.getDeparturesByDestinationIgnoreCase("tRONDHEIM").size(), 2);
+    }
+
+    @Test
+    void getDeparturesByDestinationPrefixIsSortedByFinalDepartureTime() {
+      departures.addTrainDeparture(LocalTime.of(9, 0), LocalTime.of(0, 0),
+              "Tromsø", "F1", 5, -1);
+      assertEquals(departures.getDeparturesByDestinationPrefix("tro").stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(5, 2, 3));
+    }
+
+    @Test
+    void getDeparturesByDestinationPrefixFollowsDelay() {
+      departures.assertAndSetDelay(2, LocalTime.of(1, 0));
+      assertEquals(departures.getDeparturesByDestinationPrefix("Trond").stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(3, 2));
+    }
+
     @Test
     void getTrainDepartureByTrainNumberGiveCorrectTrainDeparture() {
       TrainDeparture departure = departures.getTrainDepartureByTrainNumber(1);
@@ -77,6 +104,250 @@ class RegistryTest {
       assertEquals(departures.getDepartures().size(), 1);
     }
 
+    @Test
+    void getDeparturesIsSortedByFinalDepartureTime() {
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(4, 2, 3, 1));
+    }
+
+    @Test
+    void assertAndSetDelayReordersDepartures() {
+      departures.assertAndSetDelay(4, LocalTime.of(9, 0));
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(2, 3, 1, 4));
+    }
+
+    @Test
+    void setTimeOfDayKeepsDepartureDelayedPastNewTime() {
+      departures.assertAndSetDelay(4, LocalTime.of(5, 0));
+      departures.setTimeOfDay(LocalTime.of(12, 0));
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(4, 1));
+    }
+
+    @Test
+    void setTimeOfDayKeepsDepartureDelayedPastMidnightLast() {
+      departures.assertAndSetDelay(1, LocalTime.of(9, 0));
+      departures.setTimeOfDay(LocalTime.of(8, 0));
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(2, 3, 1));
+    }
+
+    @Test
+    void startServiceDayRemovesTheRestOfTheDayButNotNightServices() {
+      departures.assertAndSetDelay(1, LocalTime.of(9, 0));
+      departures.startServiceDay(1);
+      assertEquals(departures.getServiceDay(), 1);
+      assertEquals(departures.getTimeOfDay(), LocalTime.MIN);
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(1));
+
+      departures.setTimeOfDay(LocalTime.of(0, 31));
+      assertEquals(departures.getDepartures().size(), 0);
+    }
+
+    @Test
+    void assignTracksPlacesEveryUnassignedDeparture() {
+      List<TrainDeparture> unplaced = departures.assignTracks(2, 5);
+
+      assertTrue(unplaced.isEmpty());
+      assertEquals(departures.getTrainDepartureByTrainNumber(1).getTrack(), 1);
+      assertEquals(departures.getTrainDepartureByTrainNumber(2).getTrack(), 1);
+      assertEquals(departures.getTrainDepartureByTrainNumber(3).getTrack(), 2);
+    }
+
+    @Test
+    void propagateDelayPushesTheTrainOnTheSameTrack() {
+      List<TrainDeparture> delayed = departures.propagateDelay(4, LocalTime.of(4, 5));
+
+      assertEquals(delayed.stream().map(TrainDeparture::getTrainNumber).toList(), List.of(4, 3));
+      assertEquals(departures.getTrainDepartureByTrainNumber(3).getDelay(), LocalTime.of(0, 6));
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(2, 4, 3, 1));
+    }
+
+    @Test
+    void propagateDelayPushesTrainsOnTheSameLineAndTrackInTurn() {
+      departures.addTrainDeparture(LocalTime.of(11, 26), LocalTime.of(0, 0),
+              "Trondheim", "L3", 5, 1);
+      departures.addTrainDeparture(LocalTime.of(11, 27), LocalTime.of(0, 0),
+              "Voss", "L5", 6, 1);
+
+      List<TrainDeparture> delayed = departures.propagateDelay(4, LocalTime.of(4, 5));
+
+      assertEquals(delayed.stream().map(TrainDeparture::getTrainNumber).toList(),
+              List.of(4, 3, 5, 6));
+      assertEquals(departures.getTrainDepartureByTrainNumber(6).getDelay(), LocalTime.of(0, 1));
+      assertDoesNotThrow(() -> departures.addTrainDeparture(LocalTime.of(11, 26),
+              LocalTime.of(0, 0), "Voss", "L7", 7, 1));
+    }
+
+    @Test
+    void addDelayDelaysEveryDepartureOnALine() {
+      List<TrainDeparture> delayed = departures.addDelay(DepartureSelection.all().line("L4"),
+              LocalTime.of(0, 20));
+
+      assertEquals(delayed.stream().map(TrainDeparture::getTrainNumber).toList(), List.of(4, 1));
+      assertEquals(departures.getTrainDepartureByTrainNumber(4).getDelay(), LocalTime.of(0, 20));
+      assertEquals(departures.getTrainDepartureByTrainNumber(1).getDelay(), LocalTime.of(0, 35));
+    }
+
+    @Test
+    void addDelayOnlyDelaysDeparturesInTheWindow() {
+      List<TrainDeparture> delayed = departures.addDelay(DepartureSelection.all()
+              .destination("trondheim").between(LocalTime.of(11, 0), LocalTime.of(12, 0)),
+              LocalTime.of(0, 10));
+
+      assertEquals(delayed.stream().map(TrainDeparture::getTrainNumber).toList(), List.of(2, 3));
+      assertEquals(departures.getTrainDepartureByTrainNumber(3).getDelay(), LocalTime.of(0, 15));
+      assertEquals(departures.getTrainDepartureByTrainNumber(1).getDelay(), LocalTime.of(0, 15));
+    }
+
+    @Test
+    void addDelayMovesDeparturesIntoSlotsTheSelectionLeaves() {
+      departures.addTrainDeparture(LocalTime.of(7, 40), LocalTime.of(0, 0), "Kragerø", "L4", 5, 2);
+
+      departures.addDelay(DepartureSelection.all().line("L4")
+              .between(LocalTime.of(7, 0), LocalTime.of(8, 0)), LocalTime.of(0, 20));
+
+      assertEquals(departures.getTrainDepartureByTrainNumber(4).getDelay(), LocalTime.of(0, 20));
+      assertEquals(departures.getTrainDepartureByTrainNumber(5).getDelay(), LocalTime.of(0, 20));
+    }
+
+    @Test
+    void moveToTrackMovesEveryDepartureOnATrack() {
+      List<TrainDeparture> moved = departures.moveToTrack(DepartureSelection.all().track(2), 5);
+
+      assertEquals(moved.stream().map(TrainDeparture::getTrainNumber).toList(), List.of(4, 3));
+      assertEquals(departures.getTrainDepartureByTrainNumber(3).getTrack(), 5);
+      assertDoesNotThrow(() -> departures.assertAndSetTrack(2, 2));
+    }
+
+    @Test
+    void getNextDeparturesGivesTheFirstDeparturesFromATime() {
+      assertEquals(departures.getNextDepartures(2, LocalTime.of(11, 0)).stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(2, 3));
+      assertEquals(departures.getNextDepartures(10, LocalTime.of(11, 25)).stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(2, 3, 1));
+    }
+
+    @Test
+    void getNextDeparturesOnTrackAndLineFollowChanges() {
+      departures.assertAndSetTrack(3, 5);
+      departures.assertAndSetDelay(4, LocalTime.of(1, 0));
+
+      assertEquals(departures.getNextDeparturesOnTrack(5, LocalTime.of(0, 0), 2).stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(4));
+      assertEquals(departures.getNextDeparturesOnLine(5, LocalTime.of(8, 0), "L4").stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(4, 1));
+    }
+
+    @Test
+    void queryCombinesEveryCriterion() {
+      Registry.Page page = departures.query(DepartureSelection.all().destination("trondheim")
+              .line("L3").track(2).between(LocalTime.of(11, 0), LocalTime.of(12, 0))
+              .delayedOnly(), 0, 10);
+
+      assertEquals(page.departures().stream().map(TrainDeparture::getTrainNumber).toList(),
+              List.of(3));
+      assertFalse(page.hasMore());
+    }
+
+    @Test
+    void queryGivesPagesInTimeOrder() {
+      Registry.Page first = departures.query(DepartureSelection.all(), 0, 3);
+      Registry.Page second = departures.query(DepartureSelection.all(), 3, 3);
+
+      assertEquals(first.departures().stream().map(TrainDeparture::getTrainNumber).toList(),
+              List.of(4, 2, 3));
+      assertTrue(first.hasMore());
+      assertEquals(second.departures().stream().map(TrainDeparture::getTrainNumber).toList(),
+              List.of(1));
+      assertFalse(second.hasMore());
+    }
+
+    @Test
+    void queryFindsUnassignedDepartures() {
+      assertEquals(departures.query(DepartureSelection.all().unassignedOnly(), 0, 10)
+              .departures().stream().map(TrainDeparture::getTrainNumber).toList(), List.of(2, 1));
+    }
+
+    @Test
+    void planQueryChoosesTheMostSelectiveIndex() {
+      for (int trainNumber = 10; trainNumber < 40; trainNumber++) {
+        departures.addTrainDeparture(LocalTime.of(8, trainNumber), LocalTime.MIN, "Oslo",
+                "R" + trainNumber, trainNumber, trainNumber % 3 + 6);
+      }
+
+      assertEquals(departures.planQuery(DepartureSelection.all().line("R12").track(7))
+              .index(), Registry.QueryIndex.LINE);
+      assertEquals(departures.planQuery(DepartureSelection.all().destination("oslo").track(7))
+              .index(), Registry.QueryIndex.TRACK);
+      assertEquals(departures.planQuery(DepartureSelection.all().destination("oslo")
+              .between(LocalTime.of(15, 0), LocalTime.of(16, 0))).index(),
+              Registry.QueryIndex.TIME);
+    }
+
+    @Test
+    void addTrainDeparturesLoadsTheNextServiceDay() {
+      int added = departures.addTrainDepartures(List.of(
+              new TrainDeparture(LocalTime.of(7, 20), LocalTime.MIN, "Kragerø", "L4", 9, 2, 1)),
+              (index, reason) -> fail(reason));
+
+      assertEquals(added, 1);
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(4, 2, 3, 1, 9));
+      departures.setTimeOfDay(LocalTime.of(23, 59));
+      assertEquals(departures.getDepartures().size(), 1);
+    }
+
+    @Test
+    void setTimeOfDayRemovesDepartureDelayedBackAndForthOnce() {
+      departures.assertAndSetDelay(1, LocalTime.of(1, 0));
+      departures.assertAndSetDelay(1, LocalTime.of(0, 15));
+      departures.setTimeOfDay(LocalTime.of(16, 0));
+      departures.addTrainDeparture(LocalTime.of(17, 0), LocalTime.of(0, 0), "Bergen", "L4", 1, -1);
+      departures.setTimeOfDay(LocalTime.of(16, 50));
+      assertEquals(departures.getTrainDepartureByTrainNumber(1).getDepartureTime(),
+              LocalTime.of(17, 0));
+    }
+
+    @Test
+    void assertAndSetTrackFreesPreviousTrack() {
+      departures.assertAndSetTrack(3, 5);
+      assertDoesNotThrow(() -> departures.addTrainDeparture(LocalTime.of(11, 26),
+              LocalTime.of(0, 0), "Voss", "L7", 7, 1));
+    }
+
+    @Test
+    void assertAndSetDelayFreesPreviousLineSlot() {
+      departures.assertAndSetDelay(3, LocalTime.of(0, 30));
+      assertDoesNotThrow(() -> departures
+              .assertUniqueDepartureScheduling(LocalTime.of(11, 25), "L3", 2));
+    }
+
+    @Test
+    void setTimeOfDayFreesEvictedSlots() {
+      departures.setTimeOfDay(LocalTime.of(12, 0));
+      assertDoesNotThrow(() -> departures
+              .assertUniqueDepartureScheduling(LocalTime.of(11, 25), "L3", 2));
+    }
+
+    @Test
+    void addTrainDeparturesAddsValidDeparturesAndRejectsTheRest() {
+      List<Integer> rejected = new ArrayList<>();
+      int added = departures.addTrainDepartures(List.of(
+              new TrainDeparture(LocalTime.of(12, 0), LocalTime.MIN, "Voss", "F1", 5, -1),
+              new TrainDeparture(LocalTime.of(12, 0), LocalTime.MIN, "Voss", "F1", 6, -1),
+              new TrainDeparture(LocalTime.of(13, 0), LocalTime.MIN, "Voss", "F1", 1, -1),
+              new TrainDeparture(LocalTime.of(13, 0), LocalTime.MIN, "Voss", "F1", 7, -1)),
+              (index, reason) -> rejected.add(index));
+
+      assertEquals(added, 2);
+      assertEquals(rejected, List.of(1, 2));
+      assertEquals(departures.getDepartures().size(), 6);
+    }
+
     @Test
     void setTimeOfDayGivesCorrectTime() {
       departures.setTimeOfDay(LocalTime.of(12, 0));
@@ -126,6 +397,94 @@ class RegistryTest {
                       "Hønefoss", "L33", 1, -7));
     }
 
+    @Test
+    void addTrainDeparturesRejectsDeparturesTooFarAhead() {
+      List<String> rejected = new ArrayList<>();
+      departures.addTrainDepartures(List.of(
+              new TrainDeparture(LocalTime.of(7, 20), LocalTime.MIN, "Voss", "F1", 9, -1, 2)),
+              (index, reason) -> rejected.add(reason));
+
+      assertEquals(rejected.size(), 1);
+    }
+
+    @Test
+    void assignTracksReportsDeparturesWithoutAFreeTrack() {
+      departures.addTrainDeparture(LocalTime.of(11, 23), LocalTime.of(0, 0),
+              "Voss", "L5", 5, -1);
+
+      List<TrainDeparture> unplaced = departures.assignTracks(2, 5);
+
+      assertEquals(unplaced.stream().map(TrainDeparture::getTrainNumber).toList(), List.of(2));
+      assertEquals(departures.getTrainDepartureByTrainNumber(5).getTrack(), 1);
+      assertEquals(departures.getTrainDepartureByTrainNumber(2).getTrack(), -1);
+    }
+
+    @Test
+    void assignTracksWithoutTracksDoesThrow() {
+      assertThrows(IllegalArgumentException.class, () -> departures.assignTracks(0, 5));
+    }
+
+    @Test
+    void propagateDelayPastMidnightChangesNothing() {
+      departures.addTrainDeparture(LocalTime.of(0, 0), LocalTime.of(23, 59), "Voss", "R1", 5, -1);
+      departures.addTrainDeparture(LocalTime.of(0, 0), LocalTime.of(23, 58), "Voss", "R1", 6, 1);
+
+      assertThrows(IllegalArgumentException.class,
+              () -> departures.propagateDelay(6, LocalTime.of(23, 59)));
+      assertEquals(departures.getTrainDepartureByTrainNumber(6).getDelay(), LocalTime.of(23, 58));
+      assertEquals(departures.getTrainDepartureByTrainNumber(5).getDelay(), LocalTime.of(23, 59));
+    }
+
+    @Test
+    void addDelayThatCollidesChangesNothing() {
+      assertThrows(IllegalArgumentException.class, () -> departures.addDelay(
+              DepartureSelection.all().line("L4"), LocalTime.of(4, 5)));
+
+      assertEquals(departures.getTrainDepartureByTrainNumber(4).getDelay(), LocalTime.of(0, 0));
+      assertEquals(departures.getTrainDepartureByTrainNumber(1).getDelay(), LocalTime.of(0, 15));
+    }
+
+    @Test
+    void moveToTrackThatCollidesChangesNothing() {
+      assertThrows(IllegalArgumentException.class, () -> departures.moveToTrack(
+              DepartureSelection.all().destination("Trondheim"), 1));
+
+      assertEquals(departures.getTrainDepartureByTrainNumber(2).getTrack(), -1);
+      assertEquals(departures.getTrainDepartureByTrainNumber(3).getTrack(), 2);
+    }
+
+    @Test
+    void getNextDeparturesOnUnknownLineOrTrackIsEmpty() {
+      assertTrue(departures.getNextDeparturesOnLine(5, LocalTime.MIN, "R9").isEmpty());
+      assertTrue(departures.getNextDeparturesOnTrack(5, LocalTime.MIN, 9).isEmpty());
+      assertTrue(departures.getNextDepartures(5, LocalTime.of(16, 0)).isEmpty());
+    }
+
+    @Test
+    void getNextDeparturesWithoutRowsDoesThrow() {
+      assertThrows(IllegalArgumentException.class,
+              () -> departures.getNextDepartures(0, LocalTime.MIN));
+    }
+
+    @Test
+    void queryWithoutMatchesIsEmpty() {
+      assertTrue(departures.query(DepartureSelection.all().line("R9"), 0, 10)
+              .departures().isEmpty());
+      assertTrue(departures.query(DepartureSelection.all().line("L4").delayedOnly()
+              .between(LocalTime.of(7, 0), LocalTime.of(8, 0)), 0, 10).departures().isEmpty());
+    }
+
+    @Test
+    void queryWithNegativeOffsetDoesThrow() {
+      assertThrows(IllegalArgumentException.class,
+              () -> departures.query(DepartureSelection.all(), -1, 10));
+    }
+
+    @Test
+    void startServiceDayThatIsNotLaterDoesThrow() {
+      assertThrows(IllegalArgumentException.class, () -> departures.startServiceDay(0));
+    }
+
     @Test
     void setTimeOfDayDoesThrow() {
       departures.setTimeOfDay(LocalTime.of(16, 0));
@@ -150,6 +509,13 @@ class RegistryTest {
               .assertAndSetTrack(2, 2));
     }
 
+    @Test
+    void assertAndSetTrackDoesThrowAfterDelayMovesTrain() {
+      departures.assertAndSetDelay(3, LocalTime.of(4, 25));
+      assertThrows(IllegalArgumentException.class, () -> departures
+              .assertAndSetTrack(1, 2));
+    }
+
     @Test
     void assertAndSetDelayDoesThrow() {
       assertThrows(IllegalArgumentException.class, () -> departures
@@ -0,0 +1,91 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistryVersionTest {
+  private Registry departures;
+
+  private static List<Integer> trainNumbers(RegistryVersion version) {
+    List<Integer> trainNumbers = new ArrayList<>();
+    version.forEach(trainDeparture -> trainNumbers.add(trainDeparture.getTrainNumber()));
+    return trainNumbers;
+  }
+
+  @BeforeEach
+  void setUp() {
+    departures = new Registry();
+    departures.addTrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 15),
+            "Bergen", "L4", 1, -1);
+    departures.addTrainDeparture(LocalTime.of(11, 20), LocalTime.of(0, 5),
+            "Trondheim", "L3", 3, 2);
+    departures.enableVersions();
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the RegistryVersion class")
+  public class PositiveRegistryVersionTests {
+    @Test
+    void enableVersionsPublishesTheCurrentDepartures() {
+      RegistryVersion version = departures.getVersion();
+
+      assertEquals(version.getNumber(), 0L);
+      assertEquals(trainNumbers(version), List.of(3, 1));
+      assertEquals(version.getTrainDepartureByTrainNumber(1).getDelay(), LocalTime.of(0, 15));
+    }
+
+    @Test
+    void everyChangePublishesANewVersion() {
+      departures.addTrainDeparture(LocalTime.of(7, 20), LocalTime.of(0, 0), "Kragerø", "L4", 4, 2);
+      departures.assertAndSetDelay(3, LocalTime.of(5, 0));
+      departures.setTimeOfDay(LocalTime.of(8, 0));
+
+      RegistryVersion version = departures.getVersion();
+      assertEquals(version.getNumber(), 3L);
+      assertEquals(version.getTimeOfDay(), LocalTime.of(8, 0));
+      assertEquals(trainNumbers(version), List.of(1, 3));
+    }
+
+    @Test
+    void oldVersionDoesNotChange() {
+      RegistryVersion old = departures.getVersion();
+
+      departures.assertAndSetDelay(1, LocalTime.of(1, 0));
+      departures.assertAndSetTrack(1, 4);
+
+      assertEquals(old.getTrainDepartureByTrainNumber(1).getDelay(), LocalTime.of(0, 15));
+      assertEquals(old.getTrainDepartureByTrainNumber(1).getTrack(), -1);
+      assertEquals(departures.getVersion().getTrainDepartureByTrainNumber(1).getTrack(), 4);
+    }
+
+    @Test
+    void bulkChangePublishesOneVersion() {
+      departures.addDelay(DepartureSelection.all(), LocalTime.of(0, 10));
+
+      assertEquals(departures.getVersion().getNumber(), 1L);
+      assertEquals(departures.getVersion().getDepartures().size(), 2);
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the RegistryVersion class")
+  public class NegativeRegistryVersionTests {
+    @Test
+    void getVersionWithoutVersionsGivesNull() {
+      assertNull(new Registry().getVersion());
+    }
+
+    @Test
+    void getTrainDepartureByMissingTrainNumberDoesThrow() {
+      RegistryVersion version = departures.getVersion();
+
+      assertThrows(IllegalArgumentException.class,
+              () -> version.getTrainDepartureByTrainNumber(2));
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimetableImporterTest {
+  private Registry departures;
+  private TimetableImporter importer;
+
+  @BeforeEach
+  void setUp() {
+    departures = new Registry();
+    importer = new TimetableImporter(departures);
+  }
+
+  @AfterEach
+  void tearDown() {
+    departures = null;
+    importer = null;
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the TimetableImporter class")
+  public class PositiveTimetableImporterTests {
+    @Test
+    void importTimetableAddsEveryValidLine() throws IOException {
+      TimetableImporter.Result result = importer.importTimetable(new StringReader("""
+              departureTime,delay,destination,line,trainNumber,track
+              # Morning trains
+              15:30,00:15,Bergen,L4,1,-1
+
+              11:20, 00:05, Trondheim, L3, 3, 2
+              7:20,00:00,Kragerø,L4,4,2
+              """));
+
+      assertEquals(result.added(), 3);
+      assertTrue(result.rejections().isEmpty());
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(4, 3, 1));
+    }
+
+    @Test
+    void importTimetableAddsManyLines() throws IOException {
+      StringBuilder timetable = new StringBuilder();
+      for (int trainNumber = 1; trainNumber <= 10_000; trainNumber++) {
+        timetable.append(String.format("%02d:%02d,00:00,Oslo S,R%d,%d,-1%n",
+                trainNumber % 24, trainNumber % 60, trainNumber, trainNumber));
+      }
+
+      TimetableImporter.Result result = importer.importTimetable(
+              new StringReader(timetable.toString()));
+
+      assertEquals(result.added(), 10_000);
+      assertEquals(departures.getDepartures().size(), 10_000);
+    }
+
+    @Test
+    void importTimetableAddsTheNextServiceDay() throws IOException {
+      departures.addTrainDeparture(LocalTime.of(15, 30), LocalTime.of(0, 0), "Bergen", "L4", 1, -1);
+      TimetableImporter.Result result = new TimetableImporter(departures, 1).importTimetable(
+              new StringReader("07:20,00:00,Kragerø,L4,2,2\n"));
+
+      assertEquals(result.added(), 1);
+      assertEquals(departures.getTrainDepartureByTrainNumber(2).getServiceDay(), 1);
+      assertEquals(departures.getDepartures().stream()
+              .map(TrainDeparture::getTrainNumber).toList(), List.of(1, 2));
+    }
+
+    @Test
+    void parseTimeGivesCorrectTime() {
+      assertEquals(TimetableImporter.parseTime("07:05"), LocalTime.of(7, 5));
+      assertEquals(TimetableImporter.parseTime("7:05"), LocalTime.of(7, 5));
+      assertEquals(TimetableImporter.parseTime("23:59"), LocalTime.of(23, 59));
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the TimetableImporter class")
+  public class NegativeTimetableImporterTests {
+    @Test
+    void importTimetableReportsEveryRejectedLine() throws IOException {
+      TimetableImporter.Result result = importer.importTimetable(new StringReader("""
+              15:30,00:15,Bergen,L4,1,-1
+              15:45,00:00,Voss,L4,2,-1
+              25:00,00:00,Voss,L5,3,-1
+              12:00,00:00,Voss,L5,1,-1
+              12:00,00:00,,L6,4,-1
+              12:00,00:00,Voss,L6
+              12:00,00:00,Voss,L7,5,x
+              12:00,00:00,Voss,L7,6,7
+              """));
+
+      assertEquals(result.added(), 2);
+      assertEquals(result.rejections().stream()
+              .map(TimetableImporter.Rejection::lineNumber).toList(), List.of(2, 3, 4, 5, 6, 7));
+      assertEquals(result.rejections().get(0).reason(),
+              "A train departure with this departure time and line already exists");
+    }
+
+    @Test
+    void parseTimeDoesThrow() {
+      assertThrows(IllegalArgumentException.class, () -> TimetableImporter.parseTime("24:00"));
+      assertThrows(IllegalArgumentException.class, () -> TimetableImporter.parseTime("12:60"));
+      assertThrows(IllegalArgumentException.class, () -> TimetableImporter.parseTime("12.30"));
+      assertThrows(IllegalArgumentException.class, () -> TimetableImporter.parseTime("1230"));
+      assertThrows(IllegalArgumentException.class, () -> TimetableImporter.parseTime(""));
+    }
+  }
+}
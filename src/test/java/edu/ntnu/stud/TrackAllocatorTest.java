@@ -0,0 +1,71 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackAllocatorTest {
+  private TrackAllocator allocator;
+
+  @BeforeEach
+  void setUp() {
+    allocator = new TrackAllocator(2, 0, TrainDeparture.MINUTES_PER_DAY - 1, 5);
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the TrackAllocator class")
+  public class PositiveTrackAllocatorTests {
+    @Test
+    void allocateGivesTheLowestFreeTrack() {
+      assertEquals(allocator.allocate(600), 1);
+      assertEquals(allocator.allocate(602), 2);
+      assertEquals(allocator.allocate(605), 1);
+    }
+
+    @Test
+    void allocateSkipsOccupiedTracks() {
+      allocator.occupy(1, 600);
+
+      assertEquals(allocator.allocate(604), 2);
+    }
+
+    @Test
+    void allocateChecksMinutesAcrossWords() {
+      allocator.occupy(1, 128);
+
+      assertEquals(allocator.allocate(124), 2);
+      assertEquals(allocator.allocate(133), 1);
+    }
+
+    @Test
+    void occupyIgnoresTracksOutsideTheAllocator() {
+      allocator.occupy(3, 600);
+
+      assertEquals(allocator.allocate(600), 1);
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the TrackAllocator class")
+  public class NegativeTrackAllocatorTests {
+    @Test
+    void allocateGivesNoTrackWhenEveryTrackIsOccupied() {
+      allocator.occupy(1, 600);
+      allocator.occupy(2, 603);
+
+      assertEquals(allocator.allocate(601), -1);
+    }
+
+    @Test
+    void allocateGivesNoTrackOutsideTheMinutes() {
+      assertEquals(allocator.allocate(TrainDeparture.MINUTES_PER_DAY), -1);
+    }
+
+    @Test
+    void constructorDoesThrow() {
+      assertThrows(IllegalArgumentException.class, () -> new TrackAllocator(0, 0, 10, 1));
+      assertThrows(IllegalArgumentException.class, () -> new TrackAllocator(1, 0, 10, 0));
+      assertThrows(IllegalArgumentException.class, () -> new TrackAllocator(1, 10, 0, 1));
+    }
+  }
+}
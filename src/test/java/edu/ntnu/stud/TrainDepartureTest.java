@@ -5,6 +5,9 @@ import org.junit.jupiter.api.*;
 import java.time.LocalTime;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class TrainDepartureTest {
@@ -65,12 +68,35 @@ public class TrainDepartureTest {
       assertEquals(trainDeparture.getFinalDepartureTime(), LocalTime.of(15, 30));
     }
 
+    @Test
+    void setDelayShouldUpdateFinalDepartureTimeAndMinute() {
+      trainDeparture.setDelay(LocalTime.of(9, 1));
+      assertEquals(trainDeparture.getFinalDepartureTime(), LocalTime.of(0, 31));
+      assertEquals(trainDeparture.getFinalDepartureMinute(), 24 * 60 + 31);
+    }
+
     @Test
     void setDelayShouldGetCorrectDelay() {
       trainDeparture.setDelay(LocalTime.of(1, 1));
       assertEquals(trainDeparture.getDelay(), LocalTime.of(1, 1));
     }
 
+    @Test
+    void toStringShouldReturnCachedRow() {
+      assertSame(trainDeparture.toString(), trainDeparture.toString());
+    }
+
+    @Test
+    void toStringShouldChangeAfterSetDelayAndSetTrack() {
+      String before = trainDeparture.toString();
+      trainDeparture.setDelay(LocalTime.of(0, 20));
+      assertNotEquals(trainDeparture.toString(), before);
+      assertTrue(trainDeparture.toString().contains("00:20"));
+
+      trainDeparture.setTrack(7);
+      assertTrue(trainDeparture.toString().endsWith("7    "));
+    }
+
     @Test
     void setTrackShouldGetCorrectTrack() {
       trainDeparture.setTrack(21);
@@ -0,0 +1,92 @@
+package edu.ntnu.stud;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrainNumberMapTest {
+  private TrainNumberMap map;
+
+  private static TrainDeparture departure(int trainNumber) {
+    return new TrainDeparture(LocalTime.of(12, 0), LocalTime.of(0, 0),
+            "Bergen", "L4", trainNumber, -1);
+  }
+
+  @BeforeEach
+  void setUp() {
+    map = new TrainNumberMap();
+  }
+
+  @Nested
+  @DisplayName("Positive tests for the TrainNumberMap class")
+  public class PositiveTrainNumberMapTests {
+    @Test
+    void getReturnsPutDeparture() {
+      TrainDeparture departure = departure(7);
+      map.put(7, departure);
+      assertSame(map.get(7), departure);
+      assertEquals(map.size(), 1);
+    }
+
+    @Test
+    void putReplacesDepartureWithSameTrainNumber() {
+      TrainDeparture first = departure(7);
+      TrainDeparture second = departure(7);
+      map.put(7, first);
+      assertSame(map.put(7, second), first);
+      assertSame(map.get(7), second);
+      assertEquals(map.size(), 1);
+    }
+
+    @Test
+    void removeReturnsRemovedDeparture() {
+      TrainDeparture departure = departure(7);
+      map.put(7, departure);
+      assertSame(map.remove(7), departure);
+      assertFalse(map.containsKey(7));
+      assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void mapMatchesHashMapAfterRandomPutsAndRemoves() {
+      HashMap<Integer, TrainDeparture> expected = new HashMap<>();
+      Random random = new Random(42);
+
+      for (int i = 0; i < 100_000; i++) {
+        int trainNumber = 1 + random.nextInt(5_000);
+        if (random.nextInt(3) == 0) {
+          assertSame(map.remove(trainNumber), expected.remove(trainNumber));
+        } else {
+          TrainDeparture departure = departure(trainNumber);
+          assertSame(map.put(trainNumber, departure), expected.put(trainNumber, departure));
+        }
+      }
+
+      assertEquals(map.size(), expected.size());
+      for (int trainNumber = 1; trainNumber <= 5_000; trainNumber++) {
+        assertSame(map.get(trainNumber), expected.get(trainNumber));
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Negative tests for the TrainNumberMap class")
+  public class NegativeTrainNumberMapTests {
+    @Test
+    void getReturnsNullForMissingTrainNumber() {
+      map.put(7, departure(7));
+      assertNull(map.get(8));
+      assertNull(map.get(0));
+    }
+
+    @Test
+    void removeReturnsNullForMissingTrainNumber() {
+      assertNull(map.remove(7));
+      assertEquals(map.size(), 0);
+    }
+  }
+}